@@ -47,8 +47,9 @@ public class RouterRegistry {
         Router.get("/api/admin/center/list", centerController::list);
 
         //电表接口
-        Router.get("/api/admin/ammeter/list", ammeterController::list);
+        Router.get("/api/admin/ammeter/list", ammeterController::list).responseSize(4096);
         Router.get("/api/admin/ammeter/detail", ammeterController::detail);
+        Router.get("/api/admin/ammeter/detail/{ammeterNo}", ammeterController::detail);
         Router.post("/api/admin/ammeter/read", ammeterController::read);
     }
 }
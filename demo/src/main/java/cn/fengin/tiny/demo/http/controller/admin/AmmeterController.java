@@ -32,18 +32,21 @@ public class AmmeterController {
             Map<String, Object> data = new HashMap<>();
             data.put("data", ammeters);
             data.put("total", 150);
-            response.write(ApiResponse.success(data));
+            response.writeJson(ApiResponse.ok(data));
         } catch (Exception e) {
             response.write(ApiResponse.error(500, "获取电表列表失败"));
         }
     }
 
     /**
-     * 电表详情 /api/admin/ammeter/detail
+     * 电表详情 /api/admin/ammeter/detail 或 /api/admin/ammeter/detail/{ammeterNo}
      */
     public void detail(HttpRequest request, HttpResponse response) {
         try {
-            String ammeterNo = request.getParameter("ammeterNo");
+            String ammeterNo = request.getPathVariable("ammeterNo");
+            if (ammeterNo == null) {
+                ammeterNo = request.getParameter("ammeterNo");
+            }
 
             Map<String, Object> detail = new HashMap<>();
             detail.put("ammeterNo", ammeterNo);
@@ -15,17 +15,24 @@ public class ApiResponse {
 
     public static String success(Object data) {
         try {
-            ApiResponse response = new ApiResponse();
-            response.setCode(200);
-            response.setData(data);
-            response.setMsg("");
-            response.setSuccess(true);
-            return mapper.writeValueAsString(response);
+            return mapper.writeValueAsString(ok(data));
         } catch (Exception e) {
             return error(500, "服务器内部错误");
         }
     }
 
+    /**
+     * 构建成功响应对象，配合HttpResponse.writeJson直接序列化写出，不生成中间字符串
+     */
+    public static ApiResponse ok(Object data) {
+        ApiResponse response = new ApiResponse();
+        response.setCode(200);
+        response.setData(data);
+        response.setMsg("");
+        response.setSuccess(true);
+        return response;
+    }
+
     public static String error(int code, String msg) {
         try {
             ApiResponse response = new ApiResponse();
@@ -3,23 +3,53 @@ package cn.fengin.tiny.cache;
 
 import lombok.Getter;
 
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.*;
+import java.util.function.ToLongBiFunction;
 
 /**
  * 本地缓存实现
  * 基于ConcurrentHashMap实现的本地缓存，支持过期机制
+ * 指定容量上限时按权重（例如字节数）限制大小，超过上限时淘汰最久未访问的数据，
+ * 此时使用按访问顺序排列的LinkedHashMap，所有操作加锁
  *
  * @author fengin
  * @since 1.0.0
  */
 public class LocalCache<K, V> implements Cache<K, V> {
     //private static final Logger logger = LoggerFactory.getLogger(LocalCache.class);
-    
-    private final Map<K, CacheEntry<V>> cache = new ConcurrentHashMap<>();
+
+    private final Map<K, CacheEntry<V>> cache;
+    /** 权重上限，0表示不限制 */
+    private final long maxWeight;
+    /** 计算数据的权重，不限制大小时为null */
+    private final ToLongBiFunction<? super K, ? super V> weigher;
+    /** 当前的总权重，持有cache的锁时访问 */
+    private long weight;
 
     public LocalCache() {
+        this.cache = new ConcurrentHashMap<>();
+        this.maxWeight = 0;
+        this.weigher = null;
+        startCleanup();
+    }
+
+    /**
+     * 创建有容量上限的缓存，超过上限时淘汰最久未访问的数据
+     * @param maxWeight 总权重上限
+     * @param weigher 计算每项数据的权重，例如占用的字节数；权重超过上限的数据不缓存
+     */
+    public LocalCache(long maxWeight, ToLongBiFunction<? super K, ? super V> weigher) {
+        this.cache = new LinkedHashMap<>(16, 0.75f, true);
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+        startCleanup();
+    }
+
+    private void startCleanup() {
         ScheduledExecutorService cleanupExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
             Thread thread = new Thread(r, "cache-cleanup");
             thread.setDaemon(true);
@@ -35,45 +65,141 @@ public class LocalCache<K, V> implements Cache<K, V> {
     
     @Override
     public void put(K key, V value) {
-        cache.put(key, new CacheEntry<>(value));
+        store(key, new CacheEntry<>(value));
     }
     
     @Override
     public void put(K key, V value, long timeout, TimeUnit unit) {
-        cache.put(key, new CacheEntry<>(value, 
+        store(key, new CacheEntry<>(value, 
             System.currentTimeMillis() + unit.toMillis(timeout)));
     }
-    
+
+    private void store(K key, CacheEntry<V> entry) {
+        if (weigher == null) {
+            cache.put(key, entry);
+            return;
+        }
+        entry.weight = weigher.applyAsLong(key, entry.getValue());
+        synchronized (cache) {
+            if (entry.weight > maxWeight) {
+                removeEntry(key);
+                return;
+            }
+            CacheEntry<V> previous = cache.put(key, entry);
+            weight += entry.weight - (previous != null ? previous.weight : 0);
+            // 按访问顺序从最久未访问的开始淘汰，过期的数据不再被访问，会先于仍在使用的数据被淘汰
+            Iterator<CacheEntry<V>> iterator = cache.values().iterator();
+            while (weight > maxWeight && iterator.hasNext()) {
+                weight -= iterator.next().weight;
+                iterator.remove();
+            }
+        }
+    }
+
     @Override
     public Optional<V> get(K key) {
-        CacheEntry<V> entry = cache.get(key);
-        if (entry != null && !entry.isExpired()) {
+        if (weigher == null) {
+            CacheEntry<V> entry = cache.get(key);
+            if (entry != null && !entry.isExpired()) {
+                return Optional.of(entry.getValue());
+            }
+            cache.remove(key);
+            return Optional.empty();
+        }
+        synchronized (cache) {
+            // LinkedHashMap的get会调整访问顺序
+            CacheEntry<V> entry = cache.get(key);
+            if (entry == null) {
+                return Optional.empty();
+            }
+            if (entry.isExpired()) {
+                removeEntry(key);
+                return Optional.empty();
+            }
             return Optional.of(entry.getValue());
         }
-        cache.remove(key);
-        return Optional.empty();
     }
-    
+
     @Override
     public void remove(K key) {
-        cache.remove(key);
+        if (weigher == null) {
+            cache.remove(key);
+            return;
+        }
+        synchronized (cache) {
+            removeEntry(key);
+        }
     }
-    
+
+    /**
+     * 移除数据并更新总权重，调用前已持有锁
+     */
+    private void removeEntry(K key) {
+        CacheEntry<V> previous = cache.remove(key);
+        if (previous != null) {
+            weight -= previous.weight;
+        }
+    }
+
     @Override
     public void clear() {
-        cache.clear();
+        if (weigher == null) {
+            cache.clear();
+            return;
+        }
+        synchronized (cache) {
+            cache.clear();
+            weight = 0;
+        }
     }
-    
+
     @Override
     public int size() {
         cleanup();
-        return cache.size();
+        if (weigher == null) {
+            return cache.size();
+        }
+        synchronized (cache) {
+            return cache.size();
+        }
     }
-    
+
+    /**
+     * 当前的总权重，不限制大小时为0
+     */
+    public long getWeight() {
+        if (weigher == null) {
+            return 0;
+        }
+        synchronized (cache) {
+            return weight;
+        }
+    }
+
+    /**
+     * 权重上限，0表示不限制
+     */
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
     private void cleanup() {
-        cache.entrySet().removeIf(entry -> entry.getValue().isExpired());
+        if (weigher == null) {
+            cache.entrySet().removeIf(entry -> entry.getValue().isExpired());
+            return;
+        }
+        synchronized (cache) {
+            Iterator<CacheEntry<V>> iterator = cache.values().iterator();
+            while (iterator.hasNext()) {
+                CacheEntry<V> entry = iterator.next();
+                if (entry.isExpired()) {
+                    weight -= entry.weight;
+                    iterator.remove();
+                }
+            }
+        }
     }
-    
+
     /**
      * 缓存条目，包含值和过期时间
      */
@@ -81,6 +207,8 @@ public class LocalCache<K, V> implements Cache<K, V> {
         @Getter
         private final V value;
         private final long expireTime;
+        /** 权重，不限制大小时为0 */
+        private long weight;
         
         public CacheEntry(V value) {
             this.value = value;
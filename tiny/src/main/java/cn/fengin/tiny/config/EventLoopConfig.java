@@ -0,0 +1,40 @@
+package cn.fengin.tiny.config;
+
+import lombok.Data;
+
+/**
+ * 共享IO线程组配置
+ * HTTP服务器和各TCP服务器默认共用一组boss/worker线程，线程数按CPU核心数设置，
+ * 避免每个服务器各建一组线程，线程数远多于CPU核心数时上下文切换增加、缓存命中率下降
+ * 服务器配置isolated-event-loop为true时使用自己的线程组，线程数按服务器的boss-threads/worker-threads设置
+ *
+ * @author fengin
+ * @since 1.0.0
+ */
+@Data
+public class EventLoopConfig {
+    /**
+     * 共享线程组的网络传输实现，服务器的transport与之不同时使用自己的线程组
+     */
+    private Transport transport = Transport.AUTO;
+
+    /**
+     * 共享的boss线程数，至少为各服务器acceptors的最大值，默认1
+     */
+    private int bossThreads = 1;
+
+    /**
+     * 共享的worker线程数，0表示CPU核心数
+     */
+    private int workerThreads = 0;
+
+    /**
+     * 优雅关闭的静默期（秒），静默期内没有新任务才关闭线程
+     */
+    private int shutdownQuietPeriod = 2;
+
+    /**
+     * 优雅关闭的最长等待时间（秒）
+     */
+    private int shutdownTimeout = 15;
+}
@@ -0,0 +1,45 @@
+package cn.fengin.tiny.config;
+
+import cn.fengin.tiny.exception.ConfigException;
+
+/**
+ * 业务处理的执行方式
+ * 参数说明：
+ * - EVENT_LOOP: 直接在Netty IO线程中执行，适合不阻塞的轻量处理（默认）
+ * - POOL: 在thread-pool配置的业务线程池中执行，适合查询数据库等会阻塞的处理
+ * - VIRTUAL: 每个任务一个虚拟线程（需要JDK21及以上），适合大量并发的阻塞处理，
+ *   运行在低版本JDK时退回到业务线程池执行
+ *
+ * @author fengin
+ * @since 1.0.0
+ */
+public enum ExecutionMode {
+    EVENT_LOOP("event-loop"),
+    POOL("pool"),
+    VIRTUAL("virtual");
+
+    private final String configName;
+
+    ExecutionMode(String configName) {
+        this.configName = configName;
+    }
+
+    public String getConfigName() {
+        return configName;
+    }
+
+    /**
+     * 按配置文件中的名称解析执行方式，为空时返回默认值
+     */
+    public static ExecutionMode fromConfig(String name, ExecutionMode defaultMode) {
+        if (name == null || name.isEmpty()) {
+            return defaultMode;
+        }
+        for (ExecutionMode mode : values()) {
+            if (mode.configName.equalsIgnoreCase(name)) {
+                return mode;
+            }
+        }
+        throw new ConfigException("Unknown execution mode: " + name);
+    }
+}
@@ -44,10 +44,45 @@ public class SecurityConfig {
         private int maxAge = 3600;
     }
 
+    /**
+     * 每个IP每秒最大请求数，0表示不限流
+     */
     private int maxRequestsPerSecond = 100;
+    /**
+     * 每个IP允许的突发请求数（令牌桶容量），0表示与maxRequestsPerSecond相同
+     */
+    private int requestBurst = 0;
+    /**
+     * 限流表的表项数，决定同时跟踪的IP、API Key数量，内存占用为表项数*8字节，不随访问的IP数增长
+     */
+    private int rateLimitEntries = 65536;
+    /**
+     * 携带API Key的请求头，为空表示不按API Key限流
+     */
+    private String apiKeyHeader = "";
+    /**
+     * 每个API Key每秒最大请求数，0表示不按API Key限流，与IP限流同时生效
+     */
+    private int apiKeyRequestsPerSecond = 0;
+    /**
+     * 每个API Key允许的突发请求数，0表示与apiKeyRequestsPerSecond相同
+     */
+    private int apiKeyBurst = 0;
     private int maxConnectionsPerIp = 50;
+    /**
+     * 已不使用，请求体大小上限由server.http.max-body-size和Route.maxBodySize设置，超过时返回413
+     */
+    @Deprecated
     private long maxRequestBodySize = 10 * 1024 * 1024; // 10MB
     private long maxMemoryUsage = Runtime.getRuntime().maxMemory() * 90 / 100;
+    /**
+     * 请求体占用内存达到maxMemoryUsage的百分比时，暂停读取新的请求
+     */
+    private int memoryPausePercent = 90;
+    /**
+     * 请求体占用内存降到maxMemoryUsage的百分比以下时，恢复读取
+     */
+    private int memoryResumePercent = 70;
     private long maxDiskSpace = 1024 * 1024 * 1024; // 1GB
 
 }
\ No newline at end of file
@@ -1,6 +1,8 @@
 package cn.fengin.tiny.config;
 
 import lombok.Data;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import lombok.Getter;
 import lombok.Setter;
@@ -26,6 +28,26 @@ public class ServerConfig {
      * - bossThreads: Netty boss线程数，用于接收连接，默认1（对于接收连接来说通常1个线程就够了）
      * - workerThreads: Netty worker线程数，用于处理IO，默认为CPU核心数*2
      * - backlog: TCP连接队列大小，默认1024（根据JDK推荐值设置）
+     * - keepAlive: 是否启用HTTP长连接，默认true
+     * - keepAliveTimeout: 长连接空闲超时时间（秒），超时无读写则关闭连接，默认60
+     * - keepAliveMaxRequests: 单个长连接最多处理的请求数，达到后关闭连接，0表示不限制，默认1000
+     * - maxPipelinedRequests: 单个连接上同时处理中的管道化请求数上限，达到后暂停读取，默认16
+     * - execution: 路由处理器的执行方式，event-loop在IO线程中执行，pool在业务线程池中执行，
+     *   virtual每个请求一个虚拟线程（JDK21及以上），默认event-loop
+     * - asyncTimeout: 异步路由处理超时时间（秒），超时返回503，0表示不限制，默认30
+     * - maxBodySize: 请求体大小上限（字节），超过返回413，可以按路由单独设置，默认65536
+     * - compression: 是否按客户端的Accept-Encoding对响应进行gzip/deflate压缩，默认false
+     * - compressionLevel: 压缩级别1-9，默认6
+     * - compressionMinSize: 小于该大小（字节）的完整响应不压缩，默认1024
+     * - compressionTypes: 需要压缩的内容类型前缀，图片、压缩包等已压缩的内容不需要再压缩
+     * - transport: 网络传输实现auto/nio/epoll，默认auto，参见Transport
+     * - socket: 连接套接字参数，参见SocketConfig
+     * - acceptors: 同一端口绑定的监听套接字数，大于1时使用SO_REUSEPORT，每个监听套接字一个接收线程，需要epoll传输，默认1
+     * - isolatedEventLoop: 是否使用独立的IO线程组，默认false，与TCP服务器共用event-loop配置的线程组，
+     *   bossThreads/workerThreads只在使用独立线程组时生效
+     * - http2: 是否支持明文HTTP/2（h2c升级和prior knowledge），同一端口仍然支持HTTP/1.1，
+     *   每个连接同时处理的流数上限为maxPipelinedRequests，默认false
+     * - responseCacheSize: 路由响应缓存（CachePolicy）占用的字节数上限，超过时淘汰最久未访问的响应，默认16MB
      */
     @Data
     public static class HttpConfig {
@@ -34,6 +56,23 @@ public class ServerConfig {
         private int workerThreads = Runtime.getRuntime().availableProcessors() * 2;
         private int backlog = 1024;
         private boolean keepAlive = true;
+        private int keepAliveTimeout = 60;
+        private int keepAliveMaxRequests = 1000;
+        private int maxPipelinedRequests = 16;
+        private ExecutionMode execution = ExecutionMode.EVENT_LOOP;
+        private int asyncTimeout = 30;
+        private long maxBodySize = 65536;
+        private boolean compression = false;
+        private int compressionLevel = 6;
+        private int compressionMinSize = 1024;
+        private List<String> compressionTypes = new ArrayList<>(Arrays.asList(
+                "text/", "application/json", "application/javascript", "application/xml", "image/svg+xml"));
+        private Transport transport = Transport.AUTO;
+        private SocketConfig socket = new SocketConfig();
+        private int acceptors = 1;
+        private boolean isolatedEventLoop = false;
+        private boolean http2 = false;
+        private long responseCacheSize = 16 * 1024 * 1024;
     }
 
     /**
@@ -45,6 +84,13 @@ public class ServerConfig {
      * - backlog: TCP连接队列大小，默认1024
      * - deviceIdleTime: 设备心跳检测周期（秒），默认60秒
      * - deviceIdleTimeout: 设备空闲超时时间（秒），默认1800秒
+     * - execution: MessageProcessor的执行方式，event-loop/pool/virtual，默认event-loop，
+     *   非event-loop时同一设备连接的消息仍按接收顺序依次处理
+     * - transport: 网络传输实现auto/nio/epoll，默认auto，参见Transport
+     * - socket: 连接套接字参数，大量空闲设备连接时可以用TCP保活参数由内核检测断开的设备，参见SocketConfig
+     * - acceptors: 同一端口绑定的监听套接字数，大于1时使用SO_REUSEPORT分散网络恢复后设备集中重连的accept压力，需要epoll传输，默认1
+     * - isolatedEventLoop: 是否使用独立的IO线程组，默认false，与其他服务器共用event-loop配置的线程组，
+     *   bossThreads/workerThreads只在使用独立线程组时生效
      */
     @Setter
     @Getter
@@ -56,5 +102,10 @@ public class ServerConfig {
         private int backlog = 1024;
         private int deviceIdleTime = 60;    // 设备心跳检测周期（秒）
         private int deviceIdleTimeout = 1800; // 设备空闲超时时间（秒）
+        private ExecutionMode execution = ExecutionMode.EVENT_LOOP;
+        private Transport transport = Transport.AUTO;
+        private SocketConfig socket = new SocketConfig();
+        private int acceptors = 1;
+        private boolean isolatedEventLoop = false;
     }
 } 
\ No newline at end of file
@@ -0,0 +1,31 @@
+package cn.fengin.tiny.config;
+
+import lombok.Data;
+
+/**
+ * 连接套接字参数配置
+ * 参数说明：
+ * - receiveBufferSize: SO_RCVBUF（字节），0表示使用系统默认值，设置在监听套接字上，接收的连接继承
+ * - sendBufferSize: SO_SNDBUF（字节），0表示使用系统默认值
+ * - writeBufferLowWaterMark/writeBufferHighWaterMark: 连接写缓冲区的低/高水位（字节），
+ *   待发送的数据超过高水位时连接变为不可写，降到低水位以下恢复，默认32K/64K
+ * - tcpKeepIdle: 连接空闲多少秒后开始发送TCP保活探测，0表示使用系统默认值（Linux默认7200秒）
+ * - tcpKeepInterval: 保活探测间隔（秒），0表示使用系统默认值
+ * - tcpKeepCount: 保活探测失败多少次后判定连接断开，0表示使用系统默认值
+ * - edgeTriggered: epoll使用边缘触发（默认）还是水平触发
+ * TCP保活参数和触发方式只在epoll传输下生效，由内核检测断开的对端，不需要应用层轮询
+ *
+ * @author fengin
+ * @since 1.0.0
+ */
+@Data
+public class SocketConfig {
+    private int receiveBufferSize = 0;
+    private int sendBufferSize = 0;
+    private int writeBufferLowWaterMark = 32 * 1024;
+    private int writeBufferHighWaterMark = 64 * 1024;
+    private int tcpKeepIdle = 0;
+    private int tcpKeepInterval = 0;
+    private int tcpKeepCount = 0;
+    private boolean edgeTriggered = true;
+}
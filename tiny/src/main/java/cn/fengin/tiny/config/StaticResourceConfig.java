@@ -17,6 +17,31 @@ public class StaticResourceConfig {
      * 静态资源根路径，默认为/static
      */
     private String path = "/static";
+
+    /**
+     * 静态资源文件系统目录，设置后从该目录零拷贝发送文件，不再从classpath的path加载
+     */
+    private String directory;
+
+    /**
+     * 从目录发送时最多缓存的已打开文件数
+     */
+    private int openFileCacheSize = 1000;
+
+    /**
+     * 缓存的文件属性有效时间（秒），超过后重新检查文件是否被修改
+     */
+    private int openFileCacheValid = 30;
+
+    /**
+     * 是否向接受gzip的客户端发送预压缩的.gz版本
+     */
+    private boolean gzipStatic = false;
+
+    /**
+     * 没有.gz文件时是否生成：目录在启动时生成到原文件旁，classpath资源在首次加载时压缩后放入缓存
+     */
+    private boolean gzipGenerate = false;
     
     /**
      * 是否启用缓存
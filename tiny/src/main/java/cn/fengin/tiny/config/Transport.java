@@ -0,0 +1,44 @@
+package cn.fengin.tiny.config;
+
+import cn.fengin.tiny.exception.ConfigException;
+
+/**
+ * 网络传输实现
+ * 参数说明：
+ * - AUTO: Linux上可以加载epoll本地库时使用epoll，否则使用NIO（默认）
+ * - NIO: JDK NIO，所有平台可用
+ * - EPOLL: Linux epoll本地传输，系统调用和内存拷贝更少，支持TCP_KEEPIDLE等内核保活参数，不可用时启动失败
+ *
+ * @author fengin
+ * @since 1.0.0
+ */
+public enum Transport {
+    AUTO("auto"),
+    NIO("nio"),
+    EPOLL("epoll");
+
+    private final String configName;
+
+    Transport(String configName) {
+        this.configName = configName;
+    }
+
+    public String getConfigName() {
+        return configName;
+    }
+
+    /**
+     * 按配置文件中的名称解析传输实现，为空时返回默认值
+     */
+    public static Transport fromConfig(String name, Transport defaultTransport) {
+        if (name == null || name.isEmpty()) {
+            return defaultTransport;
+        }
+        for (Transport transport : values()) {
+            if (transport.configName.equalsIgnoreCase(name)) {
+                return transport;
+            }
+        }
+        throw new ConfigException("Unknown transport: " + name);
+    }
+}
@@ -1,12 +1,15 @@
 package cn.fengin.tiny.context;
 
 import cn.fengin.tiny.config.*;
+import cn.fengin.tiny.http.ResponseCache;
 import cn.fengin.tiny.http.handler.deal.SecurityManager;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
 
 /**
@@ -34,9 +37,34 @@ public class ApplicationContext {
     private final SecurityConfig securityConfig;
     private final StaticResourceConfig staticResourceConfig;
     private final ThreadPoolConfig threadPoolConfig;
+    private final EventLoopConfig eventLoopConfig;
     private final AuthConfig authConfig;
 
     private final SecurityManager securityManager;
+
+    /**
+     * 业务线程池，按thread-pool配置创建，首次使用时初始化
+     */
+    @Getter(AccessLevel.NONE)
+    private volatile ExecutorService businessExecutor;
+
+    /**
+     * 虚拟线程执行器，首次使用时初始化
+     */
+    @Getter(AccessLevel.NONE)
+    private volatile ExecutorService virtualExecutor;
+
+    /**
+     * IO线程组资源，首次使用时初始化
+     */
+    @Getter(AccessLevel.NONE)
+    private volatile EventLoopResources eventLoopResources;
+
+    /**
+     * 路由响应缓存，首次使用时初始化
+     */
+    @Getter(AccessLevel.NONE)
+    private volatile ResponseCache responseCache;
     
     private ApplicationContext() {
         logger.info("Begin Start Tiny FrameWork Application ...");
@@ -52,12 +80,95 @@ public class ApplicationContext {
         securityConfig = ConfigLoader.loadSecurityConfig(configData);
         staticResourceConfig = ConfigLoader.loadResourceConfig(configData);
         threadPoolConfig = ConfigLoader.loadThreadPoolConfig(configData);
+        eventLoopConfig = ConfigLoader.loadEventLoopConfig(configData);
         authConfig = ConfigLoader.loadAuthConfig(configData);
 
         // 初始化安全检查器
         this.securityManager = new SecurityManager(securityConfig);
     }
     
+    /**
+     * 获取业务线程池
+     * 用于执行会阻塞的业务处理（例如查询数据库），避免阻塞Netty IO线程
+     */
+    public ExecutorService getBusinessExecutor() {
+        if (businessExecutor == null) {
+            synchronized (this) {
+                if (businessExecutor == null) {
+                    businessExecutor = ThreadPoolFactory.createBoundedPool(threadPoolConfig, "tiny-business");
+                    logger.info("Business thread pool initialized, core: {}, max: {}, queue: {}",
+                            threadPoolConfig.getCoreSize(), threadPoolConfig.getMaxSize(), threadPoolConfig.getQueueCapacity());
+                }
+            }
+        }
+        return businessExecutor;
+    }
+    
+    /**
+     * 获取虚拟线程执行器，每个任务一个虚拟线程
+     * 当前JDK不支持虚拟线程（低于JDK21）时返回业务线程池
+     */
+    public ExecutorService getVirtualExecutor() {
+        if (virtualExecutor == null) {
+            synchronized (this) {
+                if (virtualExecutor == null) {
+                    ExecutorService executor = ThreadPoolFactory.createVirtualThreadExecutor("tiny-virtual");
+                    if (executor == null) {
+                        logger.warn("Virtual threads require JDK 21+, current: {}, fall back to business thread pool",
+                                System.getProperty("java.version"));
+                        executor = getBusinessExecutor();
+                    } else {
+                        logger.info("Virtual thread executor initialized");
+                    }
+                    virtualExecutor = executor;
+                }
+            }
+        }
+        return virtualExecutor;
+    }
+
+    /**
+     * 获取IO线程组资源，HTTP服务器和TCP服务器从这里获取Netty线程组
+     */
+    public EventLoopResources getEventLoopResources() {
+        if (eventLoopResources == null) {
+            synchronized (this) {
+                if (eventLoopResources == null) {
+                    eventLoopResources = new EventLoopResources(eventLoopConfig, serverConfig);
+                }
+            }
+        }
+        return eventLoopResources;
+    }
+
+    /**
+     * 获取路由响应缓存，大小上限为server.http.response-cache-size
+     */
+    public ResponseCache getResponseCache() {
+        if (responseCache == null) {
+            synchronized (this) {
+                if (responseCache == null) {
+                    responseCache = new ResponseCache(serverConfig.getHttp().getResponseCacheSize());
+                }
+            }
+        }
+        return responseCache;
+    }
+
+    /**
+     * 按执行方式获取执行器
+     * @return 执行器，EVENT_LOOP返回null表示直接在Netty IO线程中执行
+     */
+    public ExecutorService getExecutor(ExecutionMode mode) {
+        if (mode == ExecutionMode.POOL) {
+            return getBusinessExecutor();
+        }
+        if (mode == ExecutionMode.VIRTUAL) {
+            return getVirtualExecutor();
+        }
+        return null;
+    }
+
     public static ApplicationContext getInstance() {
         if (instance == null) {
             synchronized (ApplicationContext.class) {
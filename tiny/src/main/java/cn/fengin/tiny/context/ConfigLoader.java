@@ -59,6 +59,24 @@ public class ConfigLoader {
                 http.setWorkerThreads((Integer) httpConfig.getOrDefault("worker-threads", 4));
                 http.setBacklog((Integer) httpConfig.getOrDefault("backlog", 128));
                 http.setKeepAlive((Boolean) httpConfig.getOrDefault("keepalive", true));
+                http.setKeepAliveTimeout((Integer) httpConfig.getOrDefault("keepalive-timeout", 60));
+                http.setKeepAliveMaxRequests((Integer) httpConfig.getOrDefault("keepalive-max-requests", 1000));
+                http.setMaxPipelinedRequests((Integer) httpConfig.getOrDefault("max-pipelined-requests", 16));
+                http.setExecution(ExecutionMode.fromConfig((String) httpConfig.get("execution"), ExecutionMode.EVENT_LOOP));
+                http.setAsyncTimeout((Integer) httpConfig.getOrDefault("async-timeout", 30));
+                http.setMaxBodySize(((Number) httpConfig.getOrDefault("max-body-size", 65536)).longValue());
+                http.setCompression((Boolean) httpConfig.getOrDefault("compression", false));
+                http.setCompressionLevel((Integer) httpConfig.getOrDefault("compression-level", 6));
+                http.setCompressionMinSize((Integer) httpConfig.getOrDefault("compression-min-size", 1024));
+                if (httpConfig.get("compression-types") != null) {
+                    http.setCompressionTypes((List<String>) httpConfig.get("compression-types"));
+                }
+                http.setTransport(Transport.fromConfig((String) httpConfig.get("transport"), Transport.AUTO));
+                http.setSocket(loadSocketConfig((Map<String, Object>) httpConfig.get("socket")));
+                http.setAcceptors((Integer) httpConfig.getOrDefault("acceptors", 1));
+                http.setIsolatedEventLoop((Boolean) httpConfig.getOrDefault("isolated-event-loop", false));
+                http.setHttp2((Boolean) httpConfig.getOrDefault("http2", false));
+                http.setResponseCacheSize(((Number) httpConfig.getOrDefault("response-cache-size", 16777216)).longValue());
             }
 
             // TCP配置
@@ -76,6 +94,11 @@ public class ConfigLoader {
                         config.setBacklog((Integer) tcpServerConfig.get("backlog"));
                         config.setDeviceIdleTime((Integer) tcpServerConfig.get("device-idle-time"));
                         config.setDeviceIdleTimeout((Integer) tcpServerConfig.get("device-idle-timeout"));
+                        config.setExecution(ExecutionMode.fromConfig((String) tcpServerConfig.get("execution"), ExecutionMode.EVENT_LOOP));
+                        config.setTransport(Transport.fromConfig((String) tcpServerConfig.get("transport"), Transport.AUTO));
+                        config.setSocket(loadSocketConfig((Map<String, Object>) tcpServerConfig.get("socket")));
+                        config.setAcceptors((Integer) tcpServerConfig.getOrDefault("acceptors", 1));
+                        config.setIsolatedEventLoop((Boolean) tcpServerConfig.getOrDefault("isolated-event-loop", false));
                         tcpServers.add(config);
                     }
                     serverConfig.setTcpServers(tcpServers);
@@ -84,6 +107,24 @@ public class ConfigLoader {
         }
         return serverConfig;
     }
+
+    /**
+     * 加载连接套接字参数，HTTP服务器和各TCP服务器使用相同的配置结构
+     */
+    private static SocketConfig loadSocketConfig(Map<String, Object> socketData) {
+        SocketConfig socket = new SocketConfig();
+        if (socketData != null) {
+            socket.setReceiveBufferSize((Integer) socketData.getOrDefault("so-rcvbuf", 0));
+            socket.setSendBufferSize((Integer) socketData.getOrDefault("so-sndbuf", 0));
+            socket.setWriteBufferLowWaterMark((Integer) socketData.getOrDefault("write-buffer-low-water-mark", 32 * 1024));
+            socket.setWriteBufferHighWaterMark((Integer) socketData.getOrDefault("write-buffer-high-water-mark", 64 * 1024));
+            socket.setTcpKeepIdle((Integer) socketData.getOrDefault("tcp-keepidle", 0));
+            socket.setTcpKeepInterval((Integer) socketData.getOrDefault("tcp-keepintvl", 0));
+            socket.setTcpKeepCount((Integer) socketData.getOrDefault("tcp-keepcnt", 0));
+            socket.setEdgeTriggered((Boolean) socketData.getOrDefault("edge-triggered", true));
+        }
+        return socket;
+    }
     @SuppressWarnings("unchecked")
     public static DatabaseConfig loadDatabaseConfig(Map<String, Object> configData) {
         Map<String, Object> dbData = (Map<String, Object>) configData.get("database");
@@ -104,6 +145,11 @@ public class ConfigLoader {
         StaticResourceConfig staticResourceConfig = new StaticResourceConfig();
         if (staticData != null) {
             staticResourceConfig.setPath((String) staticData.getOrDefault("path", "/static"));
+            staticResourceConfig.setDirectory((String) staticData.get("directory"));
+            staticResourceConfig.setOpenFileCacheSize((Integer) staticData.getOrDefault("open-file-cache-size", 1000));
+            staticResourceConfig.setOpenFileCacheValid((Integer) staticData.getOrDefault("open-file-cache-valid", 30));
+            staticResourceConfig.setGzipStatic((Boolean) staticData.getOrDefault("gzip-static", false));
+            staticResourceConfig.setGzipGenerate((Boolean) staticData.getOrDefault("gzip-generate", false));
             staticResourceConfig.setCacheEnabled((Boolean) staticData.getOrDefault("cache-enabled", true));
             staticResourceConfig.setCacheMaxAge((Integer) staticData.getOrDefault("cache-max-age", 3600));
             staticResourceConfig.setMaxCacheSize((Integer) staticData.getOrDefault("max-cache-size", 100));
@@ -135,9 +181,15 @@ public class ConfigLoader {
                 corsConfig.setMaxAge((Integer) cors.getOrDefault("max-age", 3600));
             }
             securityConfig.setMaxRequestsPerSecond((Integer) securityData.getOrDefault("maxRequestsPerSecond", 100));
+            securityConfig.setRequestBurst((Integer) securityData.getOrDefault("requestBurst", 0));
+            securityConfig.setRateLimitEntries((Integer) securityData.getOrDefault("rateLimitEntries", 65536));
+            securityConfig.setApiKeyHeader((String) securityData.getOrDefault("apiKeyHeader", ""));
+            securityConfig.setApiKeyRequestsPerSecond((Integer) securityData.getOrDefault("apiKeyRequestsPerSecond", 0));
+            securityConfig.setApiKeyBurst((Integer) securityData.getOrDefault("apiKeyBurst", 0));
             securityConfig.setMaxConnectionsPerIp((Integer) securityData.getOrDefault("maxConnectionsPerIp", 50));
-            securityConfig.setMaxRequestBodySize((Integer) securityData.getOrDefault("maxRequestBodySize", 10485760));
             securityConfig.setMaxMemoryUsage(Long.parseLong(securityData.getOrDefault("maxMemoryUsage", 1073741824L).toString()));
+            securityConfig.setMemoryPausePercent((Integer) securityData.getOrDefault("memoryPausePercent", 90));
+            securityConfig.setMemoryResumePercent((Integer) securityData.getOrDefault("memoryResumePercent", 70));
             securityConfig.setMaxDiskSpace(Long.parseLong(securityData.getOrDefault("maxDiskSpace", 1073741824L).toString()));
         }
         return securityConfig;
@@ -155,6 +207,19 @@ public class ConfigLoader {
         return threadPoolConfig;
     }
     @SuppressWarnings("unchecked")
+    public static EventLoopConfig loadEventLoopConfig(Map<String, Object> configData) {
+        Map<String, Object> eventLoopData = (Map<String, Object>) configData.get("event-loop");
+        EventLoopConfig eventLoopConfig = new EventLoopConfig();
+        if (eventLoopData != null) {
+            eventLoopConfig.setTransport(Transport.fromConfig((String) eventLoopData.get("transport"), Transport.AUTO));
+            eventLoopConfig.setBossThreads((Integer) eventLoopData.getOrDefault("boss-threads", 1));
+            eventLoopConfig.setWorkerThreads((Integer) eventLoopData.getOrDefault("worker-threads", 0));
+            eventLoopConfig.setShutdownQuietPeriod((Integer) eventLoopData.getOrDefault("shutdown-quiet-period", 2));
+            eventLoopConfig.setShutdownTimeout((Integer) eventLoopData.getOrDefault("shutdown-timeout", 15));
+        }
+        return eventLoopConfig;
+    }
+    @SuppressWarnings("unchecked")
     public static AuthConfig loadAuthConfig(Map<String, Object> configData) {
         Map<String, Object> authData = (Map<String, Object>) configData.get("auth");
         AuthConfig authConfig = new AuthConfig();
@@ -0,0 +1,189 @@
+package cn.fengin.tiny.context;
+
+import cn.fengin.tiny.config.EventLoopConfig;
+import cn.fengin.tiny.config.ServerConfig;
+import cn.fengin.tiny.config.Transport;
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.concurrent.Future;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * IO线程组资源
+ * 统一创建和关闭HTTP服务器、TCP服务器使用的Netty线程组：
+ * 1. 默认所有服务器共用一组boss/worker线程，服务器启动时获取，第一个服务器获取时创建
+ * 2. 配置为独立线程组或网络传输与共享线程组不同的服务器，使用自己的线程组
+ * 3. 服务器停止时释放，共享线程组在最后一个服务器释放后关闭；进程退出时统一优雅关闭所有线程组
+ *
+ * @author fengin
+ * @since 1.0.0
+ */
+public class EventLoopResources {
+    private static final Logger logger = LoggerFactory.getLogger(EventLoopResources.class);
+
+    private final EventLoopConfig config;
+    private final ServerConfig serverConfig;
+    /** 共享线程组，没有服务器使用时为null */
+    private Groups shared;
+    private int sharedUsers;
+    /** 使用中的独立线程组 */
+    private final Set<Groups> isolated = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    EventLoopResources(EventLoopConfig config, ServerConfig serverConfig) {
+        this.config = config;
+        this.serverConfig = serverConfig;
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "tiny-event-loop-shutdown"));
+    }
+
+    /**
+     * 获取服务器使用的线程组，服务器停止时需要调用release
+     * @param name 服务器名称，用于独立线程组的线程名
+     * @param transport 服务器配置的网络传输
+     * @param isolatedEventLoop 是否使用独立线程组
+     * @param bossThreads 独立线程组的boss线程数
+     * @param workerThreads 独立线程组的worker线程数
+     * @param acceptors 服务器的监听套接字数，参见TransportFactory.acceptors
+     */
+    public synchronized Groups acquire(String name, Transport transport, boolean isolatedEventLoop,
+                                       int bossThreads, int workerThreads, int acceptors) {
+        boolean epoll = TransportFactory.useEpoll(transport);
+        if (!isolatedEventLoop && epoll != TransportFactory.useEpoll(config.getTransport())) {
+            logger.warn("Server {} transport differs from shared event loop, using isolated event loop", name);
+            isolatedEventLoop = true;
+        }
+        if (isolatedEventLoop) {
+            // 每个监听套接字一个接收线程
+            Groups groups = new Groups(epoll, false,
+                    TransportFactory.newEventLoopGroup(epoll, Math.max(bossThreads, acceptors), name + "-boss"),
+                    TransportFactory.newEventLoopGroup(epoll, workerThreads, name + "-worker"));
+            isolated.add(groups);
+            return groups;
+        }
+        if (shared == null) {
+            int sharedBossThreads = Math.max(config.getBossThreads(), maxSharedAcceptors());
+            int sharedWorkerThreads = config.getWorkerThreads() > 0
+                    ? config.getWorkerThreads() : Runtime.getRuntime().availableProcessors();
+            shared = new Groups(epoll, true,
+                    TransportFactory.newEventLoopGroup(epoll, sharedBossThreads, "tiny-boss"),
+                    TransportFactory.newEventLoopGroup(epoll, sharedWorkerThreads, "tiny-worker"));
+            logger.info("Shared event loop initialized ({}), boss: {}, worker: {}",
+                    epoll ? "epoll" : "nio", sharedBossThreads, sharedWorkerThreads);
+        }
+        sharedUsers++;
+        return shared;
+    }
+
+    /**
+     * 释放服务器使用的线程组
+     * 独立线程组直接关闭，共享线程组在没有服务器使用后关闭
+     */
+    public synchronized void release(Groups groups) {
+        if (groups == null) {
+            return;
+        }
+        if (!groups.shared) {
+            if (isolated.remove(groups)) {
+                shutdown(groups);
+            }
+            return;
+        }
+        if (groups == shared && --sharedUsers == 0) {
+            shutdown(shared);
+            shared = null;
+        }
+    }
+
+    /**
+     * 优雅关闭所有线程组，等待线程结束
+     * 进程退出时自动调用
+     */
+    public void shutdown() {
+        List<Future<?>> futures = new ArrayList<>();
+        synchronized (this) {
+            if (shared != null) {
+                futures.addAll(shutdown(shared));
+                shared = null;
+                sharedUsers = 0;
+            }
+            for (Groups groups : isolated) {
+                futures.addAll(shutdown(groups));
+            }
+            isolated.clear();
+        }
+        for (Future<?> future : futures) {
+            future.awaitUninterruptibly(config.getShutdownTimeout(), TimeUnit.SECONDS);
+        }
+    }
+
+    private List<Future<?>> shutdown(Groups groups) {
+        List<Future<?>> futures = new ArrayList<>(2);
+        futures.add(groups.bossGroup.shutdownGracefully(config.getShutdownQuietPeriod(), config.getShutdownTimeout(), TimeUnit.SECONDS));
+        futures.add(groups.workerGroup.shutdownGracefully(config.getShutdownQuietPeriod(), config.getShutdownTimeout(), TimeUnit.SECONDS));
+        return futures;
+    }
+
+    /**
+     * 使用共享线程组的服务器中最大的监听套接字数，共享boss线程数不少于该值
+     */
+    private int maxSharedAcceptors() {
+        int max = 1;
+        ServerConfig.HttpConfig http = serverConfig.getHttp();
+        if (http != null && !http.isIsolatedEventLoop()) {
+            max = Math.max(max, http.getAcceptors());
+        }
+        if (serverConfig.getTcpServers() != null) {
+            for (ServerConfig.TcpServerConfig tcp : serverConfig.getTcpServers()) {
+                if (!tcp.isIsolatedEventLoop()) {
+                    max = Math.max(max, tcp.getAcceptors());
+                }
+            }
+        }
+        return max;
+    }
+
+    /**
+     * 服务器使用的boss/worker线程组
+     */
+    public static final class Groups {
+        private final boolean epoll;
+        private final boolean shared;
+        private final EventLoopGroup bossGroup;
+        private final EventLoopGroup workerGroup;
+
+        private Groups(boolean epoll, boolean shared, EventLoopGroup bossGroup, EventLoopGroup workerGroup) {
+            this.epoll = epoll;
+            this.shared = shared;
+            this.bossGroup = bossGroup;
+            this.workerGroup = workerGroup;
+        }
+
+        /**
+         * 是否使用epoll传输
+         */
+        public boolean isEpoll() {
+            return epoll;
+        }
+
+        /**
+         * 是否是共享线程组
+         */
+        public boolean isShared() {
+            return shared;
+        }
+
+        public EventLoopGroup getBossGroup() {
+            return bossGroup;
+        }
+
+        public EventLoopGroup getWorkerGroup() {
+            return workerGroup;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package cn.fengin.tiny.context;
+
+import cn.fengin.tiny.config.ThreadPoolConfig;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 线程池工厂
+ * 根据ThreadPoolConfig创建业务线程池，以及JDK21及以上版本的虚拟线程执行器
+ *
+ * @author fengin
+ * @since 1.0.0
+ */
+public class ThreadPoolFactory {
+    private static final Logger logger = LoggerFactory.getLogger(ThreadPoolFactory.class);
+
+    /**
+     * 创建有界业务线程池
+     * 队列满且线程数达到最大值时直接拒绝（抛出RejectedExecutionException），由调用方决定如何降级
+     *
+     * @param config 线程池配置
+     * @param namePrefix 线程名前缀
+     */
+    public static ThreadPoolExecutor createBoundedPool(ThreadPoolConfig config, String namePrefix) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                config.getCoreSize(),
+                Math.max(config.getCoreSize(), config.getMaxSize()),
+                config.getKeepAliveSeconds(), TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, config.getQueueCapacity())),
+                namedThreadFactory(namePrefix),
+                new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(false);
+        return executor;
+    }
+
+    /**
+     * 创建带名称前缀的守护线程工厂
+     */
+    public static ThreadFactory namedThreadFactory(String namePrefix) {
+        AtomicInteger counter = new AtomicInteger(0);
+        return r -> {
+            Thread thread = new Thread(r, namePrefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * 创建虚拟线程执行器，每个任务一个虚拟线程
+     * 框架按JDK1.8编译，通过反射调用JDK21的Thread.ofVirtual()和Executors.newThreadPerTaskExecutor()
+     *
+     * @param namePrefix 线程名前缀
+     * @return 虚拟线程执行器，当前JDK不支持虚拟线程时返回null
+     */
+    public static ExecutorService createVirtualThreadExecutor(String namePrefix) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, namePrefix + "-", 1L);
+            ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            Method newExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            return (ExecutorService) newExecutor.invoke(null, factory);
+        } catch (NoSuchMethodException | ClassNotFoundException e) {
+            return null;
+        } catch (Exception e) {
+            logger.warn("Failed to create virtual thread executor", e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package cn.fengin.tiny.context;
+
+import cn.fengin.tiny.config.SocketConfig;
+import cn.fengin.tiny.config.Transport;
+import cn.fengin.tiny.exception.ConfigException;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollMode;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * 网络传输工厂
+ * 按Transport配置选择NIO或epoll的线程组和服务端Channel，并按SocketConfig设置连接参数
+ * epoll传输下可以用SO_REUSEPORT在同一端口绑定多个监听套接字，由内核把新连接分散到多个接收线程
+ *
+ * @author fengin
+ * @since 1.0.0
+ */
+public class TransportFactory {
+    private static final Logger logger = LoggerFactory.getLogger(TransportFactory.class);
+
+    /**
+     * 判断是否使用epoll传输
+     * auto时按epoll本地库是否可以加载决定，epoll时本地库不可用则抛出ConfigException
+     */
+    public static boolean useEpoll(Transport transport) {
+        switch (transport) {
+            case NIO:
+                return false;
+            case EPOLL:
+                if (!Epoll.isAvailable()) {
+                    throw new ConfigException("Epoll transport is not available", Epoll.unavailabilityCause());
+                }
+                return true;
+            default:
+                return Epoll.isAvailable();
+        }
+    }
+
+    /**
+     * 计算实际使用的监听套接字数
+     * 多个监听套接字需要SO_REUSEPORT，只有epoll传输支持，NIO时只绑定一个
+     * @param acceptors 配置的监听套接字数
+     */
+    public static int acceptors(int acceptors, boolean epoll) {
+        if (acceptors > 1 && !epoll) {
+            logger.warn("Multiple acceptors require epoll transport, binding a single acceptor");
+            return 1;
+        }
+        return Math.max(1, acceptors);
+    }
+
+    /**
+     * 绑定端口
+     * 多个监听套接字时设置SO_REUSEPORT后在同一端口绑定多次，每个监听套接字注册到boss线程组中的不同线程，
+     * boss线程数不少于监听套接字数时各自独立接收连接，重连高峰时不会只有一个线程在accept
+     * @param acceptors 监听套接字数，由acceptors(int, boolean)计算
+     * @return 绑定的服务端Channel
+     */
+    public static List<Channel> bind(ServerBootstrap bootstrap, int port, int acceptors) throws InterruptedException {
+        if (acceptors > 1) {
+            bootstrap.option(EpollChannelOption.SO_REUSEPORT, true);
+        }
+        List<Channel> channels = new ArrayList<>(acceptors);
+        try {
+            for (int i = 0; i < acceptors; i++) {
+                channels.add(bootstrap.bind(port).sync().channel());
+            }
+        } catch (InterruptedException | RuntimeException e) {
+            for (Channel channel : channels) {
+                channel.close();
+            }
+            throw e;
+        }
+        return channels;
+    }
+
+    /**
+     * 创建IO线程组
+     * @param threads 线程数，0表示使用Netty默认值（CPU核心数*2）
+     * @param namePrefix 线程名前缀
+     */
+    public static EventLoopGroup newEventLoopGroup(boolean epoll, int threads, String namePrefix) {
+        ThreadFactory threadFactory = new DefaultThreadFactory(namePrefix);
+        return epoll ? new EpollEventLoopGroup(threads, threadFactory) : new NioEventLoopGroup(threads, threadFactory);
+    }
+
+    /**
+     * 设置服务端Channel类型和连接参数
+     */
+    public static void configure(ServerBootstrap bootstrap, boolean epoll, SocketConfig socket) {
+        bootstrap.channel(epoll ? EpollServerSocketChannel.class : NioServerSocketChannel.class)
+                .childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(
+                        socket.getWriteBufferLowWaterMark(),
+                        Math.max(socket.getWriteBufferLowWaterMark(), socket.getWriteBufferHighWaterMark())));
+        // 接收窗口大于64K时需要在监听套接字上设置，连接建立时才能协商窗口缩放
+        if (socket.getReceiveBufferSize() > 0) {
+            bootstrap.option(ChannelOption.SO_RCVBUF, socket.getReceiveBufferSize())
+                    .childOption(ChannelOption.SO_RCVBUF, socket.getReceiveBufferSize());
+        }
+        if (socket.getSendBufferSize() > 0) {
+            bootstrap.childOption(ChannelOption.SO_SNDBUF, socket.getSendBufferSize());
+        }
+        if (!epoll) {
+            if (socket.getTcpKeepIdle() > 0 || socket.getTcpKeepInterval() > 0 || socket.getTcpKeepCount() > 0) {
+                logger.warn("TCP keepalive tuning requires epoll transport, using system defaults");
+            }
+            return;
+        }
+        EpollMode mode = socket.isEdgeTriggered() ? EpollMode.EDGE_TRIGGERED : EpollMode.LEVEL_TRIGGERED;
+        bootstrap.option(EpollChannelOption.EPOLL_MODE, mode)
+                .childOption(EpollChannelOption.EPOLL_MODE, mode);
+        if (socket.getTcpKeepIdle() > 0) {
+            bootstrap.childOption(EpollChannelOption.TCP_KEEPIDLE, socket.getTcpKeepIdle());
+        }
+        if (socket.getTcpKeepInterval() > 0) {
+            bootstrap.childOption(EpollChannelOption.TCP_KEEPINTVL, socket.getTcpKeepInterval());
+        }
+        if (socket.getTcpKeepCount() > 0) {
+            bootstrap.childOption(EpollChannelOption.TCP_KEEPCNT, socket.getTcpKeepCount());
+        }
+    }
+}
@@ -10,10 +10,13 @@ import java.sql.DriverManager;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * 数据库连接池
  * 管理SQLite连接的创建、获取和释放
+ * 获取连接的等待基于ArrayBlockingQueue（ReentrantLock+Condition），初始化使用ReentrantLock而不是synchronized，
+ * 在虚拟线程中等待时只挂起虚拟线程，不会占住（pin）载体线程
  *
  * @author fengin
  * @since 1.0.0
@@ -27,6 +30,7 @@ public class ConnectionPool {
     private final int poolSize;
     
     private static volatile ConnectionPool instance;
+    private static final ReentrantLock INSTANCE_LOCK = new ReentrantLock();
     
     private ConnectionPool() {
         DatabaseConfig dbConfig = ApplicationContext.getInstance().getDatabaseConfig();
@@ -39,10 +43,14 @@ public class ConnectionPool {
     
     public static ConnectionPool getInstance() {
         if (instance == null) {
-            synchronized (ConnectionPool.class) {
+            // 初始化要创建数据库连接，不能在synchronized中进行，否则并发的虚拟线程会占住载体线程
+            INSTANCE_LOCK.lock();
+            try {
                 if (instance == null) {
                     instance = new ConnectionPool();
                 }
+            } finally {
+                INSTANCE_LOCK.unlock();
             }
         }
         return instance;
@@ -75,6 +83,7 @@ public class ConnectionPool {
     
     /**
      * 获取数据库连接
+     * 连接池为空时最多等待MAX_WAIT_MILLIS毫秒，虚拟线程等待时会让出载体线程
      */
     public Connection getConnection() throws Exception {
         Connection conn = pool.poll(MAX_WAIT_MILLIS, TimeUnit.MILLISECONDS);
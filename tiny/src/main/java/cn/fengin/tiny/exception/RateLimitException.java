@@ -0,0 +1,31 @@
+package cn.fengin.tiny.exception;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 请求超过限流速率异常
+ * 返回429，响应头Retry-After为需要等待的秒数
+ *
+ * @author fengin
+ * @since 1.0.0
+ */
+public class RateLimitException extends HttpException {
+    public static final int ERROR_CODE = 429;
+
+    private final long retryAfterSeconds;
+
+    /**
+     * @param waitMicros 需要等待的微秒数，向上取整为秒，至少1秒
+     */
+    public RateLimitException(long waitMicros) {
+        super(ERROR_CODE, "Too many requests");
+        this.retryAfterSeconds = Math.max(1, (waitMicros + TimeUnit.SECONDS.toMicros(1) - 1) / TimeUnit.SECONDS.toMicros(1));
+    }
+
+    /**
+     * 需要等待的秒数
+     */
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,31 @@
+package cn.fengin.tiny.http;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * 异步路由处理器接口
+ * 处理器不需要在返回前写出响应，而是返回一个CompletionStage，在等待设备回复、数据库写入等操作时不占用线程
+ * 例如：
+ * Router.getAsync("/api/device/reply", (request, response) ->
+ *     deviceService.query(request.getParameter("id"))
+ *         .thenAccept(result -> response.write(result)));
+ *
+ * 完成时的处理：
+ * 1. 正常完成后执行拦截器的后置处理和完成处理
+ * 2. 异常完成或超时（server.http.async-timeout）由ExceptionHandler返回错误响应
+ * 3. 正常完成但没有写出响应时返回500
+ *
+ * @author fengin
+ * @since 1.0.0
+ */
+@FunctionalInterface
+public interface AsyncRouteHandler {
+    /**
+     * 处理HTTP请求
+     *
+     * @param request HTTP请求对象，包含请求的所有信息
+     * @param response HTTP响应对象，用于发送响应，可以在任意线程中调用
+     * @return 请求处理完成的通知，为null时表示已经同步处理完成
+     */
+    CompletionStage<?> handle(HttpRequest request, HttpResponse response);
+}
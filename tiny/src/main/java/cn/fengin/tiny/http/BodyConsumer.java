@@ -0,0 +1,41 @@
+package cn.fengin.tiny.http;
+
+import io.netty.buffer.ByteBuf;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * 请求体流式消费接口
+ * 通过Route.bodyConsumer注册，请求体不再整体缓存在内存中，而是按收到的数据块依次交给消费者，
+ * 适合固件、配置文件等大文件上传直接写入磁盘或转发，内存占用与请求体大小无关
+ *
+ * 调用约定：
+ * 1. 所有方法都在连接的IO线程中按顺序调用，不能阻塞
+ * 2. onData返回null表示已经处理完该数据块；返回未完成的CompletionStage时暂停读取连接，完成后再继续，
+ *    耗时的写入可以交给其他线程执行并返回其CompletableFuture，实现背压
+ * 3. 数据块在onData返回的CompletionStage完成前有效，之后由框架释放，消费者需要保留时自行retain
+ * 4. 请求体接收完成后调用onComplete，然后按普通路由执行拦截器和路由处理器，
+ *    路由处理器通过HttpRequest.getBodyConsumer获取消费者读取结果
+ * 5. 请求体超过大小限制、处理出错或连接断开时调用onError，不再执行路由处理器
+ *
+ * @author fengin
+ * @since 1.0.0
+ */
+public interface BodyConsumer {
+    /**
+     * 处理一个请求体数据块
+     * @param chunk 数据块
+     * @return 数据块处理完成的通知，为null时表示已经处理完成
+     */
+    CompletionStage<?> onData(ByteBuf chunk) throws Exception;
+
+    /**
+     * 请求体接收完成
+     */
+    default void onComplete() throws Exception {}
+
+    /**
+     * 请求体接收失败，用于清理已经写入的数据
+     */
+    default void onError(Throwable cause) {}
+}
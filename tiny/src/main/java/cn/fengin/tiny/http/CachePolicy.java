@@ -0,0 +1,75 @@
+package cn.fengin.tiny.http;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 路由响应缓存策略
+ * 注册GET路由时指定，响应在有效期内直接从缓存返回，不再执行路由处理器，例如：
+ * Router.get("/api/admin/device/info", deviceController::getInfo, CachePolicy.ttl(5, TimeUnit.SECONDS));
+ * 缓存按请求路径区分，需要按查询参数或请求头区分的响应通过varyByQuery、varyByHeader指定，
+ * 其他查询参数和请求头不影响缓存命中
+ * 数据变化时通过Router.invalidateCache或Route.invalidateCache使缓存失效
+ *
+ * @author fengin
+ * @since 1.0.0
+ */
+public final class CachePolicy {
+    private final long ttlMillis;
+    private final List<String> queryParams = new ArrayList<>();
+    private final List<String> headers = new ArrayList<>();
+
+    private CachePolicy(long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * 创建缓存策略
+     * @param duration 缓存有效时间
+     * @param unit 时间单位
+     */
+    public static CachePolicy ttl(long duration, TimeUnit unit) {
+        if (duration <= 0) {
+            throw new IllegalArgumentException("Cache ttl must be positive: " + duration);
+        }
+        return new CachePolicy(unit.toMillis(duration));
+    }
+
+    /**
+     * 按查询参数区分缓存，例如分页参数
+     * @param names 参数名
+     * @return 当前策略，支持链式调用
+     */
+    public CachePolicy varyByQuery(String... names) {
+        queryParams.addAll(Arrays.asList(names));
+        return this;
+    }
+
+    /**
+     * 按请求头区分缓存，例如按Accept-Language返回不同语言的响应
+     * @param names 请求头名称，不区分大小写
+     * @return 当前策略，支持链式调用
+     */
+    public CachePolicy varyByHeader(String... names) {
+        headers.addAll(Arrays.asList(names));
+        return this;
+    }
+
+    /**
+     * 缓存有效时间（毫秒）
+     */
+    public long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    public List<String> getQueryParams() {
+        return Collections.unmodifiableList(queryParams);
+    }
+
+    public List<String> getHeaders() {
+        return Collections.unmodifiableList(headers);
+    }
+}
@@ -1,83 +1,127 @@
 package cn.fengin.tiny.http;
 
+import cn.fengin.tiny.exception.HttpException;
+import cn.fengin.tiny.http.handler.BodyFullHttpRequest;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
 import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpHeaders;
 import io.netty.handler.codec.http.HttpMethod;
 import io.netty.handler.codec.http.QueryStringDecoder;
 import io.netty.handler.codec.http.multipart.*;
 import io.netty.util.CharsetUtil;
 import lombok.Getter;
+import lombok.Setter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectReader;
 import java.util.Map;
 
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 
 /**
  * HTTP请求包装类
  * 封装请求参数解析等功能
+ * 按需解析：请求头直接读取Netty的HttpHeaders（不区分大小写），查询参数、表单和JSON参数在第一次读取参数时才解析，
+ * 只读取路径和请求头的处理器不会产生解析开销
+ * 请求对象只在请求处理期间有效，异步处理时框架会保留到处理完成
  *
  * @author fengin
  * @since 1.0.0
  */
 public class HttpRequest {
     private static final Logger logger = LoggerFactory.getLogger(HttpRequest.class);
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<Map<String, Object>>() {};
     private final FullHttpRequest nettyRequest;
-    private final Map<String, String> parameters = new HashMap<>();
-    private final Map<String, String> headers = new HashMap<>();
-    private final Map<String, Object> attributes = new HashMap<>();
-    @Getter
+    /** 请求参数，第一次读取时解析 */
+    private Map<String, String> parameters;
+    /** 请求头只读视图，第一次读取时创建 */
+    private Map<String, String> headers;
+    private Map<String, Object> attributes;
+    private Map<String, String> pathVariables;
+    /** JSON请求体，第一次读取时解码 */
     private String body;
-    
-    public HttpRequest(FullHttpRequest request) {
-        this.nettyRequest = request;
-        parseHeaders();
-        parseParameters();
-        parseBody();
-    }
-    
     /**
-     * 解析请求头
+     * 请求在连接上的序号，用于保证管道化请求的响应顺序，由框架设置
+     */
+    @Getter
+    @Setter
+    private int sequence = -1;
+    /**
+     * 响应后是否保持连接，由框架根据配置、请求头和协议版本设置
+     */
+    @Getter
+    @Setter
+    private boolean keepAlive;
+    /**
+     * 是否已经写出响应，每个请求只写出一次响应
      */
-    private void parseHeaders() {
-        nettyRequest.headers().entries().forEach(entry -> 
-            headers.put(entry.getKey().toLowerCase(), entry.getValue()));
+    private final AtomicBoolean responded = new AtomicBoolean(false);
+
+    public HttpRequest(FullHttpRequest request) {
+        this.nettyRequest = request;
     }
-    
+
     /**
      * 解析请求参数
-     * 包括URL查询参数和POST表单参数
-     */
-    private void parseParameters() {
-        // 解析URL参数
-        QueryStringDecoder queryDecoder = new QueryStringDecoder(nettyRequest.uri());
-        queryDecoder.parameters().forEach((key, value) -> {
-            if (!value.isEmpty()) {
-                parameters.put(key, value.get(0));
+     * 包括URL查询参数、POST表单参数和JSON请求体的顶层字段
+     */
+    private Map<String, String> parameters() {
+        Map<String, String> params = parameters;
+        if (params != null) {
+            return params;
+        }
+        params = new HashMap<>();
+        // 解析URL参数，没有查询参数时不创建解码器
+        String uri = nettyRequest.uri();
+        if (uri.indexOf('?') >= 0) {
+            QueryStringDecoder queryDecoder = new QueryStringDecoder(uri);
+            for (Map.Entry<String, List<String>> entry : queryDecoder.parameters().entrySet()) {
+                if (!entry.getValue().isEmpty()) {
+                    params.put(entry.getKey(), entry.getValue().get(0));
+                }
             }
-        });
-            
-        // 解析POST参数
-        if (nettyRequest.method() == HttpMethod.POST) {
-            String contentType = getHeader("content-type");
-            if (contentType != null) {
+        }
+
+        HttpPostRequestDecoder uploadDecoder = uploadDecoder();
+        String contentType = getHeader("content-type");
+        if (uploadDecoder != null) {
+            // 上传请求已经边接收边解码
+            readUploadData(uploadDecoder, params);
+        } else if (contentType != null) {
+            // 解析POST参数
+            if (nettyRequest.method() == HttpMethod.POST) {
                 if (contentType.contains("application/x-www-form-urlencoded")) {
-                    parseFormData();
+                    parseFormData(params);
                 } else if (contentType.contains("multipart/form-data")) {
-                    parseMultipartData();
+                    parseMultipartData(params);
                 }
             }
+            if (contentType.contains("application/json")) {
+                parseJsonParameters(params);
+            }
         }
+        parameters = params;
+        return params;
     }
-    
+
     /**
      * 解析application/x-www-form-urlencoded表单数据
      */
-    private void parseFormData() {
+    private void parseFormData(Map<String, String> params) {
         HttpPostRequestDecoder decoder = null;
         try {
             decoder = new HttpPostRequestDecoder(new DefaultHttpDataFactory(false), nettyRequest);
@@ -85,7 +129,7 @@ public class HttpRequest {
                 if (data.getHttpDataType() == InterfaceHttpData.HttpDataType.Attribute) {
                     Attribute attribute = (Attribute) data;
                     try {
-                        parameters.put(attribute.getName(), attribute.getValue());
+                        params.put(attribute.getName(), attribute.getValue());
                     } catch (IOException e) {
                         logger.error("Failed to get attribute value", e);
                     }
@@ -99,11 +143,11 @@ public class HttpRequest {
             }
         }
     }
-    
+
     /**
      * 解析multipart/form-data表单数据
      */
-    private void parseMultipartData() {
+    private void parseMultipartData(Map<String, String> params) {
         HttpPostRequestDecoder decoder = null;
         try {
             decoder = new HttpPostRequestDecoder(new DefaultHttpDataFactory(false), nettyRequest);
@@ -111,7 +155,7 @@ public class HttpRequest {
                 if (data.getHttpDataType() == InterfaceHttpData.HttpDataType.Attribute) {
                     Attribute attribute = (Attribute) data;
                     try {
-                        parameters.put(attribute.getName(), attribute.getValue());
+                        params.put(attribute.getName(), attribute.getValue());
                     } catch (IOException e) {
                         logger.error("Failed to get attribute value", e);
                     }
@@ -119,7 +163,7 @@ public class HttpRequest {
                     FileUpload fileUpload = (FileUpload) data;
                     if (fileUpload.isCompleted()) {
                         // 处理文件上传，这里只存储文件名
-                        parameters.put(fileUpload.getName(), fileUpload.getFilename());
+                        params.put(fileUpload.getName(), fileUpload.getFilename());
                     }
                 }
             }
@@ -131,45 +175,168 @@ public class HttpRequest {
             }
         }
     }
-    
+
     /**
-     * 解析请求体
+     * 读取上传解码器中的表单参数，文件参数的值为文件名
      */
-    private void parseBody() {
-        String contentType = getHeader("content-type");
-        if (contentType != null && contentType.contains("application/json")) {
-            body = nettyRequest.content().toString(CharsetUtil.UTF_8);
-            // 如果是JSON请求体，尝试解析JSON参数
+    private void readUploadData(HttpPostRequestDecoder uploadDecoder, Map<String, String> params) {
+        for (InterfaceHttpData data : uploadDecoder.getBodyHttpDatas()) {
             try {
-                ObjectMapper objectMapper = new ObjectMapper();
-                Map<String, Object> jsonParams = objectMapper.readValue(body, new TypeReference<Map<String, Object>>() {});
-                jsonParams.forEach((key, value) -> {
-                    if (value != null) {
-                        parameters.put(key, value.toString());
-                    }
-                });
-            } catch (Exception e) {
-                logger.debug("Failed to parse JSON body as parameters", e);
+                if (data.getHttpDataType() == InterfaceHttpData.HttpDataType.Attribute) {
+                    params.put(data.getName(), ((Attribute) data).getValue());
+                } else if (data.getHttpDataType() == InterfaceHttpData.HttpDataType.FileUpload) {
+                    params.put(data.getName(), ((FileUpload) data).getFilename());
+                }
+            } catch (IOException e) {
+                logger.error("Failed to get attribute value", e);
+            }
+        }
+    }
+
+    private HttpPostRequestDecoder uploadDecoder() {
+        return nettyRequest instanceof BodyFullHttpRequest
+                ? ((BodyFullHttpRequest) nettyRequest).getUploadDecoder() : null;
+    }
+
+    /**
+     * 获取上传的文件，仅设置了Route.upload的路由可用
+     * 较大的文件已经写入临时文件，请求处理完成后删除，需要保留时使用FileUpload.renameTo
+     * @param name 表单字段名
+     * @return 上传的文件，没有时返回null
+     */
+    public FileUpload getFile(String name) {
+        HttpPostRequestDecoder uploadDecoder = uploadDecoder();
+        if (uploadDecoder == null) {
+            return null;
+        }
+        InterfaceHttpData data = uploadDecoder.getBodyHttpData(name);
+        return data instanceof FileUpload ? (FileUpload) data : null;
+    }
+
+    /**
+     * 获取全部上传的文件，仅设置了Route.upload的路由可用
+     */
+    public List<FileUpload> getFiles() {
+        List<FileUpload> files = new ArrayList<>();
+        HttpPostRequestDecoder uploadDecoder = uploadDecoder();
+        if (uploadDecoder != null) {
+            for (InterfaceHttpData data : uploadDecoder.getBodyHttpDatas()) {
+                if (data instanceof FileUpload) {
+                    files.add((FileUpload) data);
+                }
+            }
+        }
+        return files;
+    }
+
+    /**
+     * 获取请求体消费者，仅设置了Route.bodyConsumer的路由可用
+     * @return 接收了本请求请求体的消费者，没有时返回null
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends BodyConsumer> T getBodyConsumer() {
+        return nettyRequest instanceof BodyFullHttpRequest
+                ? (T) ((BodyFullHttpRequest) nettyRequest).getBodyConsumer() : null;
+    }
+
+    /**
+     * 解析JSON请求体的顶层字段作为参数
+     */
+    private void parseJsonParameters(Map<String, String> params) {
+        try {
+            Map<String, Object> jsonParams = readBody(JsonSupport.reader(MAP_TYPE));
+            if (jsonParams == null) {
+                return;
+            }
+            jsonParams.forEach((key, value) -> {
+                if (value != null) {
+                    params.put(key, value.toString());
+                }
+            });
+        } catch (Exception e) {
+            logger.debug("Failed to parse JSON body as parameters", e);
+        }
+    }
+
+    /**
+     * 将JSON请求体转换为指定类型的对象，直接从请求的ByteBuf解析，不经过中间字符串
+     * @return 请求体为空时返回null
+     * @throws HttpException 请求体不是合法的JSON时抛出，返回400
+     */
+    public <T> T bodyAs(Class<T> type) {
+        return bodyAs(JsonSupport.reader(type));
+    }
+
+    /**
+     * 将JSON请求体转换为指定泛型类型的对象，例如 bodyAs(new TypeReference<List<Device>>() {})
+     * @return 请求体为空时返回null
+     * @throws HttpException 请求体不是合法的JSON时抛出，返回400
+     */
+    public <T> T bodyAs(TypeReference<T> type) {
+        return bodyAs(JsonSupport.reader(type));
+    }
+
+    private <T> T bodyAs(ObjectReader reader) {
+        try {
+            return readBody(reader);
+        } catch (IOException e) {
+            // 解析错误的详细信息可能包含请求体的内容，只记录在异常原因中，不返回给客户端
+            throw new HttpException(HttpException.ERROR_CODE, "Invalid JSON body", e);
+        }
+    }
+
+    /**
+     * 从请求体读取JSON，堆内存直接读数组，直接内存通过ByteBufInputStream读取
+     */
+    private <T> T readBody(ObjectReader reader) throws IOException {
+        ByteBuf content = nettyRequest.content();
+        int length = content.readableBytes();
+        if (length == 0) {
+            return null;
+        }
+        if (content.hasArray()) {
+            return reader.readValue(content.array(), content.arrayOffset() + content.readerIndex(), length);
+        }
+        // 使用duplicate，不改变原请求体的读索引
+        try (InputStream in = new ByteBufInputStream(content.duplicate())) {
+            return reader.readValue(in);
+        }
+    }
+
+    /**
+     * 获取JSON请求体，非JSON请求返回null
+     */
+    public String getBody() {
+        String json = body;
+        if (json == null) {
+            String contentType = getHeader("content-type");
+            if (contentType != null && contentType.contains("application/json")) {
+                json = nettyRequest.content().toString(CharsetUtil.UTF_8);
+                body = json;
             }
         }
+        return json;
     }
-    
+
     public String getParameter(String name) {
-        return parameters.get(name);
+        return parameters().get(name);
     }
-    
+
+    /**
+     * 获取请求头，不区分大小写
+     */
     public String getHeader(String name) {
-        return headers.get(name.toLowerCase());
+        return nettyRequest.headers().get(name);
     }
 
     public HttpMethod getMethod() {
         return nettyRequest.method();
     }
-    
+
     public String getUri() {
         return nettyRequest.uri();
     }
-    
+
     /**
      * 获取请求路径（不含查询参数）
      */
@@ -178,20 +345,130 @@ public class HttpRequest {
         int queryIndex = uri.indexOf('?');
         return queryIndex > 0 ? uri.substring(0, queryIndex) : uri;
     }
-    
+
+    /**
+     * 获取全部请求参数，只读
+     */
     public Map<String, String> getParameters() {
-        return new HashMap<>(parameters);
+        return Collections.unmodifiableMap(parameters());
     }
-    
+
+    /**
+     * 获取全部请求头，只读视图，键为小写的请求头名称，查找时不区分大小写
+     */
     public Map<String, String> getHeaders() {
-        return new HashMap<>(headers);
+        if (headers == null) {
+            headers = new HeadersView(nettyRequest.headers());
+        }
+        return headers;
+    }
+
+    /**
+     * 获取路径变量，例如路由 /api/device/{id} 中的id
+     */
+    public String getPathVariable(String name) {
+        return pathVariables == null ? null : pathVariables.get(name);
+    }
+
+    /**
+     * 获取全部路径变量，只读
+     */
+    public Map<String, String> getPathVariables() {
+        return pathVariables == null ? Collections.emptyMap() : Collections.unmodifiableMap(pathVariables);
+    }
+
+    /**
+     * 设置路径变量，由Router匹配路由时调用
+     */
+    void setPathVariable(String name, String value) {
+        if (pathVariables == null) {
+            pathVariables = new HashMap<>(4);
+        }
+        pathVariables.put(name, value);
+    }
+
+    /**
+     * 是否已经写出响应
+     */
+    public boolean isResponded() {
+        return responded.get();
+    }
+
+    /**
+     * 标记响应已写出，由HttpResponseUtil写出响应时调用
+     * @return 首次标记返回true，已经写出过响应返回false
+     */
+    boolean markResponded() {
+        return responded.compareAndSet(false, true);
     }
-    
+
     public void setAttribute(String name, Object value) {
+        if (attributes == null) {
+            attributes = new HashMap<>(4);
+        }
         attributes.put(name, value);
     }
-    
+
     public Object getAttribute(String name) {
-        return attributes.get(name);
+        return attributes == null ? null : attributes.get(name);
+    }
+
+    /**
+     * 请求头只读视图，直接读取Netty的HttpHeaders，不复制
+     * 同名请求头有多个值时取第一个
+     */
+    private static final class HeadersView extends AbstractMap<String, String> {
+        private final HttpHeaders headers;
+
+        HeadersView(HttpHeaders headers) {
+            this.headers = headers;
+        }
+
+        @Override
+        public String get(Object key) {
+            return key instanceof CharSequence ? headers.get((CharSequence) key) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof CharSequence && headers.contains((CharSequence) key);
+        }
+
+        @Override
+        public int size() {
+            return headers.names().size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return headers.isEmpty();
+        }
+
+        @Override
+        public Set<Entry<String, String>> entrySet() {
+            return new AbstractSet<Entry<String, String>>() {
+                @Override
+                public Iterator<Entry<String, String>> iterator() {
+                    Iterator<String> names = headers.names().iterator();
+                    return new Iterator<Entry<String, String>>() {
+                        @Override
+                        public boolean hasNext() {
+                            return names.hasNext();
+                        }
+
+                        @Override
+                        public Entry<String, String> next() {
+                            String name = names.next();
+                            return new SimpleImmutableEntry<>(name.toLowerCase(), headers.get(name));
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return HeadersView.this.size();
+                }
+            };
+        }
     }
-} 
\ No newline at end of file
+}
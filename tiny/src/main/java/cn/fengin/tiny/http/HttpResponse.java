@@ -1,18 +1,57 @@
 package cn.fengin.tiny.http;
 
+import cn.fengin.tiny.context.ApplicationContext;
+import cn.fengin.tiny.exception.HttpException;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpChunkedInput;
+import io.netty.handler.codec.http.HttpHeaderNames;
 import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.HashMap;
 import java.util.Map;
 
 public class HttpResponse {
+    /**
+     * writeJson默认的初始缓冲区大小（字节），不够时自动扩容
+     */
+    private static final int DEFAULT_JSON_BUFFER_SIZE = 512;
+
     private ChannelHandlerContext ctx;
+    /**
+     * 响应对应的请求，决定响应序号和是否保持连接；为空时按连接上当前正在处理的请求
+     */
+    private HttpRequest request;
     private Map<String,String> headers = new HashMap<>();
+    /**
+     * writeJson的初始缓冲区大小（字节），由路由的responseSize设置，0表示使用默认值
+     */
+    private int bufferSizeHint;
+    /**
+     * 响应缓存键和策略，由Router按路由的缓存策略设置，写出的完整响应同时放入缓存
+     */
+    private String cacheKey;
+    private CachePolicy cachePolicy;
+    /**
+     * 合并执行的请求，由Router设置，写出的完整响应共享给等待的相同请求
+     */
+    private RequestCoalescer.Flight flight;
     public HttpResponse(ChannelHandlerContext ctx){
         this.ctx = ctx;
     }
 
+    public HttpResponse(ChannelHandlerContext ctx, HttpRequest request){
+        this.ctx = ctx;
+        this.request = request;
+    }
+
     /**
      * 设置响应头
      * @param key
@@ -26,22 +65,93 @@ public class HttpResponse {
      * @param str
      */
     public void write(String str){
-        HttpResponseUtil.send(ctx, str,headers);
+        send(HttpResponseUtil.jsonResponse(str, headers));
+    }
+    /**
+     * 将对象序列化为JSON发送
+     * 直接序列化到从连接分配器申请的池化直接内存中，不经过中间字符串和堆内存复制
+     * @param value 响应对象
+     * @throws HttpException 序列化失败时抛出，返回500
+     */
+    public void writeJson(Object value){
+        ByteBuf content = ctx.alloc().ioBuffer(bufferSizeHint > 0 ? bufferSizeHint : DEFAULT_JSON_BUFFER_SIZE);
+        boolean written = false;
+        try (OutputStream out = new ByteBufOutputStream(content)) {
+            JsonSupport.writer().writeValue(out, value);
+            written = true;
+        } catch (IOException e) {
+            throw new HttpException(HttpResponseStatus.INTERNAL_SERVER_ERROR.code(), "Failed to serialize response", e);
+        } finally {
+            if (!written) {
+                content.release();
+            }
+        }
+        send(HttpResponseUtil.jsonResponse(content, headers));
+    }
+
+    /**
+     * 开始流式响应，内容类型为application/octet-stream
+     * @see #stream(String)
+     */
+    public ResponseStream stream(){
+        return stream("application/octet-stream");
+    }
+
+    /**
+     * 开始流式响应，使用Transfer-Encoding: chunked分块发送，响应头立即发出
+     * 返回的写出器写完后必须调用close结束响应
+     * @param contentType 内容类型
+     */
+    public ResponseStream stream(String contentType){
+        io.netty.handler.codec.http.HttpResponse head = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+        head.headers().set(HttpHeaderNames.CONTENT_TYPE, contentType);
+        for (Map.Entry<String, String> entry : headers.entrySet()) {
+            head.headers().set(entry.getKey(), entry.getValue());
+        }
+        HttpUtil.setTransferEncodingChunked(head, true);
+        ResponseStream stream = new ResponseStream(ctx);
+        if (!HttpResponseUtil.writeStream(ctx, request, head, new HttpChunkedInput(stream.input()))) {
+            stream.abort();
+        }
+        return stream;
+    }
+
+    /**
+     * 设置writeJson的初始缓冲区大小，由Router按路由配置设置
+     */
+    void setBufferSizeHint(int bufferSizeHint) {
+        this.bufferSizeHint = bufferSizeHint;
+    }
+
+    /**
+     * 设置响应缓存，由Router在未命中缓存时设置
+     */
+    void cacheAs(String cacheKey, CachePolicy cachePolicy) {
+        this.cacheKey = cacheKey;
+        this.cachePolicy = cachePolicy;
+    }
+
+    /**
+     * 设置合并执行的请求，由Router在开始执行时设置
+     */
+    void shareWith(RequestCoalescer.Flight flight) {
+        this.flight = flight;
     }
+
     /**
      * 发送文件数据响应
      * @param file
      * @param contentType
      */
     public void writeFile(byte[] file, String contentType){
-        HttpResponseUtil.sendFile(ctx, file, contentType,headers);
+        send(HttpResponseUtil.fileResponse(file, contentType, headers));
     }
     /**
      * 发送HTTP异常响应
      * @param status
      */
     public void writeHttpError(HttpResponseStatus status){
-        HttpResponseUtil.sendError(ctx,status);
+        send(HttpResponseUtil.textResponse(status, status.toString()));
     }
 
     /**
@@ -49,12 +159,28 @@ public class HttpResponse {
      * @param message
      */
     public void writeBadRequest(String message){
-        HttpResponseUtil.sendBadRequest(ctx,message);
+        send(HttpResponseUtil.textResponse(HttpResponseStatus.BAD_REQUEST, message));
     }
     /**
      * 发送401错误响应
      */
     public void writeUnauthorized(){
-        HttpResponseUtil.sendUnauthorized(ctx);
+        writeHttpError(HttpResponseStatus.UNAUTHORIZED);
+    }
+
+    void send(FullHttpResponse response){
+        // 已经写出过响应（例如异步处理超时）时丢弃的响应不缓存、不共享
+        boolean first = request == null || !request.isResponded();
+        if (cacheKey != null && first) {
+            ApplicationContext.getInstance().getResponseCache().put(cacheKey, response, cachePolicy);
+        }
+        if (flight != null && first) {
+            flight.complete(response.retainedDuplicate(), null);
+        }
+        if (request != null) {
+            HttpResponseUtil.writeResponse(ctx, request, response);
+        } else {
+            HttpResponseUtil.writeResponse(ctx, response);
+        }
     }
 }
@@ -1,11 +1,22 @@
 package cn.fengin.tiny.http;
 
+import cn.fengin.tiny.http.handler.HttpPipeliningHandler;
+import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.FileRegion;
 import io.netty.handler.codec.http.*;
+import io.netty.handler.stream.ChunkedInput;
+import io.netty.util.AttributeKey;
 import io.netty.util.CharsetUtil;
+import io.netty.util.ReferenceCountUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -16,20 +27,162 @@ import java.util.Map;
  * @since 1.0.0
  */
 public class HttpResponseUtil {
+    private static final Logger logger = LoggerFactory.getLogger(HttpResponseUtil.class);
+
+    /**
+     * 连接上当前正在处理的请求，由HttpRequestHandler在收到请求时绑定
+     * 只传入ctx的发送方法按这个请求决定响应序号和是否保持连接
+     */
+    private static final AttributeKey<HttpRequest> CURRENT_REQUEST = AttributeKey.valueOf("tiny.http.currentRequest");
+
+    /**
+     * 绑定连接上当前正在处理的请求
+     */
+    public static void bindRequest(ChannelHandlerContext ctx, HttpRequest request) {
+        ctx.channel().attr(CURRENT_REQUEST).set(request);
+    }
+
+    /**
+     * 获取连接上当前正在处理的请求
+     * 最近读取的请求还没有进入业务处理时（例如安全检查未通过）返回null
+     */
+    private static HttpRequest currentRequest(ChannelHandlerContext ctx) {
+        HttpRequest request = ctx.channel().attr(CURRENT_REQUEST).get();
+        if (request != null && request.getSequence() == HttpPipeliningHandler.currentSequence(ctx)) {
+            return request;
+        }
+        return null;
+    }
+
+    /**
+     * 设置当前请求的响应发送后是否保持连接
+     */
+    public static void setKeepAlive(ChannelHandlerContext ctx, boolean keepAlive) {
+        HttpRequest request = currentRequest(ctx);
+        if (request != null) {
+            request.setKeepAlive(keepAlive);
+        }
+    }
+
+    /**
+     * 写出当前请求的响应
+     */
+    public static void writeResponse(ChannelHandlerContext ctx, FullHttpResponse response) {
+        writeResponse(ctx, currentRequest(ctx), response);
+    }
+
+    /**
+     * 写出指定请求的响应
+     * 长连接时设置Connection: keep-alive并保持连接，否则设置Connection: close，发送完成后关闭连接
+     * 响应带上请求序号，由HttpPipeliningHandler按请求顺序写出
+     * 每个请求只写出一次响应，重复的响应（例如异步处理超时后才完成）直接丢弃
+     */
+    public static void writeResponse(ChannelHandlerContext ctx, HttpRequest request, FullHttpResponse response) {
+        if (request != null && !request.markResponded()) {
+            logger.warn("Response already written, discard {} for: {} {}", response.status(), request.getMethod(), request.getUri());
+            ReferenceCountUtil.release(response);
+            return;
+        }
+        write(ctx, request, response, null);
+    }
+
+    /**
+     * 写出指定请求的流式响应，先写响应头，响应体由ChunkedWriteHandler在连接可写时分块读取写出
+     * @param request 请求，为空时按连接上当前正在处理的请求
+     * @return 是否写出，请求已经写出过响应时返回false
+     */
+    static boolean writeStream(ChannelHandlerContext ctx, HttpRequest request,
+                               io.netty.handler.codec.http.HttpResponse head, ChunkedInput<?> body) {
+        if (request == null) {
+            request = currentRequest(ctx);
+        }
+        if (request != null && !request.markResponded()) {
+            logger.warn("Response already written, discard stream for: {} {}", request.getMethod(), request.getUri());
+            return false;
+        }
+        write(ctx, request, head, body);
+        return true;
+    }
+
+    /**
+     * 写出当前请求的文件响应，文件内容由内核直接从文件发送到连接（sendfile），不经过用户态内存
+     * 响应头需要设置Content-Length，region在发送完成或丢弃后释放
+     */
+    public static void writeFile(ChannelHandlerContext ctx, io.netty.handler.codec.http.HttpResponse head, FileRegion region) {
+        writeFile(ctx, head, Collections.singletonList(region));
+    }
+
+    /**
+     * 写出当前请求的文件响应，响应体由多个部分依次组成，例如多段Range响应的分段头和文件片段
+     * @param parts 响应体的各部分：ByteBuf、FileRegion，或者ChunkedInput（TLS等不能零拷贝发送时分块读取文件），
+     *              发送完成或丢弃后释放
+     */
+    public static void writeFile(ChannelHandlerContext ctx, io.netty.handler.codec.http.HttpResponse head, List<?> parts) {
+        HttpRequest request = currentRequest(ctx);
+        if (request != null && !request.markResponded()) {
+            logger.warn("Response already written, discard file for: {} {}", request.getMethod(), request.getUri());
+            for (Object part : parts) {
+                HttpPipeliningHandler.SequencedResponse.releaseBody(part);
+            }
+            return;
+        }
+        write(ctx, request, head, parts);
+    }
+
+    /**
+     * @param body 响应体，null表示response是完整响应，否则为ChunkedInput或依次写出的各部分
+     */
+    private static void write(ChannelHandlerContext ctx, HttpRequest request,
+                              io.netty.handler.codec.http.HttpResponse response, Object body) {
+        boolean keepAlive = request != null && request.isKeepAlive();
+        int sequence = request != null ? request.getSequence() : HttpPipeliningHandler.currentSequence(ctx);
+        response.headers().set(HttpHeaderNames.CONNECTION, keepAlive ? HttpHeaderValues.KEEP_ALIVE : HttpHeaderValues.CLOSE);
+        ChannelFuture future;
+        if (sequence >= 0) {
+            future = ctx.writeAndFlush(body instanceof List
+                    ? new HttpPipeliningHandler.SequencedResponse(sequence, response, (List<?>) body)
+                    : new HttpPipeliningHandler.SequencedResponse(sequence, response, (ChunkedInput<?>) body));
+        } else if (body == null) {
+            future = ctx.writeAndFlush(response);
+        } else if (body instanceof List) {
+            ctx.write(response);
+            for (Object part : (List<?>) body) {
+                ctx.write(part);
+            }
+            future = ctx.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
+        } else {
+            ctx.write(response);
+            future = ctx.writeAndFlush(body);
+        }
+        if (!keepAlive) {
+            future.addListener(ChannelFutureListener.CLOSE);
+        }
+    }
     
     /**
      * 发送JSON响应
      */
     public static void send(ChannelHandlerContext ctx, String json, Map<String,String> headers) {
+        writeResponse(ctx, jsonResponse(json, headers));
+    }
+
+    static FullHttpResponse jsonResponse(String json, Map<String,String> headers) {
+        return jsonResponse(Unpooled.copiedBuffer(json==null?"":json, CharsetUtil.UTF_8), headers);
+    }
+
+    /**
+     * 使用已经写好的JSON内容构建响应，响应发送后释放content
+     */
+    static FullHttpResponse jsonResponse(ByteBuf content, Map<String,String> headers) {
         FullHttpResponse response = new DefaultFullHttpResponse(
-            HttpVersion.HTTP_1_1, 
+            HttpVersion.HTTP_1_1,
             HttpResponseStatus.OK,
-            Unpooled.copiedBuffer(json==null?"":json, CharsetUtil.UTF_8)
+            content
         );
         
         response.headers().set(HttpHeaderNames.CONTENT_TYPE, "application/json; charset=UTF-8");
         setHeaders(headers, response);
-        ctx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
+        return response;
     }
 
     private static void setHeaders(Map<String, String> headers, FullHttpResponse response) {
@@ -42,6 +195,10 @@ public class HttpResponseUtil {
     }
 
     public static void sendFile(ChannelHandlerContext ctx, byte[] file, String contentType, Map<String,String> headers) {
+        writeResponse(ctx, fileResponse(file, contentType, headers));
+    }
+
+    static FullHttpResponse fileResponse(byte[] file, String contentType, Map<String,String> headers) {
         FullHttpResponse response = new DefaultFullHttpResponse(
             HttpVersion.HTTP_1_1,
             HttpResponseStatus.OK,
@@ -50,7 +207,7 @@ public class HttpResponseUtil {
 
         response.headers().set(HttpHeaderNames.CONTENT_TYPE,contentType);
         setHeaders(headers, response);
-        ctx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
+        return response;
     }
     /**
      * 发送404响应
@@ -63,16 +220,7 @@ public class HttpResponseUtil {
      * 发送500错误响应
      */
     public static void sendError(ChannelHandlerContext ctx, HttpResponseStatus status) {
-        FullHttpResponse response = new DefaultFullHttpResponse(
-            HttpVersion.HTTP_1_1, status,
-            Unpooled.copiedBuffer(status.toString(), CharsetUtil.UTF_8)
-        );
-        
-        response.headers()
-            .set(HttpHeaderNames.CONTENT_TYPE, "text/plain; charset=UTF-8")
-            .set(HttpHeaderNames.CONTENT_LENGTH, response.content().readableBytes());
-        
-        ctx.writeAndFlush(response).addListener(future -> ctx.close());
+        writeResponse(ctx, textResponse(status, status.toString()));
     }
     
     /**
@@ -86,16 +234,18 @@ public class HttpResponseUtil {
      * 发送400响应
      */
     public static void sendBadRequest(ChannelHandlerContext ctx, String message) {
+        writeResponse(ctx, textResponse(HttpResponseStatus.BAD_REQUEST, message));
+    }
+
+    static FullHttpResponse textResponse(HttpResponseStatus status, String message) {
         FullHttpResponse response = new DefaultFullHttpResponse(
-            HttpVersion.HTTP_1_1, 
-            HttpResponseStatus.BAD_REQUEST,
+            HttpVersion.HTTP_1_1, status,
             Unpooled.copiedBuffer(message, CharsetUtil.UTF_8)
         );
         
         response.headers()
             .set(HttpHeaderNames.CONTENT_TYPE, "text/plain; charset=UTF-8")
             .set(HttpHeaderNames.CONTENT_LENGTH, response.content().readableBytes());
-        
-        ctx.writeAndFlush(response).addListener(future -> ctx.close());
+        return response;
     }
-} 
\ No newline at end of file
+}
@@ -2,15 +2,17 @@ package cn.fengin.tiny.http;
 
 import cn.fengin.tiny.config.ServerConfig;
 import cn.fengin.tiny.context.ApplicationContext;
+import cn.fengin.tiny.context.EventLoopResources;
+import cn.fengin.tiny.context.TransportFactory;
+import cn.fengin.tiny.http.handler.StaticResourceHandler;
 import io.netty.bootstrap.ServerBootstrap;
-import io.netty.channel.ChannelFuture;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelOption;
-import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
+
 /**
  * HTTP服务器
  * 基于Netty实现的HTTP服务器，采用主从Reactor模式
@@ -22,14 +24,13 @@ public class HttpServer {
     private static final Logger logger = LoggerFactory.getLogger(HttpServer.class);
     
     private final ServerConfig.HttpConfig config;
-    private final EventLoopGroup bossGroup;
-    private final EventLoopGroup workerGroup;
+    /** 使用的IO线程组，启动时从EventLoopResources获取，停止时释放 */
+    private EventLoopResources.Groups groups;
+    private List<Channel> channels;
     
     public HttpServer() {
         ServerConfig serverConfig = ApplicationContext.getInstance().getServerConfig();
         this.config = serverConfig.getHttp();
-        this.bossGroup = new NioEventLoopGroup(config.getBossThreads());
-        this.workerGroup = new NioEventLoopGroup(config.getWorkerThreads());
     }
     
     /**
@@ -39,39 +40,61 @@ public class HttpServer {
     public void start() {
         logger.info("Starting HTTP server...");
         try {
+            // 启动前生成静态资源的预压缩文件，并建立静态资源清单
+            StaticResourceHandler.generateGzipFiles();
+            StaticResourceHandler.refreshManifest();
+            boolean epoll = TransportFactory.useEpoll(config.getTransport());
+            int acceptors = TransportFactory.acceptors(config.getAcceptors(), epoll);
+            EventLoopResources.Groups groups = acquireGroups(acceptors);
             ServerBootstrap bootstrap = new ServerBootstrap();
-            bootstrap.group(bossGroup, workerGroup)
-                    .channel(NioServerSocketChannel.class)
+            bootstrap.group(groups.getBossGroup(), groups.getWorkerGroup())
                     .option(ChannelOption.SO_BACKLOG, config.getBacklog())
                     .option(ChannelOption.SO_REUSEADDR, true)
                     .childOption(ChannelOption.SO_KEEPALIVE, true)
                     .childOption(ChannelOption.TCP_NODELAY, true)
                     .childHandler(new HttpServerInitializer());
+            TransportFactory.configure(bootstrap, groups.isEpoll(), config.getSocket());
 
-            ChannelFuture future = bootstrap.bind(config.getPort()).sync();
-            logger.info("HTTP server started on port {}, cost time {} ms", config.getPort(), System.currentTimeMillis() - ApplicationContext.startTime);
-            // 注册关闭钩子
-            Runtime.getRuntime().addShutdownHook(new Thread(this::stop));
+            List<Channel> channels = TransportFactory.bind(bootstrap, config.getPort(), acceptors);
+            synchronized (this) {
+                this.channels = channels;
+            }
+            logger.info("HTTP server started on port {} ({}, {} acceptors, {} event loop), cost time {} ms", config.getPort(),
+                    groups.isEpoll() ? "epoll" : "nio", acceptors, groups.isShared() ? "shared" : "isolated",
+                    System.currentTimeMillis() - ApplicationContext.startTime);
+            // 进程退出时由EventLoopResources统一关闭线程组
             
             // 等待服务器关闭
-            future.channel().closeFuture().sync();
+            for (Channel channel : channels) {
+                channel.closeFuture().sync();
+            }
         } catch (Exception e) {
             logger.error("Failed to start HTTP server", e);
             stop();
         }
     }
     
+    private synchronized EventLoopResources.Groups acquireGroups(int acceptors) {
+        groups = ApplicationContext.getInstance().getEventLoopResources().acquire("http", config.getTransport(),
+                config.isIsolatedEventLoop(), config.getBossThreads(), config.getWorkerThreads(), acceptors);
+        return groups;
+    }
+
     /**
      * 停止HTTP服务器
-     * 优雅关闭，确保资源正确释放
+     * 关闭监听的Channel并释放线程组，共享线程组在所有服务器都停止后优雅关闭
      */
-    public void stop() {
+    public synchronized void stop() {
         try {
-            if (bossGroup != null) {
-                bossGroup.shutdownGracefully();
+            if (channels != null) {
+                for (Channel channel : channels) {
+                    channel.close();
+                }
+                channels = null;
             }
-            if (workerGroup != null) {
-                workerGroup.shutdownGracefully();
+            if (groups != null) {
+                ApplicationContext.getInstance().getEventLoopResources().release(groups);
+                groups = null;
             }
             logger.info("HTTP server stopped");
         } catch (Exception e) {
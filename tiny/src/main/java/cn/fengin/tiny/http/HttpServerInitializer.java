@@ -1,16 +1,38 @@
 package cn.fengin.tiny.http;
 
+import cn.fengin.tiny.config.ServerConfig;
 import cn.fengin.tiny.context.ApplicationContext;
+import cn.fengin.tiny.http.handler.CompressionHandler;
 import cn.fengin.tiny.http.handler.ExceptionHandler;
+import cn.fengin.tiny.http.handler.HttpBodyHandler;
+import cn.fengin.tiny.http.handler.HttpPipeliningHandler;
 import cn.fengin.tiny.http.handler.HttpRequestHandler;
 import cn.fengin.tiny.http.handler.SecurityHandler;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpMessage;
 import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.HttpServerUpgradeHandler;
+import io.netty.handler.codec.http2.CleartextHttp2ServerUpgradeHandler;
+import io.netty.handler.codec.http2.Http2CodecUtil;
+import io.netty.handler.codec.http2.Http2Frame;
+import io.netty.handler.codec.http2.Http2FrameCodec;
+import io.netty.handler.codec.http2.Http2FrameCodecBuilder;
+import io.netty.handler.codec.http2.Http2MultiplexHandler;
+import io.netty.handler.codec.http2.Http2ServerUpgradeCodec;
+import io.netty.handler.codec.http2.Http2Settings;
+import io.netty.handler.codec.http2.Http2StreamChannel;
+import io.netty.handler.codec.http2.Http2StreamFrameToHttpObjectCodec;
 import io.netty.handler.stream.ChunkedWriteHandler;
+import io.netty.handler.timeout.IdleStateEvent;
 import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.util.AsciiString;
+import io.netty.util.ReferenceCountUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -19,20 +41,23 @@ import java.util.concurrent.TimeUnit;
 /**
  * HTTP服务器初始化器
  * 配置HTTP处理管道，包含：
- * 1. 基础HTTP编解码
- * 2. 空闲连接检测
- * 3. 安全处理器
+ * 1. 基础HTTP编解码、响应压缩
+ * 2. 空闲连接检测、管道化请求的响应排序
+ * 3. 安全处理器、请求体处理器（按路由聚合、上传解码或流式消费请求体）
  * 4. 添加业务处理器（包含静态资源处理和路由分发）
  * 5. 添加异常处理器（需要前面的Handler出现异常都fire出来），统一异常处理
  * 6.记录连接信息，用于安全检查
+ * 启用http2时同一端口同时支持HTTP/1.1和明文HTTP/2（h2c）：客户端可以通过Upgrade: h2c升级，
+ * 也可以直接发送HTTP/2连接前言（prior knowledge）；HTTP/2的每个流是一个子Channel，
+ * 流上的帧转换为HttpRequest/HttpResponse后经过与HTTP/1.1相同的处理器，路由和静态资源处理不需要区分协议
  *
  * @author fengin
  * @since 1.0.0
  */
 public class HttpServerInitializer extends ChannelInitializer<SocketChannel> {
     private static final Logger logger = LoggerFactory.getLogger(HttpServerInitializer.class);
-    private static final int MAX_CONTENT_LENGTH = 65536;
-    private static final int IDLE_TIMEOUT_SECONDS = 300; // 5分钟超时
+    private static final int IDLE_TIMEOUT_SECONDS = 300; // 未启用长连接时的空闲超时，5分钟
+    private static final String HTTP1_HANDLER_NAME = "http1Handler";
 
     private final ApplicationContext context = ApplicationContext.getInstance();
 
@@ -43,30 +68,186 @@ public class HttpServerInitializer extends ChannelInitializer<SocketChannel> {
     @Override
     protected void initChannel(SocketChannel ch) throws Exception {
         ChannelPipeline pipeline = ch.pipeline();
+        ServerConfig.HttpConfig httpConfig = context.getServerConfig().getHttp();
+        // 长连接按配置的空闲超时关闭，超时无读写由HttpRequestHandler（HTTP/2由连接级处理器）关闭连接
+        int idleTimeout = httpConfig.isKeepAlive() ? httpConfig.getKeepAliveTimeout() : IDLE_TIMEOUT_SECONDS;
 
-        // 1. 添加基础HTTP编解码器
-        pipeline.addLast(new HttpServerCodec());
-        pipeline.addLast(new HttpObjectAggregator(MAX_CONTENT_LENGTH));
+        if (httpConfig.isHttp2()) {
+            // 空闲检测放在最前面，按连接上的字节读写计算，HTTP/2时不受单个流的影响
+            pipeline.addLast(new IdleStateHandler(0, 0, idleTimeout, TimeUnit.SECONDS));
+            addCleartextHttp2Handlers(pipeline, httpConfig);
+        } else {
+            // 1. 添加基础HTTP编解码器
+            pipeline.addLast(new HttpServerCodec());
+            addResponseHandlers(pipeline, httpConfig);
+
+            // 2. 添加空闲连接检测
+            pipeline.addLast(new IdleStateHandler(0, 0, idleTimeout, TimeUnit.SECONDS));
+
+            // 3-5. 管道化、安全、请求体、业务、异常处理器
+            addRequestHandlers(pipeline, httpConfig);
+        }
+
+        // 6.记录连接信息，用于安全检查
+        String remoteIp = ch.remoteAddress().getAddress().getHostAddress();
+
+        context.getSecurityManager().onNewConnection(remoteIp);
+        ch.closeFuture().addListener(future -> context.getSecurityManager().onConnectionClosed(remoteIp));
+        // 请求占用的内存接近上限时，新连接暂停读取，内存释放后恢复
+        context.getSecurityManager().pauseIfOverBudget(ch);
+
+        logger.debug("Initialized HTTP channel pipeline for client: {}", remoteIp);
+    }
+
+    /**
+     * 响应压缩和分块写出
+     */
+    private void addResponseHandlers(ChannelPipeline pipeline, ServerConfig.HttpConfig httpConfig) {
+        if (httpConfig.isCompression()) {
+            // 在分块写出之后压缩，流式响应的每个分块也会被压缩
+            pipeline.addLast(new CompressionHandler(httpConfig.getCompressionLevel(),
+                    httpConfig.getCompressionMinSize(), httpConfig.getCompressionTypes()));
+        }
         pipeline.addLast(new ChunkedWriteHandler());
-        
-        // 2. 添加空闲连接检测
-        pipeline.addLast(new IdleStateHandler(IDLE_TIMEOUT_SECONDS, 0, 0, TimeUnit.SECONDS));
+    }
+
+    /**
+     * 请求处理器，HTTP/1.1连接和HTTP/2的每个流各有一组
+     */
+    private void addRequestHandlers(ChannelPipeline pipeline, ServerConfig.HttpConfig httpConfig) {
+        // 添加管道化处理器，给请求分配序号，按请求顺序写出响应，未完成请求数达到上限时暂停读取
+        pipeline.addLast(new HttpPipeliningHandler(httpConfig.getMaxPipelinedRequests()));
 
         // 3. 添加安全处理器
         pipeline.addLast(new SecurityHandler(context));
 
+        // 请求头通过安全检查后再接收请求体，按路由聚合为完整请求、上传解码或流式消费
+        pipeline.addLast(new HttpBodyHandler(httpConfig.getMaxBodySize()));
+
         // 4. 添加业务处理器（包含静态资源处理和路由分发）
         pipeline.addLast(new HttpRequestHandler(context));
 
         // 5. 添加异常处理器（需要前面的Handler出现异常都fire出来），统一异常处理
         pipeline.addLast(new ExceptionHandler());
+    }
 
-        // 6.记录连接信息，用于安全检查
-        String remoteIp = ch.remoteAddress().getAddress().getHostAddress();
+    /**
+     * 明文HTTP/2（h2c）
+     * CleartextHttp2ServerUpgradeHandler检查连接开头是否是HTTP/2连接前言：
+     * 是则直接使用HTTP/2；否则按HTTP/1.1解码，带Upgrade: h2c的请求由HttpServerUpgradeHandler升级，
+     * 升级请求本身作为流1交给HTTP/2处理；其他请求说明客户端使用HTTP/1.1，由HTTP/1.1处理器处理
+     */
+    private void addCleartextHttp2Handlers(ChannelPipeline pipeline, ServerConfig.HttpConfig httpConfig) {
+        HttpServerCodec sourceCodec = new HttpServerCodec();
+        // 升级请求的请求体需要聚合后转到流1上，大小上限与普通请求相同
+        int maxUpgradeBodySize = (int) Math.min(Integer.MAX_VALUE, httpConfig.getMaxBodySize());
+        HttpServerUpgradeHandler upgradeHandler = new HttpServerUpgradeHandler(sourceCodec, protocol ->
+                AsciiString.contentEquals(Http2CodecUtil.HTTP_UPGRADE_PROTOCOL_NAME, protocol)
+                        ? new Http2ServerUpgradeCodec(newHttp2FrameCodec(httpConfig), newHttp2Handlers(httpConfig))
+                        : null,
+                maxUpgradeBodySize);
+        ChannelHandler priorKnowledgeHandler = new ChannelInitializer<Channel>() {
+            @Override
+            protected void initChannel(Channel ch) {
+                ch.pipeline().addLast(newHttp2FrameCodec(httpConfig));
+                ch.pipeline().addLast(newHttp2Handlers(httpConfig));
+            }
+        };
+        pipeline.addLast(new CleartextHttp2ServerUpgradeHandler(sourceCodec, upgradeHandler, priorKnowledgeHandler));
+        pipeline.addLast(HTTP1_HANDLER_NAME, new Http1Handler(httpConfig));
+    }
 
-        context.getSecurityManager().onNewConnection(remoteIp);
-        ch.closeFuture().addListener(future -> context.getSecurityManager().onConnectionClosed(remoteIp));
+    /**
+     * HTTP/2帧编解码器，同时处理中的流数与HTTP/1.1管道化请求数使用同一个上限
+     */
+    private static Http2FrameCodec newHttp2FrameCodec(ServerConfig.HttpConfig httpConfig) {
+        return Http2FrameCodecBuilder.forServer()
+                .initialSettings(Http2Settings.defaultSettings()
+                        .maxConcurrentStreams(Math.max(1, httpConfig.getMaxPipelinedRequests())))
+                .build();
+    }
 
-        logger.debug("Initialized HTTP channel pipeline for client: {}", remoteIp);
+    /**
+     * HTTP/2帧编解码器之后的连接级处理器：按流创建子Channel，处理连接空闲
+     */
+    private ChannelHandler[] newHttp2Handlers(ServerConfig.HttpConfig httpConfig) {
+        ChannelHandler streamInitializer = new ChannelInitializer<Http2StreamChannel>() {
+            @Override
+            protected void initChannel(Http2StreamChannel ch) {
+                // 流上的帧转换为HTTP/1.1对象，后面的处理器与HTTP/1.1连接相同
+                ch.pipeline().addLast(new Http2StreamFrameToHttpObjectCodec(true));
+                addResponseHandlers(ch.pipeline(), httpConfig);
+                addRequestHandlers(ch.pipeline(), httpConfig);
+            }
+        };
+        return new ChannelHandler[]{new Http2MultiplexHandler(streamInitializer), new Http2IdleHandler()};
+    }
+
+    /**
+     * 没有使用HTTP/2的连接：收到第一个HTTP/1.1请求时添加HTTP/1.1处理器
+     * 只允许在第一个请求上升级，之后移除升级处理器，后续请求不再检查Upgrade头
+     */
+    private final class Http1Handler extends ChannelInboundHandlerAdapter {
+        private final ServerConfig.HttpConfig httpConfig;
+
+        Http1Handler(ServerConfig.HttpConfig httpConfig) {
+            this.httpConfig = httpConfig;
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+            if (!(msg instanceof HttpMessage)) {
+                ctx.fireChannelRead(msg);
+                return;
+            }
+            ChannelPipeline pipeline = ctx.pipeline();
+            if (pipeline.get(HttpServerUpgradeHandler.class) != null) {
+                pipeline.remove(HttpServerUpgradeHandler.class);
+            }
+            addResponseHandlers(pipeline, httpConfig);
+            addRequestHandlers(pipeline, httpConfig);
+            pipeline.remove(this);
+            ctx.fireChannelRead(msg);
+        }
+    }
+
+    /**
+     * HTTP/2连接级处理器：连接空闲超时后发送GOAWAY关闭连接
+     * SETTINGS、PING、GOAWAY等连接级的帧已经由Http2FrameCodec处理，到这里的直接丢弃
+     */
+    private static final class Http2IdleHandler extends ChannelInboundHandlerAdapter {
+        @Override
+        public void handlerAdded(ChannelHandlerContext ctx) {
+            // 已经使用HTTP/2，不会再收到HTTP/1.1请求
+            if (ctx.pipeline().get(HTTP1_HANDLER_NAME) != null) {
+                ctx.pipeline().remove(HTTP1_HANDLER_NAME);
+            }
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+            if (msg instanceof Http2Frame) {
+                ReferenceCountUtil.release(msg);
+                return;
+            }
+            ctx.fireChannelRead(msg);
+        }
+
+        @Override
+        public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+            if (evt instanceof IdleStateEvent) {
+                // 空闲检测只按连接上的读写计算，还有流在处理（例如较慢的路由处理器）时不关闭
+                Http2FrameCodec codec = ctx.pipeline().get(Http2FrameCodec.class);
+                if (codec != null && codec.connection().numActiveStreams() > 0) {
+                    logger.debug("HTTP/2 connection idle with {} active streams, keep open: {}",
+                            codec.connection().numActiveStreams(), ctx.channel().remoteAddress());
+                    return;
+                }
+                logger.debug("Closing idle HTTP/2 connection: {}", ctx.channel().remoteAddress());
+                ctx.close();
+                return;
+            }
+            super.userEventTriggered(ctx, evt);
+        }
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,62 @@
+package cn.fengin.tiny.http;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 框架共享的JSON组件
+ * ObjectMapper创建成本较高且线程安全，整个框架共用一个实例；
+ * 按目标类型缓存ObjectReader，避免每次读取都重新查找反序列化器，写出共用一个ObjectWriter
+ *
+ * @author fengin
+ * @since 1.0.0
+ */
+public final class JsonSupport {
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    /**
+     * ObjectReader缓存，键为目标类型
+     */
+    private static final Map<Type, ObjectReader> READERS = new ConcurrentHashMap<>();
+
+    private static final ObjectWriter WRITER = MAPPER.writer();
+
+    private JsonSupport() {
+    }
+
+    /**
+     * 获取框架共享的ObjectMapper，不要修改其配置
+     */
+    public static ObjectMapper getMapper() {
+        return MAPPER;
+    }
+
+    /**
+     * 获取指定类型的ObjectReader
+     */
+    public static ObjectReader reader(Class<?> type) {
+        return READERS.computeIfAbsent(type, t -> MAPPER.readerFor(type));
+    }
+
+    /**
+     * 获取指定泛型类型的ObjectReader
+     */
+    public static ObjectReader reader(TypeReference<?> type) {
+        return READERS.computeIfAbsent(type.getType(), t -> MAPPER.readerFor(type));
+    }
+
+    /**
+     * 获取共享的ObjectWriter
+     */
+    public static ObjectWriter writer() {
+        return WRITER;
+    }
+}
@@ -0,0 +1,139 @@
+package cn.fengin.tiny.http;
+
+import cn.fengin.tiny.exception.HttpException;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 请求合并（single-flight）
+ * 设置了Route.coalesce的GET路由，相同键的并发请求只执行一次路由处理器：
+ * 1. 第一个请求执行处理器，之后到达的相同请求等待它完成，不占用线程
+ * 2. 处理器写出的完整响应通过retainedDuplicate共享给所有等待的请求，不复制、不重新序列化
+ * 3. 处理器抛出异常时，等待的请求返回相同的错误
+ * 只合并正在执行的请求，执行完成后到达的请求重新执行处理器，不会返回过期的数据；需要缓存时配合CachePolicy使用
+ * 处理器没有写出完整响应（例如流式响应）时无法共享，等待的请求返回500
+ *
+ * @author fengin
+ * @since 1.0.0
+ */
+final class RequestCoalescer {
+    private static final Logger logger = LoggerFactory.getLogger(RequestCoalescer.class);
+
+    private static final ConcurrentMap<String, Flight> flights = new ConcurrentHashMap<>();
+
+    private RequestCoalescer() {
+    }
+
+    /**
+     * 加入键相同的正在执行的请求，没有时开始新的执行
+     * @return 新开始的执行，由调用方执行处理器并通过Flight.complete通知等待的请求；
+     *         已经加入正在执行的请求时返回null，waiter在它完成后收到共享的响应
+     */
+    static Flight join(String key, Waiter waiter) {
+        Flight flight = new Flight(key);
+        while (true) {
+            Flight existing = flights.putIfAbsent(key, flight);
+            if (existing == null) {
+                return flight;
+            }
+            if (existing.addWaiter(waiter)) {
+                return null;
+            }
+            // 刚刚执行完成，已经从表中移除，重新开始
+        }
+    }
+
+    /**
+     * 正在执行的请求数
+     */
+    static int size() {
+        return flights.size();
+    }
+
+    /**
+     * 等待共享响应的请求
+     */
+    static final class Waiter extends CompletableFuture<Void> {
+        private final HttpResponse response;
+
+        Waiter(HttpResponse response) {
+            this.response = response;
+        }
+
+        private void onComplete(FullHttpResponse shared, Throwable error) {
+            if (error != null) {
+                completeExceptionally(error);
+            } else if (shared == null) {
+                completeExceptionally(new HttpException(HttpResponseStatus.INTERNAL_SERVER_ERROR.code(),
+                        "Coalesced request produced no shareable response"));
+            } else {
+                // 已经超时的请求会丢弃并释放响应
+                response.send(shared);
+                complete(null);
+            }
+        }
+    }
+
+    /**
+     * 一次正在执行的请求
+     */
+    static final class Flight {
+        private final String key;
+        private final List<Waiter> waiters = new ArrayList<>();
+        private boolean done;
+
+        private Flight(String key) {
+            this.key = key;
+        }
+
+        private synchronized boolean addWaiter(Waiter waiter) {
+            if (done) {
+                return false;
+            }
+            waiters.add(waiter);
+            return true;
+        }
+
+        /**
+         * 执行完成，通知所有等待的请求，只有第一次调用有效
+         * @param shared 处理器写出的完整响应，由本方法释放；没有可共享的响应时为null
+         * @param error 处理器抛出的异常
+         */
+        void complete(FullHttpResponse shared, Throwable error) {
+            // 先从表中移除，之后到达的请求开始新的执行
+            flights.remove(key, this);
+            List<Waiter> list;
+            synchronized (this) {
+                if (done) {
+                    if (shared != null) {
+                        shared.release();
+                    }
+                    return;
+                }
+                done = true;
+                list = new ArrayList<>(waiters);
+                waiters.clear();
+            }
+            if (!list.isEmpty()) {
+                logger.debug("Coalesced {} requests: {}", list.size(), key);
+            }
+            try {
+                for (Waiter waiter : list) {
+                    waiter.onComplete(shared != null ? shared.retainedDuplicate() : null, error);
+                }
+            } finally {
+                if (shared != null) {
+                    shared.release();
+                }
+            }
+        }
+    }
+}
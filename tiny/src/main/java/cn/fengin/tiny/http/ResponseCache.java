@@ -0,0 +1,140 @@
+package cn.fengin.tiny.http;
+
+import cn.fengin.tiny.cache.LocalCache;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.EmptyHttpHeaders;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 路由响应缓存
+ * 基于LocalCache保存设置了CachePolicy的GET路由的响应，由ApplicationContext创建和持有，过期由LocalCache按有效时间处理：
+ * 1. 响应体保存为只读、不可释放的ByteBuf，命中时共享同一块内存写出，不复制、不重新序列化
+ * 2. 缓存键由路由的缓存版本、请求路径以及策略指定的查询参数和请求头组成
+ * 3. 路由的缓存失效时只增加版本号，旧版本的缓存不会再命中，与过期的缓存一样由LocalCache清理或淘汰
+ * 4. 按总字节数（server.http.response-cache-size）限制大小，超过上限时LocalCache淘汰最久未访问的响应，
+ *    客户端不断变换varyByQuery、varyByHeader指定的参数时，内存占用不会超过上限
+ * 只缓存200的完整响应，流式响应、带Set-Cookie的响应不缓存
+ *
+ * @author fengin
+ * @since 1.0.0
+ */
+public final class ResponseCache {
+    /**
+     * 每个缓存项除响应体之外的估算开销（字节），包括缓存键和响应头
+     */
+    private static final int ENTRY_OVERHEAD = 256;
+
+    private final LocalCache<String, CachedResponse> cache;
+
+    /**
+     * @param maxBytes 缓存的字节数上限
+     */
+    public ResponseCache(long maxBytes) {
+        this.cache = new LocalCache<>(maxBytes, (key, cached) -> key.length() * 2L + cached.content.capacity() + ENTRY_OVERHEAD);
+    }
+
+    /**
+     * 生成请求的缓存键
+     * @return 缓存键，路由没有缓存策略或者不是GET请求时返回null
+     */
+    static String key(HttpRequest request, Route route) {
+        CachePolicy policy = route.getCachePolicy();
+        if (policy == null || request.getMethod() != HttpMethod.GET) {
+            return null;
+        }
+        StringBuilder key = new StringBuilder(64)
+                .append(route.getCacheVersion()).append(' ').append(request.getPath());
+        for (String name : policy.getQueryParams()) {
+            appendPart(key.append('\n').append(name).append('='), request.getParameter(name));
+        }
+        for (String name : policy.getHeaders()) {
+            appendPart(key.append('\n').append(name).append(':'), request.getHeader(name));
+        }
+        return key.toString();
+    }
+
+    private static void appendPart(StringBuilder key, String value) {
+        // 区分没有该参数和参数值为空
+        if (value != null) {
+            key.append('"').append(value).append('"');
+        }
+    }
+
+    /**
+     * 获取缓存的响应
+     * @return 共享缓存内容的新响应，未缓存或已过期时返回null
+     */
+    FullHttpResponse get(String key) {
+        return cache.get(key).map(CachedResponse::toResponse).orElse(null);
+    }
+
+    /**
+     * 缓存路由处理器写出的响应，响应体复制一份保存，原响应照常写出
+     */
+    void put(String key, FullHttpResponse response, CachePolicy policy) {
+        if (response.status().code() != HttpResponseStatus.OK.code()
+                || response.headers().contains(HttpHeaderNames.SET_COOKIE)) {
+            return;
+        }
+        if (response.content().readableBytes() > cache.getMaxWeight()) {
+            // 超过上限的响应不会被缓存，不复制响应体
+            return;
+        }
+        ByteBuf content = Unpooled.unreleasableBuffer(
+                Unpooled.wrappedBuffer(ByteBufUtil.getBytes(response.content())).asReadOnly());
+        HttpHeaders headers = response.headers().copy();
+        headers.remove(HttpHeaderNames.CONNECTION);
+        cache.put(key, new CachedResponse(response.status(), headers, content), policy.getTtlMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 清空所有路由的响应缓存
+     */
+    void clear() {
+        cache.clear();
+    }
+
+    /**
+     * 缓存的响应数（包括已失效但还没有移除的旧版本）
+     */
+    public int size() {
+        return cache.size();
+    }
+
+    /**
+     * 缓存占用的估算字节数
+     */
+    public long getUsedBytes() {
+        return cache.getWeight();
+    }
+
+    /**
+     * 缓存的响应
+     */
+    private static final class CachedResponse {
+        private final HttpResponseStatus status;
+        private final HttpHeaders headers;
+        private final ByteBuf content;
+
+        CachedResponse(HttpResponseStatus status, HttpHeaders headers, ByteBuf content) {
+            this.status = status;
+            this.headers = headers;
+            this.content = content;
+        }
+
+        FullHttpResponse toResponse() {
+            return new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, status, content.duplicate(),
+                    headers.copy(), EmptyHttpHeaders.INSTANCE);
+        }
+    }
+}
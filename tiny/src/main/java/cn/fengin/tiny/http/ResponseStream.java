@@ -0,0 +1,224 @@
+package cn.fengin.tiny.http;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.stream.ChunkedInput;
+import io.netty.handler.stream.ChunkedWriteHandler;
+import io.netty.util.CharsetUtil;
+
+import java.io.Closeable;
+import java.io.UncheckedIOException;
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 流式响应写出器
+ * 由HttpResponse.stream()创建，响应使用Transfer-Encoding: chunked分块发送，适合导出全部设备、全部抄表数据等大响应，
+ * 内存占用与响应总大小无关：
+ * 1. write写入的数据块进入一个有界队列，由管道中的ChunkedWriteHandler在连接可写（Channel.isWritable）时取出发送
+ * 2. 连接不可写导致队列满时，write阻塞等待（业务线程、虚拟线程中）；在IO线程中不能阻塞，不等待
+ * 3. close结束响应，必须调用，建议使用try-with-resources
+ * 4. 连接断开后write抛出UncheckedIOException，业务可以据此停止导出
+ *
+ * 例如：
+ * try (ResponseStream stream = response.stream("text/csv; charset=UTF-8")) {
+ *     for (Device device : devices) {
+ *         stream.write(device.toCsvLine());
+ *     }
+ * }
+ *
+ * @author fengin
+ * @since 1.0.0
+ */
+public class ResponseStream implements Closeable {
+    /**
+     * 队列中最多缓存的数据块数
+     */
+    private static final int MAX_QUEUED_CHUNKS = 16;
+
+    private final ChannelHandlerContext ctx;
+    private final Queue<ByteBuf> chunks = new ArrayDeque<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final Input input = new Input();
+    /** 写出器已关闭，不再接受数据 */
+    private boolean closed;
+    /** 连接已断开或响应被丢弃 */
+    private boolean aborted;
+
+    ResponseStream(ChannelHandlerContext ctx) {
+        this.ctx = ctx;
+    }
+
+    /**
+     * 由ChunkedWriteHandler读取的响应体
+     */
+    ChunkedInput<ByteBuf> input() {
+        return input;
+    }
+
+    /**
+     * 写入字符串，按UTF-8编码
+     */
+    public void write(String text) {
+        write(Unpooled.copiedBuffer(text, CharsetUtil.UTF_8));
+    }
+
+    /**
+     * 写入字节数组
+     */
+    public void write(byte[] bytes) {
+        write(Unpooled.wrappedBuffer(bytes));
+    }
+
+    /**
+     * 写入数据块，写入后数据块由写出器负责释放
+     * @throws UncheckedIOException 连接已断开时抛出
+     * @throws IllegalStateException 写出器已关闭时抛出
+     */
+    public void write(ByteBuf chunk) {
+        if (!chunk.isReadable()) {
+            chunk.release();
+            return;
+        }
+        boolean inEventLoop = ctx.executor().inEventLoop();
+        lock.lock();
+        try {
+            // IO线程中阻塞会导致连接永远无法变为可写，只能继续排队
+            while (!inEventLoop && !aborted && !closed && chunks.size() >= MAX_QUEUED_CHUNKS) {
+                notFull.await();
+            }
+            if (aborted || closed) {
+                chunk.release();
+                if (aborted) {
+                    throw new UncheckedIOException(new ClosedChannelException());
+                }
+                throw new IllegalStateException("Response stream already closed");
+            }
+            chunks.offer(chunk);
+        } catch (InterruptedException e) {
+            chunk.release();
+            Thread.currentThread().interrupt();
+            throw new UncheckedIOException(new java.io.InterruptedIOException("Interrupted while waiting for channel writable"));
+        } finally {
+            lock.unlock();
+        }
+        resume();
+    }
+
+    /**
+     * 当前是否可以不阻塞地写入
+     */
+    public boolean isWritable() {
+        lock.lock();
+        try {
+            return !aborted && !closed && chunks.size() < MAX_QUEUED_CHUNKS && ctx.channel().isWritable();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 结束响应，发送最后一个空块
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        resume();
+    }
+
+    /**
+     * 通知ChunkedWriteHandler继续读取，readChunk返回null后需要调用才会再次读取
+     */
+    private void resume() {
+        ChunkedWriteHandler handler = ctx.pipeline().get(ChunkedWriteHandler.class);
+        if (handler != null) {
+            handler.resumeTransfer();
+        }
+    }
+
+    /**
+     * 连接断开或响应被丢弃，释放排队的数据块并唤醒等待的写入
+     */
+    void abort() {
+        lock.lock();
+        try {
+            aborted = true;
+            ByteBuf chunk;
+            while ((chunk = chunks.poll()) != null) {
+                chunk.release();
+            }
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 适配ChunkedWriteHandler的输入，只在IO线程中调用
+     */
+    private final class Input implements ChunkedInput<ByteBuf> {
+        private long progress;
+
+        @Override
+        public boolean isEndOfInput() {
+            lock.lock();
+            try {
+                return aborted || (closed && chunks.isEmpty());
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void close() {
+            abort();
+        }
+
+        @Override
+        @Deprecated
+        public ByteBuf readChunk(ChannelHandlerContext ctx) {
+            return readChunk(ctx.alloc());
+        }
+
+        @Override
+        public ByteBuf readChunk(ByteBufAllocator allocator) {
+            lock.lock();
+            try {
+                ByteBuf chunk = chunks.poll();
+                if (chunk != null) {
+                    progress += chunk.readableBytes();
+                    notFull.signal();
+                }
+                // 返回null表示暂时没有数据，等待write调用resume
+                return chunk;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public long length() {
+            return -1;
+        }
+
+        @Override
+        public long progress() {
+            return progress;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package cn.fengin.tiny.http;
+
+import cn.fengin.tiny.config.ExecutionMode;
+import io.netty.handler.codec.http.HttpMethod;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * 路由定义
+ * 由Router注册路由时返回，可以链式设置单个路由的处理选项，例如：
+ * Router.get("/api/admin/device/info", deviceController::getInfo).execution(ExecutionMode.POOL);
+ *
+ * @author fengin
+ * @since 1.0.0
+ */
+@Getter
+public class Route {
+    private final HttpMethod method;
+    private final String path;
+    private final RouteHandler handler;
+    /**
+     * 异步路由处理器，与handler二选一
+     */
+    private final AsyncRouteHandler asyncHandler;
+    /**
+     * 路由处理器的执行方式，为空时使用server.http.execution全局配置
+     */
+    private ExecutionMode execution;
+    /**
+     * 响应大小的预估值（字节），writeJson按这个大小申请初始缓冲区，0表示使用默认值
+     */
+    private int responseSize;
+    /**
+     * 请求体大小上限（字节），0表示使用server.http.max-body-size全局配置
+     */
+    private long maxBodySize;
+    /**
+     * 是否按上传处理请求体：multipart和表单请求边接收边解析，较大的文件写入临时文件，不整体缓存在内存中
+     */
+    private boolean upload;
+    /**
+     * 请求体流式消费者工厂，每个请求创建一个消费者
+     */
+    private Function<HttpRequest, BodyConsumer> bodyConsumer;
+    /**
+     * 响应缓存策略，为空时不缓存
+     */
+    private CachePolicy cachePolicy;
+    /**
+     * 是否合并相同的并发请求，参见coalesce
+     */
+    private boolean coalesce;
+    /**
+     * 每个客户端IP在该路由上每秒最大请求数，0表示不单独限流
+     */
+    private double rateLimit;
+    /**
+     * 每个客户端IP在该路由上允许的突发请求数
+     */
+    private int rateLimitBurst;
+    /**
+     * 区分不同路由限流桶的种子，由请求方法和路径计算
+     */
+    private long rateLimitSeed;
+    /**
+     * 响应缓存的版本，使缓存失效时加1
+     */
+    @Getter(AccessLevel.NONE)
+    private final AtomicInteger cacheVersion = new AtomicInteger();
+
+    Route(HttpMethod method, String path, RouteHandler handler) {
+        this(method, path, handler, null);
+    }
+
+    Route(HttpMethod method, String path, RouteHandler handler, AsyncRouteHandler asyncHandler) {
+        this.method = method;
+        this.path = path;
+        this.handler = handler;
+        this.asyncHandler = asyncHandler;
+    }
+
+    /**
+     * 是否是异步路由
+     */
+    public boolean isAsync() {
+        return asyncHandler != null;
+    }
+
+    /**
+     * 设置路由处理器的执行方式
+     * @return 当前路由，支持链式调用
+     */
+    public Route execution(ExecutionMode execution) {
+        this.execution = execution;
+        return this;
+    }
+
+    /**
+     * 设置响应大小的预估值，返回较大JSON（例如设备列表）的路由设置后可以避免缓冲区多次扩容
+     * @param bytes 预估的响应字节数
+     * @return 当前路由，支持链式调用
+     */
+    public Route responseSize(int bytes) {
+        this.responseSize = bytes;
+        return this;
+    }
+
+    /**
+     * 设置请求体大小上限，超过时返回413
+     * @param bytes 最大字节数
+     * @return 当前路由，支持链式调用
+     */
+    public Route maxBodySize(long bytes) {
+        this.maxBodySize = bytes;
+        return this;
+    }
+
+    /**
+     * 按上传处理请求体，multipart和表单请求边接收边解析，超过16KB的文件写入临时文件，
+     * 路由处理器通过HttpRequest.getFile获取上传的文件，请求处理完成后临时文件被删除，需要保留时使用FileUpload.renameTo
+     * @return 当前路由，支持链式调用
+     */
+    public Route upload() {
+        this.upload = true;
+        return this;
+    }
+
+    /**
+     * 设置请求体流式消费者，请求体按数据块交给消费者处理，不缓存在内存中
+     * @param factory 消费者工厂，参数为只包含请求行、请求头和路径变量的请求
+     * @return 当前路由，支持链式调用
+     * @see BodyConsumer
+     */
+    public Route bodyConsumer(Function<HttpRequest, BodyConsumer> factory) {
+        this.bodyConsumer = factory;
+        return this;
+    }
+
+    /**
+     * 缓存GET请求的响应，有效期内的请求直接返回缓存的响应，不执行路由处理器（拦截器仍然执行）
+     * @param policy 缓存策略
+     * @return 当前路由，支持链式调用
+     * @see CachePolicy
+     */
+    public Route cache(CachePolicy policy) {
+        this.cachePolicy = policy;
+        return this;
+    }
+
+    /**
+     * 合并相同的并发GET请求（single-flight）：相同的请求正在执行时不再执行路由处理器，
+     * 等待它完成后共享同一个响应；只合并正在执行的请求，不会返回过期的数据
+     * 适用于多个页面同时刷新、处理器查询数据库开销较大的幂等查询，处理器需要写出完整响应（不能是流式响应）
+     * 请求默认按完整的URI区分，设置了缓存策略时按缓存策略区分；响应按用户等请求头不同的路由不应合并
+     * @return 当前路由，支持链式调用
+     */
+    public Route coalesce() {
+        this.coalesce = true;
+        return this;
+    }
+
+    /**
+     * 单独限制每个客户端IP访问该路由的速率，与security.maxRequestsPerSecond全局限流同时生效，
+     * 适用于登录、发送验证码等开销大或容易被滥用的接口，超过时返回429
+     * @param permitsPerSecond 每秒最大请求数，可以小于1，例如0.2表示每5秒1次
+     * @param burst 允许的突发请求数，至少为1
+     * @return 当前路由，支持链式调用
+     */
+    public Route rateLimit(double permitsPerSecond, int burst) {
+        if (permitsPerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("Invalid rate limit: " + permitsPerSecond + "/s, burst " + burst);
+        }
+        this.rateLimit = permitsPerSecond;
+        this.rateLimitBurst = burst;
+        this.rateLimitSeed = (long) method.name().hashCode() << 32 | (path.hashCode() & 0xFFFFFFFFL);
+        Router.enableRateLimits();
+        return this;
+    }
+
+    /**
+     * 使路由的响应缓存失效，之后的请求重新执行路由处理器
+     */
+    public void invalidateCache() {
+        cacheVersion.incrementAndGet();
+    }
+
+    /**
+     * 当前响应缓存的版本
+     */
+    int getCacheVersion() {
+        return cacheVersion.get();
+    }
+}
@@ -0,0 +1,210 @@
+package cn.fengin.tiny.http;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 路由前缀树（压缩基数树）
+ * 每个HTTP方法一棵树，启动时构建完成后只读，查找时直接按字符遍历原始URI（到'?'为止），
+ * 不做split、不拼接字符串，静态路由查找过程无任何对象分配
+ * 支持路径变量，例如 /api/device/{id}，变量匹配到下一个'/'为止
+ * 匹配优先级：静态路径优先于路径变量，保持原来精确匹配的语义
+ *
+ * @author fengin
+ * @since 1.0.0
+ */
+final class RouteTree {
+    private final Node root = new Node("");
+    /**
+     * 树中路由的最大路径变量个数，用于查找时分配捕获数组，为0时不分配
+     */
+    private int maxParams;
+
+    /**
+     * 树节点
+     */
+    static final class Node {
+        /** 节点对应的静态路径片段 */
+        private String prefix;
+        /** 静态子节点的首字符索引，与children一一对应 */
+        private char[] indices = new char[0];
+        private Node[] children = new Node[0];
+        /** 路径变量子节点 */
+        private Node paramChild;
+        /** 路径变量名，仅变量节点有值 */
+        private String paramName;
+        /** 路由，非空表示此节点是一条路由的终点 */
+        private Route route;
+        /** 路由终点上的路径变量名，按出现顺序 */
+        private String[] paramNames;
+        /** 注册时的原始路径 */
+        private String pattern;
+
+        Node(String prefix) {
+            this.prefix = prefix;
+        }
+
+        Route getRoute() {
+            return route;
+        }
+
+        String[] getParamNames() {
+            return paramNames;
+        }
+
+        String getPattern() {
+            return pattern;
+        }
+
+        private Node staticChild(char c) {
+            for (int i = 0; i < indices.length; i++) {
+                if (indices[i] == c) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        private void addChild(Node child) {
+            int n = indices.length;
+            char[] newIndices = new char[n + 1];
+            Node[] newChildren = new Node[n + 1];
+            System.arraycopy(indices, 0, newIndices, 0, n);
+            System.arraycopy(children, 0, newChildren, 0, n);
+            newIndices[n] = child.prefix.charAt(0);
+            newChildren[n] = child;
+            indices = newIndices;
+            children = newChildren;
+        }
+
+        private void replaceChild(Node oldChild, Node newChild) {
+            for (int i = 0; i < children.length; i++) {
+                if (children[i] == oldChild) {
+                    children[i] = newChild;
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * 添加路由
+     * @param pattern 路径，可包含 {name} 形式的路径变量
+     * @param route 路由
+     */
+    void insert(String pattern, Route route) {
+        List<String> names = new ArrayList<>();
+        Node node = root;
+        int pos = 0;
+        int len = pattern.length();
+        while (pos < len) {
+            if (pattern.charAt(pos) == '{') {
+                int close = pattern.indexOf('}', pos);
+                if (close < 0) {
+                    throw new IllegalArgumentException("Unclosed path variable in route: " + pattern);
+                }
+                String name = pattern.substring(pos + 1, close);
+                if (name.isEmpty()) {
+                    throw new IllegalArgumentException("Empty path variable name in route: " + pattern);
+                }
+                if (close + 1 < len && pattern.charAt(close + 1) != '/') {
+                    throw new IllegalArgumentException("Path variable must end a path segment: " + pattern);
+                }
+                if (node.paramChild == null) {
+                    node.paramChild = new Node("");
+                    node.paramChild.paramName = name;
+                } else if (!node.paramChild.paramName.equals(name)) {
+                    throw new IllegalArgumentException("Path variable {" + name + "} conflicts with existing {"
+                            + node.paramChild.paramName + "} in route: " + pattern);
+                }
+                names.add(name);
+                node = node.paramChild;
+                pos = close + 1;
+                continue;
+            }
+            // 静态片段，直到下一个路径变量或结尾
+            int segEnd = pattern.indexOf('{', pos);
+            if (segEnd < 0) {
+                segEnd = len;
+            }
+            Node child = node.staticChild(pattern.charAt(pos));
+            if (child == null) {
+                child = new Node(pattern.substring(pos, segEnd));
+                node.addChild(child);
+                node = child;
+                pos = segEnd;
+                continue;
+            }
+            // 计算公共前缀长度，必要时拆分节点
+            int common = 0;
+            int max = Math.min(child.prefix.length(), segEnd - pos);
+            while (common < max && child.prefix.charAt(common) == pattern.charAt(pos + common)) {
+                common++;
+            }
+            if (common < child.prefix.length()) {
+                Node split = new Node(child.prefix.substring(0, common));
+                child.prefix = child.prefix.substring(common);
+                split.addChild(child);
+                node.replaceChild(child, split);
+                child = split;
+            }
+            node = child;
+            pos += common;
+        }
+        node.route = route;
+        node.pattern = pattern;
+        node.paramNames = names.toArray(new String[0]);
+        maxParams = Math.max(maxParams, names.size());
+    }
+
+    /**
+     * 树中是否含有路径变量
+     */
+    int getMaxParams() {
+        return maxParams;
+    }
+
+    /**
+     * 查找路由
+     * @param uri 原始URI
+     * @param end 路径结束位置（'?'的位置或URI长度）
+     * @param captures 路径变量捕获位置，每个变量占两个元素[start,end)，没有路径变量时可为null
+     * @return 匹配到的路由终点节点，未匹配返回null
+     */
+    Node find(String uri, int end, int[] captures) {
+        return match(root, uri, 0, end, captures, 0);
+    }
+
+    private static Node match(Node node, String uri, int pos, int end, int[] captures, int depth) {
+        if (pos == end) {
+            return node.route != null ? node : null;
+        }
+        // 静态路径优先
+        Node child = node.staticChild(uri.charAt(pos));
+        if (child != null) {
+            int prefixLen = child.prefix.length();
+            if (pos + prefixLen <= end && uri.regionMatches(pos, child.prefix, 0, prefixLen)) {
+                Node found = match(child, uri, pos + prefixLen, end, captures, depth);
+                if (found != null) {
+                    return found;
+                }
+            }
+        }
+        // 路径变量，匹配到下一个'/'为止，不能为空
+        if (node.paramChild != null && captures != null) {
+            int segEnd = pos;
+            while (segEnd < end && uri.charAt(segEnd) != '/') {
+                segEnd++;
+            }
+            if (segEnd > pos) {
+                Node found = match(node.paramChild, uri, segEnd, end, captures, depth + 1);
+                if (found != null) {
+                    captures[depth * 2] = pos;
+                    captures[depth * 2 + 1] = segEnd;
+                    return found;
+                }
+            }
+        }
+        return null;
+    }
+}
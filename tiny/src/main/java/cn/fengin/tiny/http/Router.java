@@ -1,15 +1,21 @@
 package cn.fengin.tiny.http;
 
+import cn.fengin.tiny.context.ApplicationContext;
 import cn.fengin.tiny.http.interceptor.Interceptor;
 import cn.fengin.tiny.http.interceptor.InterceptorChain;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.FullHttpResponse;
 import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
 import lombok.Getter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletionStage;
 
 /**
  * 路由处理器
@@ -20,6 +26,8 @@ import java.util.concurrent.ConcurrentHashMap;
  * 3. 支持RESTful风格API
  * 4. 线程安全的路由管理
  * 5. 管理请求拦截器
+ * 6. 支持路径变量，例如 /api/device/{id}，通过HttpRequest.getPathVariable获取
+ * 7. 支持异步路由（getAsync/postAsync等），处理器返回CompletionStage，完成后再执行后置拦截器
  *
  * @author fengin
  * @since 1.0.0
@@ -28,12 +36,20 @@ public class Router {
     private static final Logger logger = LoggerFactory.getLogger(Router.class);
     
     /**
-     * 路由映射表
-     * key格式为 "METHOD:path"，例如 "GET:/api/users"
-     * value为对应的路由处理器
-     * 使用ConcurrentHashMap确保线程安全
+     * 已注册的路由定义，按注册顺序保存，用于构建路由树
      */
-    private static final Map<String, RouteHandler> routes = new ConcurrentHashMap<>();
+    private static final List<Route> definitions = new ArrayList<>();
+
+    /**
+     * 路由表，每个HTTP方法一棵路由树
+     * 发布后只读，注册新路由时整体重建替换（注册一般只在启动阶段发生）
+     */
+    private static volatile Map<HttpMethod, RouteTree> routes = new HashMap<>();
+
+    /**
+     * 是否有路由设置了单独限流，没有时安全检查不需要查找路由
+     */
+    private static volatile boolean rateLimited;
     
     /**
      * 拦截器链
@@ -47,29 +63,65 @@ public class Router {
     /**
      * 注册GET请求路由
      */
-    public static void get(String path, RouteHandler handler) {
-        addRoute(HttpMethod.GET, path, handler);
+    public static Route get(String path, RouteHandler handler) {
+        return addRoute(HttpMethod.GET, path, handler);
+    }
+
+    /**
+     * 注册响应缓存的GET请求路由，有效期内直接返回缓存的响应
+     * @see CachePolicy
+     */
+    public static Route get(String path, RouteHandler handler, CachePolicy policy) {
+        return get(path, handler).cache(policy);
     }
     
     /**
      * 注册POST请求路由
      */
-    public static void post(String path, RouteHandler handler) {
-        addRoute(HttpMethod.POST, path, handler);
+    public static Route post(String path, RouteHandler handler) {
+        return addRoute(HttpMethod.POST, path, handler);
     }
     
     /**
      * 注册PUT请求路由
      */
-    public static void put(String path, RouteHandler handler) {
-        addRoute(HttpMethod.PUT, path, handler);
+    public static Route put(String path, RouteHandler handler) {
+        return addRoute(HttpMethod.PUT, path, handler);
     }
     
     /**
      * 注册DELETE请求路由
      */
-    public static void delete(String path, RouteHandler handler) {
-        addRoute(HttpMethod.DELETE, path, handler);
+    public static Route delete(String path, RouteHandler handler) {
+        return addRoute(HttpMethod.DELETE, path, handler);
+    }
+    
+    /**
+     * 注册异步GET请求路由
+     */
+    public static Route getAsync(String path, AsyncRouteHandler handler) {
+        return addRoute(new Route(HttpMethod.GET, path, null, handler));
+    }
+
+    /**
+     * 注册异步POST请求路由
+     */
+    public static Route postAsync(String path, AsyncRouteHandler handler) {
+        return addRoute(new Route(HttpMethod.POST, path, null, handler));
+    }
+
+    /**
+     * 注册异步PUT请求路由
+     */
+    public static Route putAsync(String path, AsyncRouteHandler handler) {
+        return addRoute(new Route(HttpMethod.PUT, path, null, handler));
+    }
+
+    /**
+     * 注册异步DELETE请求路由
+     */
+    public static Route deleteAsync(String path, AsyncRouteHandler handler) {
+        return addRoute(new Route(HttpMethod.DELETE, path, null, handler));
     }
     
     /**
@@ -83,26 +135,215 @@ public class Router {
     /**
      * 添加路由
      */
-    private static void addRoute(HttpMethod method, String path, RouteHandler handler) {
-        String route = method.name() + ":" + path;
-        routes.put(route, handler);
-        logger.info("Route registered: {} {}", method, path);
+    private static Route addRoute(HttpMethod method, String path, RouteHandler handler) {
+        return addRoute(new Route(method, path, handler));
+    }
+
+    private static synchronized Route addRoute(Route route) {
+        definitions.add(route);
+        try {
+            routes = buildRoutes();
+        } catch (IllegalArgumentException e) {
+            definitions.remove(definitions.size() - 1);
+            throw e;
+        }
+        logger.info("Route registered: {} {}{}", route.getMethod(), route.getPath(), route.isAsync() ? " (async)" : "");
+        return route;
+    }
+
+    /**
+     * 根据全部路由定义重新构建路由表
+     * 新表构建完成后整体替换，已发布的路由树不再修改，查找时无需加锁
+     */
+    private static Map<HttpMethod, RouteTree> buildRoutes() {
+        Map<HttpMethod, RouteTree> table = new HashMap<>();
+        for (Route route : definitions) {
+            table.computeIfAbsent(route.getMethod(), k -> new RouteTree())
+                    .insert(route.getPath(), route);
+        }
+        return table;
     }
     
+    /**
+     * 查找请求对应的路由，匹配成功时把路径变量设置到请求中
+     * @return 匹配到的路由，未匹配返回null
+     */
+    public static Route match(HttpRequest request) {
+        RouteTree tree = routes.get(request.getMethod());
+        if (tree == null) {
+            return null;
+        }
+        // 直接在原始URI上查找，到'?'为止
+        String uri = request.getUri();
+        int end = uri.indexOf('?');
+        if (end < 0) {
+            end = uri.length();
+        }
+        int[] captures = tree.getMaxParams() > 0 ? new int[tree.getMaxParams() * 2] : null;
+        RouteTree.Node node = tree.find(uri, end, captures);
+        if (node == null) {
+            return null;
+        }
+        String[] names = node.getParamNames();
+        for (int i = 0; i < names.length; i++) {
+            request.setPathVariable(names[i], uri.substring(captures[i * 2], captures[i * 2 + 1]));
+        }
+        return node.getRoute();
+    }
+
+    /**
+     * 是否有路由设置了单独限流
+     */
+    public static boolean hasRateLimits() {
+        return rateLimited;
+    }
+
+    static void enableRateLimits() {
+        rateLimited = true;
+    }
+
+    /**
+     * 只查找路由，不解析路径变量，用于接收请求体前按路由决定处理方式
+     * @return 匹配到的路由，未匹配返回null
+     */
+    public static Route find(HttpMethod method, String uri) {
+        RouteTree tree = routes.get(method);
+        if (tree == null) {
+            return null;
+        }
+        int end = uri.indexOf('?');
+        if (end < 0) {
+            end = uri.length();
+        }
+        int[] captures = tree.getMaxParams() > 0 ? new int[tree.getMaxParams() * 2] : null;
+        RouteTree.Node node = tree.find(uri, end, captures);
+        return node == null ? null : node.getRoute();
+    }
+
     /**
      * 处理HTTP请求
      */
     public static void handle(ChannelHandlerContext ctx, HttpRequest request) {
-        String route = request.getMethod().name() + ":" + request.getUri().split("\\?")[0];
-        RouteHandler handler = routes.get(route);
-        
-        if (handler != null) {
+        handle(ctx, request, match(request));
+    }
+
+    /**
+     * 使用已匹配的路由处理HTTP请求，路由为空时返回404
+     * 设置了缓存策略的路由先查找缓存，命中时直接写出缓存的响应
+     */
+    public static void handle(ChannelHandlerContext ctx, HttpRequest request, Route route) {
+        if (route != null) {
+            if (route.isAsync() || route.isCoalesce()) {
+                // 异步路由、合并执行的请求在这里不等待完成
+                handleAsync(ctx, request, route);
+                return;
+            }
+            String cacheKey = ResponseCache.key(request, route);
+            if (writeCached(ctx, request, cacheKey)) {
+                return;
+            }
             // 执行路由处理器
-            handler.handle(request,new HttpResponse(ctx));
+            route.getHandler().handle(request,newResponse(ctx, request, route, cacheKey));
         } else {
             // 未找到路由，返回404
             logger.warn("No route found for: {} {}", request.getMethod().name(), request.getUri());
-            HttpResponseUtil.sendNotFound(ctx);
+            new HttpResponse(ctx, request).writeHttpError(HttpResponseStatus.NOT_FOUND);
+        }
+    }
+
+    /**
+     * 执行异步路由处理器，或者合并执行的路由处理器（同步处理器也在这里执行）
+     * 合并执行时，相同的请求正在执行则等待它完成并共享它的响应，参见Route.coalesce
+     * @return 处理完成的通知，处理器返回null或者命中响应缓存时为null，表示已经同步处理完成
+     */
+    public static CompletionStage<?> handleAsync(ChannelHandlerContext ctx, HttpRequest request, Route route) {
+        String cacheKey = ResponseCache.key(request, route);
+        if (writeCached(ctx, request, cacheKey)) {
+            return null;
+        }
+        RequestCoalescer.Flight flight = null;
+        if (route.isCoalesce() && request.getMethod() == HttpMethod.GET) {
+            // 按缓存策略区分的请求响应相同，没有缓存策略时按完整的URI区分
+            RequestCoalescer.Waiter waiter = new RequestCoalescer.Waiter(newResponse(ctx, request, route, null));
+            flight = RequestCoalescer.join(cacheKey != null ? cacheKey : request.getUri(), waiter);
+            if (flight == null) {
+                return waiter;
+            }
+        }
+        HttpResponse response = newResponse(ctx, request, route, cacheKey);
+        if (flight == null) {
+            return route.isAsync() ? route.getAsyncHandler().handle(request, response) : handleSync(request, response, route);
+        }
+        response.shareWith(flight);
+        CompletionStage<?> stage;
+        try {
+            stage = route.isAsync() ? route.getAsyncHandler().handle(request, response) : handleSync(request, response, route);
+        } catch (RuntimeException e) {
+            flight.complete(null, e);
+            throw e;
+        }
+        // 处理器写出完整响应时已经通知等待的请求，这里处理没有写出完整响应的情况
+        RequestCoalescer.Flight current = flight;
+        if (stage == null) {
+            current.complete(null, null);
+        } else {
+            stage.whenComplete((result, error) -> current.complete(null, error));
+        }
+        return stage;
+    }
+
+    private static CompletionStage<?> handleSync(HttpRequest request, HttpResponse response, Route route) {
+        route.getHandler().handle(request, response);
+        return null;
+    }
+
+    /**
+     * 使GET路由的响应缓存失效，之后的请求重新执行路由处理器
+     * @param path 请求路径，例如/api/admin/device/info；带路径变量的路由按具体路径查找，整个路由的缓存都会失效
+     * @return 是否找到路由
+     */
+    public static boolean invalidateCache(String path) {
+        Route route = find(HttpMethod.GET, path);
+        if (route == null) {
+            return false;
+        }
+        route.invalidateCache();
+        return true;
+    }
+
+    /**
+     * 清空所有路由的响应缓存
+     */
+    public static void clearResponseCache() {
+        ApplicationContext.getInstance().getResponseCache().clear();
+    }
+
+    /**
+     * 写出缓存的响应
+     * @return 是否命中缓存
+     */
+    private static boolean writeCached(ChannelHandlerContext ctx, HttpRequest request, String cacheKey) {
+        if (cacheKey == null) {
+            return false;
+        }
+        FullHttpResponse cached = ApplicationContext.getInstance().getResponseCache().get(cacheKey);
+        if (cached == null) {
+            return false;
+        }
+        logger.debug("Response cache hit: {}", request.getUri());
+        HttpResponseUtil.writeResponse(ctx, request, cached);
+        return true;
+    }
+
+    /**
+     * @param cacheKey 响应缓存键，不为空时路由处理器写出的响应同时放入缓存
+     */
+    private static HttpResponse newResponse(ChannelHandlerContext ctx, HttpRequest request, Route route, String cacheKey) {
+        HttpResponse response = new HttpResponse(ctx, request);
+        response.setBufferSizeHint(route.getResponseSize());
+        if (cacheKey != null) {
+            response.cacheAs(cacheKey, route.getCachePolicy());
         }
+        return response;
     }
-} 
\ No newline at end of file
+}
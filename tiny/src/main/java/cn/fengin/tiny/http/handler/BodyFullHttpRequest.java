@@ -0,0 +1,69 @@
+package cn.fengin.tiny.http.handler;
+
+import cn.fengin.tiny.http.BodyConsumer;
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.EmptyHttpHeaders;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.multipart.HttpPostRequestDecoder;
+
+/**
+ * 由HttpBodyHandler接收完请求体后交给HttpRequestHandler的完整请求
+ * 上传和流式消费的请求，请求体已经交给解码器或消费者，content为空
+ * 请求释放时销毁上传解码器，删除临时文件
+ *
+ * @author fengin
+ * @since 1.0.0
+ */
+public final class BodyFullHttpRequest extends DefaultFullHttpRequest {
+    /** 上传解码器，按上传处理请求体时有值 */
+    private final HttpPostRequestDecoder uploadDecoder;
+    /** 请求体消费者，流式消费请求体时有值 */
+    private final BodyConsumer bodyConsumer;
+    /** 请求释放时执行，归还请求体占用的内存预算 */
+    private Runnable releaseHook;
+
+    BodyFullHttpRequest(HttpRequest head, ByteBuf content, HttpPostRequestDecoder uploadDecoder, BodyConsumer bodyConsumer) {
+        super(head.protocolVersion(), head.method(), head.uri(), content, head.headers(), EmptyHttpHeaders.INSTANCE);
+        setDecoderResult(head.decoderResult());
+        this.uploadDecoder = uploadDecoder;
+        this.bodyConsumer = bodyConsumer;
+    }
+
+    public HttpPostRequestDecoder getUploadDecoder() {
+        return uploadDecoder;
+    }
+
+    public BodyConsumer getBodyConsumer() {
+        return bodyConsumer;
+    }
+
+    /**
+     * 设置请求释放（引用计数归零）时执行的操作
+     */
+    void onRelease(Runnable hook) {
+        this.releaseHook = hook;
+    }
+
+    @Override
+    public boolean release() {
+        return destroyIfReleased(super.release());
+    }
+
+    @Override
+    public boolean release(int decrement) {
+        return destroyIfReleased(super.release(decrement));
+    }
+
+    private boolean destroyIfReleased(boolean released) {
+        if (released && uploadDecoder != null) {
+            uploadDecoder.destroy();
+        }
+        if (released && releaseHook != null) {
+            Runnable hook = releaseHook;
+            releaseHook = null;
+            hook.run();
+        }
+        return released;
+    }
+}
@@ -0,0 +1,105 @@
+package cn.fengin.tiny.http.handler;
+
+import io.netty.handler.codec.compression.StandardCompressionOptions;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpContentCompressor;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+
+import java.util.List;
+
+/**
+ * 响应压缩处理器
+ * 按请求的Accept-Encoding使用gzip或deflate压缩动态响应（JSON、流式导出等），只压缩指定内容类型：
+ * 1. 小于最小大小的完整响应不压缩，压缩收益抵不过CPU开销
+ * 2. 已经设置Content-Encoding的响应（例如预压缩的静态文件）不再压缩
+ * 3. 带Content-Length的非完整响应（零拷贝或分块发送的文件）不压缩，压缩后长度与Content-Length不符
+ * 4. 206部分响应不压缩
+ * 需要放在HttpServerCodec之后、ChunkedWriteHandler之前，才能压缩分块写出的响应体
+ *
+ * @author fengin
+ * @since 1.0.0
+ */
+public class CompressionHandler extends HttpContentCompressor {
+    private final List<String> compressionTypes;
+
+    /**
+     * @param compressionLevel 压缩级别1-9
+     * @param minSize 完整响应小于该大小（字节）时不压缩
+     * @param compressionTypes 需要压缩的内容类型前缀
+     */
+    public CompressionHandler(int compressionLevel, int minSize, List<String> compressionTypes) {
+        super(minSize,
+                StandardCompressionOptions.gzip(compressionLevel, 15, 8),
+                StandardCompressionOptions.deflate(compressionLevel, 15, 8));
+        this.compressionTypes = compressionTypes;
+    }
+
+    @Override
+    protected Result beginEncode(HttpResponse response, String acceptEncoding) throws Exception {
+        if (!isCompressible(response.headers().get(HttpHeaderNames.CONTENT_TYPE), compressionTypes)) {
+            return null;
+        }
+        if (!(response instanceof FullHttpResponse) && HttpUtil.isContentLengthSet(response)) {
+            return null;
+        }
+        // Content-Range按未压缩的内容计算，部分响应不能压缩
+        if (response.status().code() == HttpResponseStatus.PARTIAL_CONTENT.code()) {
+            return null;
+        }
+        // 同一地址的响应可能压缩也可能不压缩，告知中间缓存按Accept-Encoding区分
+        if (!response.headers().containsValue(HttpHeaderNames.VARY, HttpHeaderNames.ACCEPT_ENCODING, true)) {
+            response.headers().add(HttpHeaderNames.VARY, HttpHeaderNames.ACCEPT_ENCODING);
+        }
+        return super.beginEncode(response, acceptEncoding);
+    }
+
+    /**
+     * 判断内容类型是否需要压缩
+     * @param contentType 内容类型，可以带charset等参数
+     * @param compressionTypes 需要压缩的内容类型前缀
+     */
+    public static boolean isCompressible(String contentType, List<String> compressionTypes) {
+        if (contentType == null || compressionTypes == null) {
+            return false;
+        }
+        for (String type : compressionTypes) {
+            if (contentType.regionMatches(true, 0, type, 0, type.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 判断客户端是否接受gzip编码，q=0表示明确不接受
+     * @param acceptEncoding 请求的Accept-Encoding头
+     */
+    public static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String part : acceptEncoding.split(",")) {
+            String[] params = part.split(";");
+            String coding = params[0].trim();
+            if (!coding.equalsIgnoreCase(HttpHeaderValues.GZIP.toString()) && !coding.equals("*")) {
+                continue;
+            }
+            for (int i = 1; i < params.length; i++) {
+                String param = params[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        return Double.parseDouble(param.substring(2)) > 0;
+                    } catch (NumberFormatException e) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+}
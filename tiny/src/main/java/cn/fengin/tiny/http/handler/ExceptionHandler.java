@@ -1,7 +1,13 @@
 package cn.fengin.tiny.http.handler;
 
 import cn.fengin.tiny.exception.HttpException;
+import cn.fengin.tiny.exception.RateLimitException;
+import cn.fengin.tiny.exception.SecurityException;
 import cn.fengin.tiny.exception.TinyException;
+import cn.fengin.tiny.http.HttpRequest;
+import cn.fengin.tiny.http.HttpResponseUtil;
+import cn.fengin.tiny.http.JsonSupport;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
@@ -12,8 +18,13 @@ import io.netty.handler.codec.http.HttpVersion;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 import static io.netty.handler.codec.http.HttpHeaderNames.CONTENT_LENGTH;
 import static io.netty.handler.codec.http.HttpHeaderNames.CONTENT_TYPE;
+import static io.netty.handler.codec.http.HttpHeaderNames.RETRY_AFTER;
 
 /**
  * 全局异常处理器
@@ -24,24 +35,38 @@ import static io.netty.handler.codec.http.HttpHeaderNames.CONTENT_TYPE;
 @ChannelHandler.Sharable
 public class ExceptionHandler extends ChannelInboundHandlerAdapter {
     private static final Logger logger = LoggerFactory.getLogger(ExceptionHandler.class);
+    private static final byte[] INTERNAL_ERROR_BODY =
+            "{\"code\":500,\"message\":\"Internal Server Error\"}".getBytes(StandardCharsets.UTF_8);
 
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
-        logger.error("Exception caught: {}", cause.getMessage());
+        if (cause instanceof RateLimitException) {
+            logger.debug("Exception caught: {}", cause.getMessage());
+        } else {
+            logger.error("Exception caught: {}", cause.getMessage());
+        }
+        handleException(ctx, null, cause);
+    }
 
+    /**
+     * 把异常转换为错误响应写出
+     * 在业务线程中处理请求时直接调用，按请求的序号和长连接状态写出响应
+     *
+     * @param request 异常对应的请求，为空时按连接上当前正在处理的请求
+     */
+    public static void handleException(ChannelHandlerContext ctx, HttpRequest request, Throwable cause) {
         // 构建错误响应
-        String errorMessage;
+        byte[] bytes;
         int httpCode;
         if (cause instanceof TinyException) {
             TinyException te = (TinyException) cause;
-            errorMessage = String.format("{\"code\":%d,\"message\":\"%s\"}", te.getCode(), te.getMessage());
+            bytes = errorBody(te.getCode(), te.getMessage());
             httpCode = (cause instanceof HttpException)?te.getCode():400;
         } else {
-            errorMessage = "{\"code\":500,\"message\":\"Internal Server Error\"}";
+            bytes = INTERNAL_ERROR_BODY;
             httpCode = 500;
         }
 
-        byte[] bytes = errorMessage.getBytes();
         FullHttpResponse response = new DefaultFullHttpResponse(
             HttpVersion.HTTP_1_1,
             HttpResponseStatus.valueOf(httpCode)
@@ -49,9 +74,37 @@ public class ExceptionHandler extends ChannelInboundHandlerAdapter {
 
         response.headers().set(CONTENT_TYPE, "application/json").set(CONTENT_LENGTH, bytes.length);
         response.content().writeBytes(bytes);
+        if (cause instanceof RateLimitException) {
+            response.headers().set(RETRY_AFTER, ((RateLimitException) cause).getRetryAfterSeconds());
+        }
 
-        // 发送响应并关闭连接
-        ctx.writeAndFlush(response)
-           .addListener(future -> ctx.close());
+        // 安全检查未通过的连接直接关闭，其它异常按长连接状态决定是否关闭
+        if (cause instanceof SecurityException) {
+            if (request != null) {
+                request.setKeepAlive(false);
+            } else {
+                HttpResponseUtil.setKeepAlive(ctx, false);
+            }
+        }
+        if (request != null) {
+            HttpResponseUtil.writeResponse(ctx, request, response);
+        } else {
+            HttpResponseUtil.writeResponse(ctx, response);
+        }
+    }
+
+    /**
+     * 错误响应的JSON，异常信息中的引号、换行等字符由JSON序列化转义
+     */
+    private static byte[] errorBody(int code, String message) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("code", code);
+        body.put("message", message);
+        try {
+            return JsonSupport.writer().writeValueAsBytes(body);
+        } catch (JsonProcessingException e) {
+            logger.warn("Failed to write error response", e);
+            return INTERNAL_ERROR_BODY;
+        }
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,395 @@
+package cn.fengin.tiny.http.handler;
+
+import cn.fengin.tiny.context.ApplicationContext;
+import cn.fengin.tiny.exception.HttpException;
+import cn.fengin.tiny.http.BodyConsumer;
+import cn.fengin.tiny.http.HttpResponseUtil;
+import cn.fengin.tiny.http.Route;
+import cn.fengin.tiny.http.Router;
+import cn.fengin.tiny.http.handler.deal.ReadPause;
+import cn.fengin.tiny.http.handler.deal.SecurityManager;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.http.*;
+import io.netty.handler.codec.http.multipart.DefaultHttpDataFactory;
+import io.netty.handler.codec.http.multipart.HttpDataFactory;
+import io.netty.handler.codec.http.multipart.HttpPostRequestDecoder;
+import io.netty.util.AttributeKey;
+import io.netty.util.ReferenceCountUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * HTTP请求体处理器，替代固定大小的HttpObjectAggregator
+ * 收到请求头时按路由决定请求体的处理方式：
+ * 1. 默认：聚合为完整请求，大小上限为路由的maxBodySize或server.http.max-body-size
+ * 2. 上传（Route.upload）：multipart和表单边接收边解码，较大的文件写入临时文件
+ * 3. 流式消费（Route.bodyConsumer）：数据块依次交给BodyConsumer，消费者未处理完时暂停读取连接
+ * 请求体超过上限时返回413并关闭连接；处理完成后把完整请求交给后续处理器，路由处理器的使用方式不变
+ * 聚合的请求体计入内存预算（SecurityManager.allocateMemory），请求处理完成、请求释放时归还，
+ * 交给业务线程池或异步处理的请求在处理完成前一直计入
+ *
+ * @author fengin
+ * @since 1.0.0
+ */
+public class HttpBodyHandler extends ChannelInboundHandlerAdapter {
+    private static final Logger logger = LoggerFactory.getLogger(HttpBodyHandler.class);
+
+    /**
+     * 当前请求的请求体是否流式处理（上传或流式消费），流式处理的数据块不在内存中累积
+     */
+    private static final AttributeKey<Boolean> STREAMING = AttributeKey.valueOf("tiny.http.streamingBody");
+
+    /**
+     * 上传使用的数据工厂，超过16KB的数据写入临时文件
+     */
+    private static final HttpDataFactory UPLOAD_DATA_FACTORY = new DefaultHttpDataFactory(DefaultHttpDataFactory.MINSIZE);
+
+    private static final int MAX_COMPOSITE_COMPONENTS = 1024;
+
+    private enum Mode {
+        /** 等待下一个请求 */
+        NONE,
+        /** 聚合请求体 */
+        BUFFER,
+        /** 上传解码 */
+        UPLOAD,
+        /** 流式消费 */
+        CONSUMER,
+        /** 请求已被拒绝，丢弃剩余的请求体 */
+        DISCARD
+    }
+
+    private final long defaultMaxBodySize;
+    private Mode mode = Mode.NONE;
+    private HttpRequest head;
+    /** 当前请求在连接上的序号 */
+    private int sequence = -1;
+    private long maxBodySize;
+    private long received;
+    private CompositeByteBuf content;
+    /** 聚合的请求体计入内存预算的字节数 */
+    private long allocated;
+    private HttpPostRequestDecoder decoder;
+    private BodyConsumer consumer;
+    /** 消费者是否有未完成的数据块 */
+    private boolean consuming;
+    /** 消费者处理期间收到的消息，处理完成后按顺序继续处理 */
+    private final ArrayDeque<Object> backlog = new ArrayDeque<>();
+
+    private final SecurityManager securityManager = ApplicationContext.getInstance().getSecurityManager();
+
+    public HttpBodyHandler(long defaultMaxBodySize) {
+        this.defaultMaxBodySize = defaultMaxBodySize;
+    }
+
+    /**
+     * 当前请求的请求体是否流式处理，流式处理时不需要按整个请求体计算内存占用
+     */
+    public static boolean isStreaming(ChannelHandlerContext ctx) {
+        return Boolean.TRUE.equals(ctx.channel().attr(STREAMING).get());
+    }
+
+    /**
+     * 是否正在等待客户端发送请求体，流式消费者处理数据块期间暂停了读取，不算等待
+     */
+    boolean isWaitingForBody() {
+        return mode != Mode.NONE && !consuming;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (consuming || !backlog.isEmpty()) {
+            // 消费者还在处理，保持消息顺序
+            backlog.offer(msg);
+            return;
+        }
+        handle(ctx, msg);
+    }
+
+    private void handle(ChannelHandlerContext ctx, Object msg) {
+        boolean isRequest = msg instanceof HttpRequest;
+        if (isRequest) {
+            startRequest(ctx, (HttpRequest) msg);
+        }
+        if (msg instanceof HttpContent) {
+            onContent(ctx, (HttpContent) msg);
+        } else if (!isRequest) {
+            ctx.fireChannelRead(msg);
+        }
+    }
+
+    private void startRequest(ChannelHandlerContext ctx, HttpRequest request) {
+        cleanup(null);
+        head = request;
+        sequence = HttpPipeliningHandler.currentSequence(ctx);
+        received = 0;
+        Route route = Router.find(request.method(), request.uri());
+        maxBodySize = route != null && route.getMaxBodySize() > 0 ? route.getMaxBodySize() : defaultMaxBodySize;
+        if (HttpUtil.getContentLength(request, -1L) > maxBodySize) {
+            reject(ctx);
+            return;
+        }
+        if (HttpUtil.is100ContinueExpected(request)) {
+            ctx.writeAndFlush(new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.CONTINUE, Unpooled.EMPTY_BUFFER));
+            request.headers().remove(HttpHeaderNames.EXPECT);
+        }
+        // 解码失败的请求由HttpServerCodec直接生成完整请求，按普通请求处理
+        boolean streamable = route != null && !(request instanceof FullHttpRequest);
+        try {
+            if (streamable && route.isUpload() && isUploadRequest(request)) {
+                decoder = new HttpPostRequestDecoder(UPLOAD_DATA_FACTORY, request);
+                mode = Mode.UPLOAD;
+            } else if (streamable && route.getBodyConsumer() != null) {
+                cn.fengin.tiny.http.HttpRequest view = new cn.fengin.tiny.http.HttpRequest(new DefaultFullHttpRequest(
+                        request.protocolVersion(), request.method(), request.uri(), Unpooled.EMPTY_BUFFER,
+                        request.headers(), EmptyHttpHeaders.INSTANCE));
+                Router.match(view);
+                consumer = route.getBodyConsumer().apply(view);
+                mode = Mode.CONSUMER;
+            } else {
+                content = ctx.alloc().compositeBuffer(MAX_COMPOSITE_COMPONENTS);
+                mode = Mode.BUFFER;
+            }
+        } catch (Exception e) {
+            fail(ctx, e);
+            return;
+        }
+        ctx.channel().attr(STREAMING).set(mode == Mode.UPLOAD || mode == Mode.CONSUMER);
+    }
+
+    private static boolean isUploadRequest(HttpRequest request) {
+        if (request.method() != HttpMethod.POST) {
+            return false;
+        }
+        String contentType = request.headers().get(HttpHeaderNames.CONTENT_TYPE);
+        return contentType != null && (contentType.contains("multipart/form-data")
+                || contentType.contains("application/x-www-form-urlencoded"));
+    }
+
+    private void onContent(ChannelHandlerContext ctx, HttpContent chunk) {
+        boolean last = chunk instanceof LastHttpContent;
+        if (mode == Mode.NONE || mode == Mode.DISCARD) {
+            chunk.release();
+            if (last) {
+                mode = Mode.NONE;
+            }
+            return;
+        }
+        received += chunk.content().readableBytes();
+        if (received > maxBodySize) {
+            chunk.release();
+            reject(ctx);
+            if (last) {
+                mode = Mode.NONE;
+            }
+            return;
+        }
+        switch (mode) {
+            case BUFFER:
+                if (chunk.content().isReadable()) {
+                    int bytes = chunk.content().readableBytes();
+                    securityManager.allocateMemory(bytes);
+                    allocated += bytes;
+                    content.addComponent(true, chunk.content().retain());
+                }
+                chunk.release();
+                if (last) {
+                    complete(ctx);
+                }
+                break;
+            case UPLOAD:
+                try {
+                    decoder.offer(chunk);
+                } catch (Exception e) {
+                    // 解码错误的详细信息可能包含请求体的内容，只记录在异常原因中，不返回给客户端
+                    fail(ctx, new HttpException(HttpException.ERROR_CODE, "Invalid upload body", e));
+                    return;
+                } finally {
+                    chunk.release();
+                }
+                if (last) {
+                    complete(ctx);
+                }
+                break;
+            case CONSUMER:
+                consume(ctx, chunk, last);
+                break;
+            default:
+                chunk.release();
+        }
+    }
+
+    /**
+     * 把数据块交给消费者，消费者返回未完成的CompletionStage时暂停读取
+     */
+    private void consume(ChannelHandlerContext ctx, HttpContent chunk, boolean last) {
+        CompletionStage<?> stage;
+        try {
+            stage = chunk.content().isReadable() ? consumer.onData(chunk.content()) : null;
+        } catch (Exception e) {
+            chunk.release();
+            fail(ctx, e);
+            return;
+        }
+        if (stage == null) {
+            chunk.release();
+            if (last) {
+                complete(ctx);
+            }
+            return;
+        }
+        consuming = true;
+        stage.whenComplete((result, error) -> {
+            if (ctx.executor().inEventLoop()) {
+                afterConsume(ctx, chunk, last, error);
+            } else {
+                ctx.executor().execute(() -> afterConsume(ctx, chunk, last, error));
+            }
+        });
+        if (consuming) {
+            ReadPause.pause(ctx.channel(), ReadPause.BODY_CONSUMER);
+        }
+    }
+
+    private void afterConsume(ChannelHandlerContext ctx, HttpContent chunk, boolean last, Throwable error) {
+        chunk.release();
+        consuming = false;
+        if (mode == Mode.CONSUMER) {
+            if (error != null) {
+                fail(ctx, error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+            } else if (last) {
+                complete(ctx);
+            }
+        }
+        ReadPause.resume(ctx.channel(), ReadPause.BODY_CONSUMER);
+        Object msg;
+        while (!consuming && (msg = backlog.poll()) != null) {
+            handle(ctx, msg);
+        }
+    }
+
+    /**
+     * 请求体接收完成，把完整请求交给后续处理器
+     */
+    private void complete(ChannelHandlerContext ctx) {
+        BodyFullHttpRequest request;
+        switch (mode) {
+            case BUFFER:
+                request = new BodyFullHttpRequest(head, content, null, null);
+                content = null;
+                if (allocated > 0) {
+                    long bytes = allocated;
+                    allocated = 0;
+                    request.onRelease(() -> securityManager.freeMemory(bytes));
+                }
+                if (HttpUtil.isTransferEncodingChunked(request)) {
+                    request.headers().remove(HttpHeaderNames.TRANSFER_ENCODING);
+                }
+                HttpUtil.setContentLength(request, request.content().readableBytes());
+                break;
+            case UPLOAD:
+                request = new BodyFullHttpRequest(head, ctx.alloc().buffer(0), decoder, null);
+                decoder = null;
+                break;
+            case CONSUMER:
+                try {
+                    consumer.onComplete();
+                } catch (Exception e) {
+                    fail(ctx, e);
+                    return;
+                }
+                request = new BodyFullHttpRequest(head, ctx.alloc().buffer(0), null, consumer);
+                consumer = null;
+                break;
+            default:
+                return;
+        }
+        mode = Mode.NONE;
+        head = null;
+        // 流式消费期间可能已经读取了后续请求，恢复为本请求的序号
+        HttpPipeliningHandler.setCurrentSequence(ctx, sequence);
+        ctx.fireChannelRead(request);
+    }
+
+    /**
+     * 请求体超过大小上限，返回413并关闭连接
+     */
+    private void reject(ChannelHandlerContext ctx) {
+        logger.warn("Request body too large (limit {} bytes): {} {}", maxBodySize, head.method(), head.uri());
+        cleanup(new HttpException(HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE.code(), "Request body too large"));
+        mode = Mode.DISCARD;
+        FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1,
+                HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE, Unpooled.EMPTY_BUFFER);
+        response.headers().set(HttpHeaderNames.CONTENT_LENGTH, 0);
+        HttpPipeliningHandler.setCurrentSequence(ctx, sequence);
+        HttpResponseUtil.writeResponse(ctx, response);
+    }
+
+    /**
+     * 请求体处理失败，通过ExceptionHandler返回错误响应并关闭连接
+     */
+    private void fail(ChannelHandlerContext ctx, Throwable cause) {
+        logger.warn("Failed to process request body: {} {}", head.method(), head.uri(), cause);
+        cleanup(cause);
+        mode = Mode.DISCARD;
+        HttpPipeliningHandler.setCurrentSequence(ctx, sequence);
+        ExceptionHandler.handleException(ctx, null, cause);
+    }
+
+    /**
+     * 清理当前请求的请求体状态
+     * @param cause 请求未完成的原因，为null时表示正常开始下一个请求
+     */
+    private void cleanup(Throwable cause) {
+        if (content != null) {
+            content.release();
+            content = null;
+        }
+        if (allocated > 0) {
+            securityManager.freeMemory(allocated);
+            allocated = 0;
+        }
+        if (decoder != null) {
+            decoder.destroy();
+            decoder = null;
+        }
+        if (consumer != null) {
+            BodyConsumer c = consumer;
+            consumer = null;
+            try {
+                c.onError(cause != null ? cause : new IllegalStateException("Request body incomplete"));
+            } catch (Exception e) {
+                logger.warn("Error in body consumer onError", e);
+            }
+        }
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        release(ctx);
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        release(ctx);
+    }
+
+    private void release(ChannelHandlerContext ctx) {
+        cleanup(new ClosedChannelException());
+        mode = Mode.NONE;
+        Object msg;
+        while ((msg = backlog.poll()) != null) {
+            ReferenceCountUtil.release(msg);
+        }
+        ctx.channel().attr(STREAMING).set(false);
+    }
+}
@@ -0,0 +1,245 @@
+package cn.fengin.tiny.http.handler;
+
+import cn.fengin.tiny.http.handler.deal.ReadPause;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.FileRegion;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.stream.ChunkedInput;
+import io.netty.util.AttributeKey;
+import io.netty.util.ReferenceCountUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * HTTP管道化处理器
+ * 同一连接上客户端可以连续发送多个请求而不等待响应，处理器保证响应顺序与请求顺序一致：
+ * 1. 每个请求按到达顺序分配序号
+ * 2. 提前完成的响应暂存在重排序缓冲区中，轮到它时再发送
+ * 3. 连续可发送的响应一起写出，每批只flush一次
+ * 4. 未完成的请求数达到上限时暂停读取（ReadPause.PIPELINING），响应发出后解除，实现背压
+ * 暂停读取不影响同一次读取中已经解码的请求，未完成的请求数可能超过上限，
+ * 重排序缓冲区保存所有已读取请求的响应，大小不超过readSequence - writeSequence
+ *
+ * @author fengin
+ * @since 1.0.0
+ */
+public class HttpPipeliningHandler extends ChannelDuplexHandler {
+    private static final Logger logger = LoggerFactory.getLogger(HttpPipeliningHandler.class);
+
+    /**
+     * 最近一个读取到的请求的序号，请求在后续处理器中同步处理时用于给响应标记序号
+     */
+    private static final AttributeKey<Integer> SEQUENCE = AttributeKey.valueOf("tiny.http.sequence");
+
+    /** 每个连接最多同时处理的请求数 */
+    private final int maxInFlight;
+    /** 下一个请求的序号 */
+    private int readSequence = 0;
+    /** 下一个应该写出的响应序号 */
+    private int writeSequence = 0;
+    /** 是否有写出但未flush的数据 */
+    private boolean flushPending = false;
+    /** 重排序缓冲区，按序号排序 */
+    private final PriorityQueue<SequencedResponse> pending =
+            new PriorityQueue<>(Comparator.comparingInt(SequencedResponse::getSequence));
+
+    public HttpPipeliningHandler(int maxInFlight) {
+        this.maxInFlight = Math.max(1, maxInFlight);
+    }
+
+    /**
+     * 获取当前连接最近读取到的请求序号，没有时返回-1
+     */
+    public static int currentSequence(ChannelHandlerContext ctx) {
+        Integer sequence = ctx.channel().attr(SEQUENCE).get();
+        return sequence == null ? -1 : sequence;
+    }
+
+    /**
+     * 重新设置当前请求序号，请求体延后交给后续处理器时（例如流式消费请求体），
+     * 由HttpBodyHandler在交出完整请求前恢复为该请求的序号
+     */
+    static void setCurrentSequence(ChannelHandlerContext ctx, int sequence) {
+        ctx.channel().attr(SEQUENCE).set(sequence);
+    }
+
+    /**
+     * 是否有已读取但还没有写出响应的请求
+     */
+    boolean hasInFlightRequests() {
+        return readSequence != writeSequence;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof HttpRequest) {
+            ctx.channel().attr(SEQUENCE).set(readSequence++);
+            if (readSequence - writeSequence >= maxInFlight && ReadPause.pause(ctx.channel(), ReadPause.PIPELINING)) {
+                // 未完成请求数达到上限，暂停读取
+                logger.debug("Pipelined requests reached limit {}, pause reading: {}", maxInFlight, ctx.channel());
+            }
+        }
+        ctx.fireChannelRead(msg);
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (!(msg instanceof SequencedResponse)) {
+            flushPending = true;
+            ctx.write(msg, promise);
+            return;
+        }
+        SequencedResponse response = (SequencedResponse) msg;
+        response.promise = promise;
+        if (response.sequence < writeSequence) {
+            // 对应的请求已经响应过（例如请求处理之外的异常），直接写出
+            flushPending = true;
+            response.writeTo(ctx);
+            return;
+        }
+        if (response.sequence > writeSequence) {
+            // 前面的响应还没有完成，暂存等待，每个已读取的请求最多暂存一个响应
+            pending.offer(response);
+            return;
+        }
+        writeInOrder(ctx, response);
+        // 写出已经就绪的后续响应
+        while (!pending.isEmpty() && pending.peek().sequence == writeSequence) {
+            writeInOrder(ctx, pending.poll());
+        }
+        // 只解除管道化的暂停，内存不足等其他原因的暂停由各自的处理器解除
+        if (readSequence - writeSequence < maxInFlight && ReadPause.resume(ctx.channel(), ReadPause.PIPELINING)) {
+            logger.debug("Pipelined requests below limit {}, resume reading: {}", maxInFlight, ctx.channel());
+        }
+    }
+
+    private void writeInOrder(ChannelHandlerContext ctx, SequencedResponse response) {
+        writeSequence++;
+        flushPending = true;
+        response.writeTo(ctx);
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) throws Exception {
+        // 只有暂存的响应时不需要flush，等整批写出后再flush
+        if (flushPending) {
+            flushPending = false;
+            ctx.flush();
+        }
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        releasePending();
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        releasePending();
+    }
+
+    private void releasePending() {
+        SequencedResponse response;
+        while ((response = pending.poll()) != null) {
+            response.release();
+            if (response.promise != null) {
+                response.promise.tryFailure(new ClosedChannelException());
+            }
+        }
+    }
+
+    /**
+     * 带请求序号的响应
+     * 完整响应只有response；流式响应的response是响应头，body是由ChunkedWriteHandler分块写出的内容，
+     * 或者依次写出的多个部分（ByteBuf、零拷贝发送的FileRegion、分块读取的ChunkedInput），写出完成（promise完成）表示整个响应体发送完毕
+     */
+    public static final class SequencedResponse {
+        private final int sequence;
+        private final HttpResponse response;
+        private final Object body;
+        private ChannelPromise promise;
+
+        public SequencedResponse(int sequence, FullHttpResponse response) {
+            this(sequence, response, (Object) null);
+        }
+
+        public SequencedResponse(int sequence, HttpResponse response, ChunkedInput<?> body) {
+            this(sequence, response, (Object) body);
+        }
+
+        public SequencedResponse(int sequence, HttpResponse response, FileRegion body) {
+            this(sequence, response, Collections.singletonList(body));
+        }
+
+        public SequencedResponse(int sequence, HttpResponse response, List<?> parts) {
+            this(sequence, response, (Object) parts);
+        }
+
+        private SequencedResponse(int sequence, HttpResponse response, Object body) {
+            this.sequence = sequence;
+            this.response = response;
+            this.body = body;
+        }
+
+        public int getSequence() {
+            return sequence;
+        }
+
+        private void writeTo(ChannelHandlerContext ctx) {
+            if (body == null) {
+                ctx.write(response, promise);
+            } else if (body instanceof List) {
+                // 各部分之后需要写出结束标记，HTTP编码器才会开始下一个响应
+                ctx.write(response);
+                for (Object part : (List<?>) body) {
+                    // ByteBuf封装为HttpContent，HTTP/2的流上才能转换为DATA帧
+                    ctx.write(part instanceof ByteBuf ? new DefaultHttpContent((ByteBuf) part) : part);
+                }
+                ctx.write(LastHttpContent.EMPTY_LAST_CONTENT, promise);
+            } else {
+                ctx.write(response);
+                ctx.write(body, promise);
+            }
+        }
+
+        private void release() {
+            ReferenceCountUtil.release(response);
+            if (body instanceof List) {
+                for (Object part : (List<?>) body) {
+                    releaseBody(part);
+                }
+            } else {
+                releaseBody(body);
+            }
+        }
+
+        /**
+         * 释放没有写出的响应体
+         */
+        public static void releaseBody(Object body) {
+            if (body instanceof ChunkedInput) {
+                try {
+                    ((ChunkedInput<?>) body).close();
+                } catch (Exception e) {
+                    logger.debug("Failed to close response body", e);
+                }
+            } else {
+                ReferenceCountUtil.release(body);
+            }
+        }
+    }
+}
@@ -1,6 +1,12 @@
 package cn.fengin.tiny.http.handler;
 
+import cn.fengin.tiny.config.ExecutionMode;
+import cn.fengin.tiny.config.ServerConfig;
 import cn.fengin.tiny.context.ApplicationContext;
+import cn.fengin.tiny.exception.HttpException;
+import cn.fengin.tiny.http.HttpResponse;
+import cn.fengin.tiny.http.HttpResponseUtil;
+import cn.fengin.tiny.http.Route;
 import cn.fengin.tiny.http.Router;
 import cn.fengin.tiny.http.HttpRequest;
 import cn.fengin.tiny.http.interceptor.InterceptorChain;
@@ -10,13 +16,23 @@ import org.slf4j.LoggerFactory;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.handler.codec.http.*;
+import io.netty.handler.timeout.IdleStateEvent;
 
-import java.net.URI;
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * HTTP请求处理器
  * 处理HTTP请求，实现路由分发
+ * 路由处理器按配置在IO线程或业务线程池中执行，业务线程池满时返回503
+ * 异步路由在处理器返回的CompletionStage完成后执行后置拦截器，超时返回503
  *
  * @author fengin
  * @since 1.0.0
@@ -24,10 +40,16 @@ import java.util.Map;
 public class HttpRequestHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
     private static final Logger logger = LoggerFactory.getLogger(HttpRequestHandler.class);
     private final ApplicationContext context;
-    private final Map<String, String>  mimeTypes;
+    private final StaticResourceHandler staticResourceHandler;
+    private final ServerConfig.HttpConfig httpConfig;
+    /**
+     * 当前连接已处理的请求数，每个连接一个处理器实例
+     */
+    private int requestCount = 0;
     public HttpRequestHandler(ApplicationContext context){
         this.context = context;
-        this.mimeTypes = context.getStaticResourceConfig().getMimeTypes();
+        this.staticResourceHandler = new StaticResourceHandler(context);
+        this.httpConfig = context.getServerConfig().getHttp();
     }
     @Override
     protected void channelRead0(ChannelHandlerContext ctx, FullHttpRequest request) {
@@ -35,50 +57,209 @@ public class HttpRequestHandler extends SimpleChannelInboundHandler<FullHttpRequ
         logger.debug("Received HTTP request: {} {}", request.method(), request.uri());
         // 包装请求
         HttpRequest httpRequest = new HttpRequest(request);
-        // 获取拦截器链
-        InterceptorChain chain = Router.getInterceptorChain();
-        
+        // 根据配置、请求头（Connection）和协议版本决定响应后是否保持连接
+        requestCount++;
+        int maxRequests = httpConfig.getKeepAliveMaxRequests();
+        httpRequest.setSequence(HttpPipeliningHandler.currentSequence(ctx));
+        httpRequest.setKeepAlive(httpConfig.isKeepAlive()
+                && HttpUtil.isKeepAlive(request)
+                && (maxRequests <= 0 || requestCount < maxRequests));
+        HttpResponseUtil.bindRequest(ctx, httpRequest);
         try {
             // 如果是静态资源请求
-            if (isStaticResource(httpRequest.getUri())) {
-                new StaticResourceHandler(context).handle(ctx, httpRequest.getUri());
+            String path = StaticAssetManifest.requestPath(httpRequest.getUri());
+            StaticAssetManifest.Asset asset = path != null ? StaticResourceHandler.findAsset(path) : null;
+            if (asset != null) {
+                staticResourceHandler.handle(ctx, httpRequest, asset);
                 return;
             }
+        } catch (Exception e) {
+            logger.warn("Error handling static resource: {}", e.getMessage());
+            ExceptionHandler.handleException(ctx, httpRequest, e);
+            return;
+        }
+        Route route = Router.match(httpRequest);
+        Executor executor = selectExecutor(route);
+        if (executor == null) {
+            // 直接在IO线程中处理，异步路由的请求对象需要保留到处理完成
+            CompletionStage<?> completion = process(ctx, httpRequest, route);
+            if (completion != null) {
+                request.retain();
+                releaseOnCompletion(request, completion);
+            }
+            return;
+        }
+        // 在业务线程中处理，请求对象需要保留到处理完成，响应由Netty切换回连接所在的IO线程写出
+        request.retain();
+        try {
+            executor.execute(() -> {
+                CompletionStage<?> completion = null;
+                try {
+                    completion = process(ctx, httpRequest, route);
+                } finally {
+                    releaseOnCompletion(request, completion);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            request.release();
+            logger.warn("Business executor is busy, reject request: {} {}", request.method(), request.uri());
+            new HttpResponse(ctx, httpRequest).writeHttpError(HttpResponseStatus.SERVICE_UNAVAILABLE);
+        }
+    }
+
+    /**
+     * 处理完成后释放请求对象，completion为null表示已经处理完成
+     */
+    private static void releaseOnCompletion(FullHttpRequest request, CompletionStage<?> completion) {
+        if (completion == null) {
+            request.release();
+        } else {
+            completion.whenComplete((result, error) -> request.release());
+        }
+    }
+
+    /**
+     * 执行拦截器链和路由处理器
+     * @return 异步路由处理完成（包括后置拦截器）的通知，同步处理时返回null
+     */
+    private CompletionStage<?> process(ChannelHandlerContext ctx, HttpRequest httpRequest, Route route) {
+        // 获取拦截器链
+        InterceptorChain chain = Router.getInterceptorChain();
+        try {
             // 执行拦截器链
             if (chain.applyPreHandle(ctx, httpRequest)) {
+                if (route != null && (route.isAsync() || route.isCoalesce())) {
+                    // 合并执行的请求可能需要等待正在执行的相同请求，按异步路由处理
+                    return processAsync(ctx, httpRequest, route, chain);
+                }
                 // 处理请求
-                Router.handle(ctx, httpRequest);
+                Router.handle(ctx, httpRequest, route);
                 // 执行后置处理
                 chain.applyPostHandle(ctx, httpRequest);
+                chain.triggerAfterCompletion(ctx, httpRequest, null);
             }
         } catch (Exception e) {
             logger.warn("Error handling request: {}", e.getMessage());
             // 触发异常完成处理
-            ctx.fireExceptionCaught(e);
+            ExceptionHandler.handleException(ctx, httpRequest, e);
             chain.triggerAfterCompletion(ctx, httpRequest, e);
         }
+        return null;
     }
-    
-    @Override
-    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
-        logger.warn("Exception caught", cause.getCause());
-        ctx.fireExceptionCaught(cause);
-    }
+
     /**
-     * 判断是否是静态资源请求
+     * 执行异步路由处理器，处理器返回的CompletionStage完成后执行后置拦截器
+     * 超时和异常完成由ExceptionHandler返回错误响应，超时后处理器再写出的响应会被丢弃，
+     * 超时后请求对象即被释放，处理器不应再读取请求
      */
-    private boolean isStaticResource(String uri) {
-        try {
-            URI parsedUri = new URI(uri);
-            String path = parsedUri.getPath(); // 去除查询参数
-            for (String key : mimeTypes.keySet()) {
-                if (path.endsWith(key)) {
-                    return true;
+    private CompletionStage<?> processAsync(ChannelHandlerContext ctx, HttpRequest httpRequest, Route route,
+                                            InterceptorChain chain) {
+        CompletionStage<?> stage = Router.handleAsync(ctx, httpRequest, route);
+        if (stage == null) {
+            completeAsync(ctx, httpRequest, chain, null);
+            return null;
+        }
+        // 超时和正常完成只处理先发生的一个，处理完成后completion完成
+        AtomicBoolean finished = new AtomicBoolean(false);
+        CompletableFuture<Void> completion = new CompletableFuture<>();
+        ScheduledFuture<?> timeout = null;
+        int asyncTimeout = httpConfig.getAsyncTimeout();
+        if (asyncTimeout > 0) {
+            // 在连接所在的IO线程上计时，不占用额外线程
+            timeout = ctx.executor().schedule(() -> {
+                if (finished.compareAndSet(false, true)) {
+                    logger.warn("Async request timeout after {}s: {} {}", asyncTimeout, httpRequest.getMethod(), httpRequest.getUri());
+                    if (stage instanceof Future) {
+                        ((Future<?>) stage).cancel(false);
+                    }
+                    completeAsync(ctx, httpRequest, chain, new HttpException(
+                            HttpResponseStatus.SERVICE_UNAVAILABLE.code(), "Request timeout"));
+                    completion.complete(null);
                 }
+            }, asyncTimeout, TimeUnit.SECONDS);
+        }
+        ScheduledFuture<?> timeoutFuture = timeout;
+        stage.whenComplete((result, error) -> {
+            if (!finished.compareAndSet(false, true)) {
+                // 已经超时
+                return;
             }
-        } catch (Exception e) {
-            logger.error("Invalid URI: " + uri, e);
+            if (timeoutFuture != null) {
+                timeoutFuture.cancel(false);
+            }
+            try {
+                completeAsync(ctx, httpRequest, chain, error);
+            } finally {
+                completion.complete(null);
+            }
+        });
+        return completion;
+    }
+
+    /**
+     * 异步路由处理完成
+     * 正常完成时执行后置处理，没有写出响应时返回500；异常完成时由ExceptionHandler返回错误响应
+     */
+    private void completeAsync(ChannelHandlerContext ctx, HttpRequest httpRequest, InterceptorChain chain, Throwable error) {
+        if (error == null) {
+            if (!httpRequest.isResponded()) {
+                logger.warn("Async route completed without response: {} {}", httpRequest.getMethod(), httpRequest.getUri());
+                new HttpResponse(ctx, httpRequest).writeHttpError(HttpResponseStatus.INTERNAL_SERVER_ERROR);
+            }
+            chain.applyPostHandle(ctx, httpRequest);
+            chain.triggerAfterCompletion(ctx, httpRequest, null);
+            return;
+        }
+        // CompletableFuture的异常包装在CompletionException中
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        logger.warn("Error handling async request: {}", cause.getMessage());
+        ExceptionHandler.handleException(ctx, httpRequest, cause);
+        chain.triggerAfterCompletion(ctx, httpRequest, cause instanceof Exception ? (Exception) cause : new RuntimeException(cause));
+    }
+
+    /**
+     * 选择执行路由处理器的线程池，返回null表示直接在IO线程中执行
+     * 路由单独设置的执行方式优先于全局配置，未匹配到路由时直接在IO线程中返回404
+     */
+    private Executor selectExecutor(Route route) {
+        if (route == null) {
+            return null;
+        }
+        ExecutionMode mode = route.getExecution() != null ? route.getExecution() : httpConfig.getExecution();
+        return context.getExecutor(mode);
+    }
+    
+    /**
+     * 长连接空闲超时，关闭连接
+     * 空闲检测只按连接上的读写计算，还有请求在处理（例如较慢的路由处理器、流式消费者）时不关闭，
+     * 接收请求体的中途客户端停止发送时仍然关闭
+     */
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+        if (evt instanceof IdleStateEvent) {
+            if (!isIdle(ctx)) {
+                logger.debug("Connection idle with requests in progress, keep open: {}", ctx.channel().remoteAddress());
+                return;
+            }
+            logger.debug("Closing idle HTTP connection: {}", ctx.channel().remoteAddress());
+            ctx.close();
+            return;
+        }
+        super.userEventTriggered(ctx, evt);
+    }
+
+    private static boolean isIdle(ChannelHandlerContext ctx) {
+        HttpBodyHandler bodyHandler = ctx.pipeline().get(HttpBodyHandler.class);
+        if (bodyHandler != null && bodyHandler.isWaitingForBody()) {
+            return true;
         }
-        return false;
+        HttpPipeliningHandler pipeliningHandler = ctx.pipeline().get(HttpPipeliningHandler.class);
+        return pipeliningHandler == null || !pipeliningHandler.hasInFlightRequests();
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        logger.warn("Exception caught", cause.getCause());
+        ctx.fireExceptionCaught(cause);
     }
 } 
\ No newline at end of file
@@ -0,0 +1,240 @@
+package cn.fengin.tiny.http.handler;
+
+import io.netty.util.AbstractReferenceCounted;
+import io.netty.util.ReferenceCounted;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 静态文件描述符缓存
+ * 缓存已打开的文件通道和文件元数据（大小、修改时间），热点文件不需要每次请求都打开、关闭文件：
+ * 1. 按最近访问淘汰，最多缓存maxEntries个文件
+ * 2. 缓存超过validMillis后重新读取文件属性，文件被替换或修改时重新打开
+ * 3. 文件通道按引用计数关闭，淘汰时正在发送的响应不受影响，发送完成后才关闭
+ *
+ * @author fengin
+ * @since 1.0.0
+ */
+final class OpenFileCache {
+    private static final Logger logger = LoggerFactory.getLogger(OpenFileCache.class);
+
+    private final Path root;
+    private final long validMillis;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<Path, OpenFile> files;
+
+    /**
+     * @param root 静态资源目录
+     * @param maxEntries 最多缓存的文件数
+     * @param validSeconds 缓存的文件属性有效时间（秒）
+     */
+    OpenFileCache(Path root, int maxEntries, int validSeconds) {
+        this.root = root.toAbsolutePath().normalize();
+        this.validMillis = validSeconds * 1000L;
+        this.files = new LinkedHashMap<Path, OpenFile>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Path, OpenFile> eldest) {
+                if (size() > Math.max(1, maxEntries)) {
+                    eldest.getValue().release();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * 打开请求路径对应的文件
+     * 返回的文件已经增加引用计数，使用完后必须release
+     * @param uriPath 已解码的请求路径，例如/js/app.js
+     * @return 文件，不存在、不是普通文件或路径越出静态资源目录时返回null
+     */
+    OpenFile open(String uriPath) throws IOException {
+        Path path = resolve(uriPath);
+        if (path == null) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        OpenFile cached;
+        lock.lock();
+        try {
+            cached = files.get(path);
+            if (cached != null && now - cached.checkedAt < validMillis) {
+                return cached.retain();
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        // 缓存未命中或需要校验，文件IO在锁外进行
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            remove(path, cached);
+            return null;
+        }
+        if (!attributes.isRegularFile()) {
+            remove(path, cached);
+            return null;
+        }
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        if (cached != null && cached.length == attributes.size() && cached.lastModified == lastModified) {
+            cached.checkedAt = now;
+            lock.lock();
+            try {
+                if (files.get(path) == cached) {
+                    return cached.retain();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        OpenFile file = new OpenFile(path, FileChannel.open(path, StandardOpenOption.READ),
+                attributes.size(), lastModified, now);
+        lock.lock();
+        try {
+            OpenFile previous = files.put(path, file);
+            if (previous != null) {
+                previous.release();
+            }
+            return file.retain();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 将请求路径解析为静态资源目录下的文件路径，拒绝../等越出目录的路径
+     */
+    private Path resolve(String uriPath) {
+        String relative = uriPath;
+        while (relative.startsWith("/")) {
+            relative = relative.substring(1);
+        }
+        if (relative.isEmpty() || relative.indexOf('\0') >= 0) {
+            return null;
+        }
+        Path path;
+        try {
+            path = root.resolve(relative).normalize();
+        } catch (RuntimeException e) {
+            logger.debug("Invalid static file path: {}", uriPath);
+            return null;
+        }
+        return path.startsWith(root) ? path : null;
+    }
+
+    private void remove(Path path, OpenFile expected) {
+        if (expected == null) {
+            return;
+        }
+        lock.lock();
+        try {
+            if (files.remove(path, expected)) {
+                expected.release();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 关闭所有缓存的文件
+     */
+    void clear() {
+        lock.lock();
+        try {
+            for (OpenFile file : files.values()) {
+                file.release();
+            }
+            files.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 按修改时间和大小生成ETag
+     */
+    static String etag(long lastModified, long length) {
+        return "\"" + Long.toHexString(lastModified) + "-" + Long.toHexString(length) + "\"";
+    }
+
+    /**
+     * 已打开的文件
+     * 缓存持有一个引用，每个发送中的响应持有一个引用，引用全部释放后关闭文件通道
+     * 文件通道只使用按位置读取的方法（transferTo、read(ByteBuffer, long)），可以被多个响应同时使用
+     */
+    static final class OpenFile extends AbstractReferenceCounted {
+        private final Path path;
+        private final FileChannel channel;
+        private final long length;
+        private final long lastModified;
+        /** 按修改时间和大小生成的ETag，文件变化后会重新打开，ETag随之变化 */
+        private final String etag;
+        /** 最近一次校验文件属性的时间 */
+        private volatile long checkedAt;
+
+        private OpenFile(Path path, FileChannel channel, long length, long lastModified, long checkedAt) {
+            this.path = path;
+            this.channel = channel;
+            this.length = length;
+            this.lastModified = lastModified;
+            this.etag = etag(lastModified, length);
+            this.checkedAt = checkedAt;
+        }
+
+        Path getPath() {
+            return path;
+        }
+
+        FileChannel getChannel() {
+            return channel;
+        }
+
+        long getLength() {
+            return length;
+        }
+
+        long getLastModified() {
+            return lastModified;
+        }
+
+        String getEtag() {
+            return etag;
+        }
+
+        @Override
+        public OpenFile retain() {
+            super.retain();
+            return this;
+        }
+
+        @Override
+        public ReferenceCounted touch(Object hint) {
+            return this;
+        }
+
+        @Override
+        protected void deallocate() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                logger.debug("Failed to close static file: {}", path, e);
+            }
+        }
+    }
+}
@@ -1,17 +1,25 @@
 package cn.fengin.tiny.http.handler;
 
 import cn.fengin.tiny.context.ApplicationContext;
-import io.netty.buffer.ByteBuf;
+import cn.fengin.tiny.exception.RateLimitException;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
-import io.netty.handler.codec.http.HttpContent;
 import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.codec.http2.Http2StreamChannel;
+import io.netty.util.ReferenceCountUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+
 /**
  * 安全处理器
  * 处理请求安全检查,处理请求资源限制
+ * 请求体占用的内存由HttpBodyHandler按请求统计，请求处理完成、请求体释放时归还
+ * 内存接近上限时，请求接收完成后暂停连接的读取，内存释放后恢复（HTTP/2由连接在新建时暂停）
+ * 连接数和请求速率按客户端IP（不含端口）检查，IP在连接上第一次检查时取出，之后的请求直接使用
  *
  * @author fengin
  * @since 1.0.0
@@ -19,7 +27,10 @@ import org.slf4j.LoggerFactory;
 public class SecurityHandler extends ChannelInboundHandlerAdapter {
     private static final Logger logger = LoggerFactory.getLogger(SecurityHandler.class);
     private final ApplicationContext context;
-    private long currentRequestSize = 0;
+    /**
+     * 客户端IP，HTTP/2的流通道与所在的连接相同
+     */
+    private String clientIp;
 
     public SecurityHandler(ApplicationContext context){
         this.context = context;
@@ -29,48 +40,38 @@ public class SecurityHandler extends ChannelInboundHandlerAdapter {
         String remoteIp = "";
         try {
             if (msg instanceof HttpRequest) {
-                // 重置请求大小计数器
-                currentRequestSize = 0;
                 HttpRequest request = (HttpRequest) msg;
-                remoteIp = ctx.channel().remoteAddress().toString();
+                remoteIp = clientIp(ctx);
                 // 执行安全检查
                 context.getSecurityManager().checkRequest(request, remoteIp);
                 logger.debug("Security check passed for IP: {}", remoteIp);
             }
-            //处理请求资源限制
-            if (msg instanceof HttpContent) {
-                HttpContent content = (HttpContent) msg;
-                ByteBuf buf = content.content();
-                // 更新请求大小并检查内存使用
-                int readable = buf.readableBytes();
-                currentRequestSize += readable;
-                context.getSecurityManager().allocateMemory(readable);
-                logger.debug("Allocated {} bytes for request, total: {}", readable, currentRequestSize);
-            }
-            //继续往下个handler传播消息
-            ctx.fireChannelRead(msg);
         } catch (Exception e) {
-            logger.warn("Security check failed for IP: {}", remoteIp,e.getCause());
+            if (e instanceof RateLimitException) {
+                // 限流时大量请求被拒绝，不逐个记录警告
+                logger.debug("Request throttled for IP: {}", remoteIp);
+            } else {
+                logger.warn("Security check failed for IP: {}", remoteIp,e.getCause());
+            }
             //不再调用 ctx.fireChannelRead(msg)，阻止消息继续传播,直接传播异常
+            ReferenceCountUtil.release(msg);
             ctx.fireExceptionCaught(e);
+            return;
         }
-    }
-    @Override
-    public void channelInactive(ChannelHandlerContext ctx) {
-        // 释放资源
-        if (currentRequestSize > 0) {
-            context.getSecurityManager().freeMemory(currentRequestSize);
-            logger.debug("Freed {} bytes on channel inactive", currentRequestSize);
+        //继续往下个handler传播消息
+        ctx.fireChannelRead(msg);
+        // 请求之间暂停读取，正在接收的请求不暂停，保证内存能够释放
+        if (msg instanceof LastHttpContent && !(ctx.channel() instanceof Http2StreamChannel)) {
+            context.getSecurityManager().pauseIfOverBudget(ctx.channel());
         }
-        ctx.fireChannelInactive();
     }
-    @Override
-    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
-        // 发生异常时释放资源
-        if (currentRequestSize > 0) {
-            context.getSecurityManager().freeMemory(currentRequestSize);
-            logger.debug("Freed {} bytes on exception", currentRequestSize);
+    private String clientIp(ChannelHandlerContext ctx) {
+        if (clientIp == null) {
+            SocketAddress address = ctx.channel().remoteAddress();
+            clientIp = address instanceof InetSocketAddress && ((InetSocketAddress) address).getAddress() != null
+                    ? ((InetSocketAddress) address).getAddress().getHostAddress()
+                    : String.valueOf(address);
         }
-        ctx.fireExceptionCaught(cause);
+        return clientIp;
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,285 @@
+package cn.fengin.tiny.http.handler;
+
+import cn.fengin.tiny.config.StaticResourceConfig;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Stream;
+
+/**
+ * 静态资源清单
+ * 启动时扫描静态资源目录（static.directory）或classpath下的static.path，建立请求路径到资源信息的只读索引：
+ * 1. 判断请求是否是静态资源只需要一次哈希查找，不再解析URI、逐个比较扩展名
+ * 2. 内容类型、是否允许访问（security.allowed-extensions）在建立索引时计算一次，安全检查和资源处理共用
+ * 3. classpath资源运行期间不变，索引中的ETag和最后修改时间可以直接用于条件请求，304不需要加载资源
+ * 只索引static.mime-types中有内容类型的文件，启动后新增到目录的文件需要调用StaticResourceHandler.refreshManifest重新建立索引
+ *
+ * @author fengin
+ * @since 1.0.0
+ */
+public final class StaticAssetManifest {
+    private static final Logger logger = LoggerFactory.getLogger(StaticAssetManifest.class);
+
+    private final Map<String, Asset> assets;
+    /** 是否从classpath建立，classpath资源运行期间不变 */
+    private final boolean classpath;
+
+    private StaticAssetManifest(Map<String, Asset> assets, boolean classpath) {
+        this.assets = Collections.unmodifiableMap(assets);
+        this.classpath = classpath;
+    }
+
+    /**
+     * 扫描静态资源建立清单
+     * @param allowedExtensions 允许访问的扩展名
+     * @return 清单，classpath资源所在位置无法扫描时返回null
+     */
+    static StaticAssetManifest load(StaticResourceConfig config, List<String> allowedExtensions) throws Exception {
+        Map<String, Asset> assets = new HashMap<>();
+        if (config.getDirectory() != null && !config.getDirectory().isEmpty()) {
+            Path root = Paths.get(config.getDirectory()).toAbsolutePath().normalize();
+            if (Files.isDirectory(root)) {
+                for (Path file : listFiles(root)) {
+                    BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                    long lastModified = attributes.lastModifiedTime().toMillis();
+                    addAsset(assets, relativePath(root, file), attributes.size(), lastModified,
+                            OpenFileCache.etag(lastModified, attributes.size()), config, allowedExtensions);
+                }
+            } else {
+                logger.warn("Static directory not found: {}", root);
+            }
+            return new StaticAssetManifest(assets, false);
+        }
+
+        URL url = StaticAssetManifest.class.getResource(config.getPath());
+        if (url == null) {
+            return new StaticAssetManifest(assets, true);
+        }
+        List<String> paths;
+        if ("file".equals(url.getProtocol())) {
+            Path root = Paths.get(url.toURI());
+            paths = new ArrayList<>();
+            for (Path file : listFiles(root)) {
+                paths.add(relativePath(root, file));
+            }
+        } else if ("jar".equals(url.getProtocol())) {
+            paths = listJarEntries(url);
+        } else {
+            logger.warn("Unsupported static resource location: {}", url);
+            return null;
+        }
+        // 与请求时使用相同的方式加载，ETag和最后修改时间与响应一致
+        for (String path : paths) {
+            if (!config.getMimeTypes().containsKey(extension(path))) {
+                continue;
+            }
+            StaticResource resource = StaticResourceHandler.loadResource(config.getPath() + path);
+            if (resource != null) {
+                addAsset(assets, path, resource.length(), resource.getLastModified(), resource.getEtag(),
+                        config, allowedExtensions);
+                resource.release();
+            }
+        }
+        return new StaticAssetManifest(assets, true);
+    }
+
+    private static void addAsset(Map<String, Asset> assets, String path, long length, long lastModified, String etag,
+                                 StaticResourceConfig config, List<String> allowedExtensions) {
+        String contentType = config.getMimeTypes().get(extension(path));
+        if (contentType != null) {
+            assets.put(path, new Asset(path, contentType, length, lastModified, etag, isAllowed(path, allowedExtensions)));
+        }
+    }
+
+    private static List<Path> listFiles(Path root) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> stream = Files.walk(root)) {
+            stream.filter(Files::isRegularFile).forEach(files::add);
+        }
+        return files;
+    }
+
+    private static String relativePath(Path root, Path file) {
+        return "/" + root.relativize(file).toString().replace(File.separatorChar, '/');
+    }
+
+    private static List<String> listJarEntries(URL url) throws IOException {
+        URLConnection connection = url.openConnection();
+        if (!(connection instanceof JarURLConnection)) {
+            throw new IOException("Not a jar resource: " + url);
+        }
+        JarURLConnection jarConnection = (JarURLConnection) connection;
+        jarConnection.setUseCaches(false);
+        String prefix = jarConnection.getEntryName() + "/";
+        List<String> paths = new ArrayList<>();
+        try (JarFile jar = jarConnection.getJarFile()) {
+            Enumeration<JarEntry> entries = jar.entries();
+            while (entries.hasMoreElements()) {
+                JarEntry entry = entries.nextElement();
+                if (!entry.isDirectory() && entry.getName().startsWith(prefix)) {
+                    paths.add("/" + entry.getName().substring(prefix.length()));
+                }
+            }
+        }
+        return paths;
+    }
+
+    /**
+     * 按请求路径查找资源
+     * @param path 已解码、不含查询参数的请求路径
+     * @return 资源，不在清单中时返回null
+     */
+    public Asset get(String path) {
+        return assets.get(path);
+    }
+
+    /**
+     * 清单中的资源数
+     */
+    public int size() {
+        return assets.size();
+    }
+
+    /**
+     * 是否从classpath建立，classpath资源运行期间不变，索引中的ETag可以直接用于条件请求
+     */
+    boolean isClasspath() {
+        return classpath;
+    }
+
+    /**
+     * 从请求URI中取出路径：去除查询参数，只有包含%时才解码
+     * @return 请求路径，编码不正确时返回null
+     */
+    public static String requestPath(String uri) {
+        int end = uri.length();
+        for (int i = 0; i < end; i++) {
+            char c = uri.charAt(i);
+            if (c == '?' || c == '#') {
+                end = i;
+            }
+        }
+        String path = end == uri.length() ? uri : uri.substring(0, end);
+        if (path.indexOf('%') < 0) {
+            return path;
+        }
+        try {
+            return new QueryStringDecoder(path).path();
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 判断路径的扩展名是否允许访问
+     */
+    public static boolean isAllowed(String path, List<String> allowedExtensions) {
+        if (allowedExtensions == null) {
+            return false;
+        }
+        for (String extension : allowedExtensions) {
+            if (path.endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 未建立清单时按扩展名判断是否是静态资源，资源信息中只有内容类型和是否允许访问
+     * @return 资源，扩展名没有对应的内容类型时返回null
+     */
+    static Asset byExtension(String path, StaticResourceConfig config, List<String> allowedExtensions) {
+        String contentType = config.getMimeTypes().get(extension(path));
+        if (contentType == null) {
+            return null;
+        }
+        return new Asset(path, contentType, -1, 0, null, isAllowed(path, allowedExtensions));
+    }
+
+    /**
+     * 获取文件扩展名
+     */
+    static String extension(String path) {
+        int dotIndex = path.lastIndexOf('.');
+        return dotIndex > 0 ? path.substring(dotIndex) : "";
+    }
+
+    /**
+     * 静态资源信息
+     */
+    public static final class Asset {
+        private final String path;
+        private final String contentType;
+        private final long length;
+        private final long lastModified;
+        private final String etag;
+        private final boolean allowed;
+
+        private Asset(String path, String contentType, long length, long lastModified, String etag, boolean allowed) {
+            this.path = path;
+            this.contentType = contentType;
+            this.length = length;
+            this.lastModified = lastModified;
+            this.etag = etag;
+            this.allowed = allowed;
+        }
+
+        /**
+         * 相对静态资源根目录的路径，以/开头
+         */
+        public String getPath() {
+            return path;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        /**
+         * 资源大小（字节），未建立清单时为-1
+         */
+        public long getLength() {
+            return length;
+        }
+
+        /**
+         * 最后修改时间（毫秒），未知时为0
+         */
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * 建立清单时的ETag，未建立清单时为null
+         */
+        public String getEtag() {
+            return etag;
+        }
+
+        /**
+         * 扩展名是否在security.allowed-extensions中
+         */
+        public boolean isAllowed() {
+            return allowed;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package cn.fengin.tiny.http.handler;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * 静态资源内容
+ * 包含资源内容和用于条件请求的ETag、最后修改时间，ETag在资源加载时按内容计算一次
+ *
+ * @author fengin
+ * @since 1.0.0
+ */
+final class StaticResource {
+    private final ByteBuf content;
+    private final String etag;
+    private final long lastModified;
+
+    private StaticResource(ByteBuf content, String etag, long lastModified) {
+        this.content = content;
+        this.etag = etag;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * 使用加载的资源内容创建，内容不复制
+     * @param lastModified 最后修改时间（毫秒），未知时为0
+     */
+    static StaticResource of(byte[] bytes, long lastModified) {
+        ByteBuf content = Unpooled.wrappedBuffer(bytes);
+        return new StaticResource(content, etag(content), lastModified);
+    }
+
+    /**
+     * 复制到只读的直接内存中，用于长期缓存
+     */
+    StaticResource toDirect() {
+        int length = content.readableBytes();
+        ByteBuf direct = Unpooled.directBuffer(length, length)
+                .writeBytes(content, content.readerIndex(), length)
+                .asReadOnly();
+        return new StaticResource(direct, etag, lastModified);
+    }
+
+    /**
+     * 共享内容创建一个新的引用，发送后由写出方释放
+     */
+    StaticResource retainedDuplicate() {
+        return new StaticResource(content.retainedDuplicate(), etag, lastModified);
+    }
+
+    ByteBuf getContent() {
+        return content;
+    }
+
+    String getEtag() {
+        return etag;
+    }
+
+    long getLastModified() {
+        return lastModified;
+    }
+
+    int length() {
+        return content.readableBytes();
+    }
+
+    boolean release() {
+        return content.release();
+    }
+
+    /**
+     * 按内容计算强ETag
+     */
+    private static String etag(ByteBuf content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            digest.update(content.nioBuffer());
+            return "\"" + ByteBufUtil.hexDump(digest.digest()) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 not supported", e);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package cn.fengin.tiny.http.handler;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 静态资源缓存
+ * 资源内容保存在只读的直接内存ByteBuf中，按总字节数限制大小，超过上限时淘汰最久未访问的资源：
+ * 1. 发送时使用retainedDuplicate共享同一块内存，不复制内容
+ * 2. 淘汰只释放缓存持有的引用，正在发送的响应发送完成后内存才被回收
+ * 3. 统计命中、未命中和淘汰次数，用于评估max-cache-size是否合适
+ *
+ * @author fengin
+ * @since 1.0.0
+ */
+public final class StaticResourceCache {
+    private final long maxBytes;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<String, StaticResource> resources = new LinkedHashMap<>(16, 0.75f, true);
+    private long usedBytes;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maxBytes 缓存内容的总字节数上限
+     */
+    StaticResourceCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * 获取缓存的资源
+     * @return 资源的retainedDuplicate，发送后由写出方释放；未缓存时返回null
+     */
+    StaticResource get(String path) {
+        lock.lock();
+        try {
+            StaticResource content = resources.get(path);
+            if (content == null) {
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            return content.retainedDuplicate();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 缓存资源，内容复制到直接内存中
+     * 超过缓存上限的资源不缓存
+     * @param loaded 加载的资源，缓存后释放
+     * @return 用于发送的资源，发送后由写出方释放
+     */
+    StaticResource put(String path, StaticResource loaded) {
+        if (loaded.length() > maxBytes) {
+            return loaded;
+        }
+        StaticResource content = loaded.toDirect();
+        loaded.release();
+        lock.lock();
+        try {
+            StaticResource previous = resources.put(path, content);
+            usedBytes += content.length();
+            if (previous != null) {
+                usedBytes -= previous.length();
+                previous.release();
+            }
+            evict();
+            return content.retainedDuplicate();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 淘汰最久未访问的资源，直到总大小不超过上限
+     */
+    private void evict() {
+        Iterator<Map.Entry<String, StaticResource>> iterator = resources.entrySet().iterator();
+        while (usedBytes > maxBytes && iterator.hasNext()) {
+            StaticResource content = iterator.next().getValue();
+            iterator.remove();
+            usedBytes -= content.length();
+            content.release();
+            evictions.increment();
+        }
+    }
+
+    /**
+     * 清空缓存
+     */
+    public void clear() {
+        lock.lock();
+        try {
+            for (StaticResource content : resources.values()) {
+                content.release();
+            }
+            resources.clear();
+            usedBytes = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 缓存的资源数
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return resources.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 缓存内容占用的字节数
+     */
+    public long getUsedBytes() {
+        lock.lock();
+        try {
+            return usedBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 缓存内容的字节数上限
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * 命中次数
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * 未命中次数
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * 淘汰次数
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+}
@@ -3,26 +3,72 @@ package cn.fengin.tiny.http.handler;
 import cn.fengin.tiny.config.StaticResourceConfig;
 import cn.fengin.tiny.context.ApplicationContext;
 import cn.fengin.tiny.exception.HttpException;
+import cn.fengin.tiny.config.ServerConfig;
+import cn.fengin.tiny.http.HttpRequest;
+import cn.fengin.tiny.http.HttpResponseUtil;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.buffer.Unpooled;
-import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
-import io.netty.handler.codec.http.*;
+import io.netty.channel.DefaultFileRegion;
+import io.netty.channel.FileRegion;
+import io.netty.handler.codec.DateFormatter;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http2.Http2StreamChannel;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.handler.stream.ChunkedInput;
+import io.netty.handler.stream.ChunkedNioFile;
+import io.netty.util.CharsetUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
-import java.net.URI;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
 
 
 
 /**
  * 静态资源处理器
- * 处理静态资源请求，支持资源缓存
+ * 处理静态资源请求，支持资源缓存，缓存的资源保存在直接内存中，总大小不超过static.max-cache-size
+ * 配置了static.directory时从文件系统目录发送：文件通过缓存的文件描述符打开，
+ * 普通连接使用FileRegion由内核直接发送（sendfile），TLS连接和HTTP/2的流分块读取后发送，文件内容都不进入堆内存
+ * 启用static.gzip-static时，客户端接受gzip的请求发送预压缩的.gz文件，预压缩文件可以随前端打包生成，
+ * 也可以由static.gzip-generate在启动时（目录）或首次加载时（classpath）生成，每次请求不再消耗压缩的CPU
+ * 响应带有Last-Modified和强ETag（security.etag-enabled），资源没有变化的条件请求返回304
+ * 支持Range请求（断点续传、视频拖动），单个范围返回206，多个范围返回multipart/byteranges，If-Range不匹配时返回完整内容
+ * 静态资源在启动时建立清单（StaticAssetManifest），请求按清单查找，不在清单中的路径交给路由处理
  *
  * @author fengin
  * @since 1.0.0
@@ -30,107 +76,691 @@ import java.util.concurrent.ConcurrentHashMap;
 public class StaticResourceHandler extends ChannelInboundHandlerAdapter {
     private static final Logger logger = LoggerFactory.getLogger(StaticResourceHandler.class);
     
-    private static final Map<String, byte[]> resourceCache = new ConcurrentHashMap<>();
+    private static volatile StaticResourceCache resourceCache;
+    /** TLS连接分块读取文件的块大小 */
+    private static final int FILE_CHUNK_SIZE = 8192;
+    /** 一个Range请求最多的分段数，分段过多时按完整内容发送 */
+    private static final int MAX_RANGES = 16;
+    private static volatile OpenFileCache openFileCache;
+    private static volatile StaticAssetManifest manifest;
+    /** classpath资源是否有.gz预压缩版本，classpath运行期间不变，记录下来避免每次请求都查找 */
+    private static final Map<String, Boolean> gzipVariants = new ConcurrentHashMap<>();
     private final ApplicationContext context;
 
 
     public StaticResourceHandler(ApplicationContext context){
         this.context = context;
     }
+    /**
+     * 重新扫描静态资源建立清单，在服务器启动时调用，静态资源目录的文件变化后也可以调用
+     * 扫描失败时不使用清单，按扩展名判断静态资源
+     */
+    public static void refreshManifest() {
+        ApplicationContext context = ApplicationContext.getInstance();
+        try {
+            StaticAssetManifest loaded = StaticAssetManifest.load(context.getStaticResourceConfig(),
+                    context.getSecurityConfig().getAllowedExtensions());
+            if (loaded != null) {
+                logger.info("Indexed {} static resources", loaded.size());
+            }
+            manifest = loaded;
+        } catch (Exception e) {
+            logger.warn("Failed to index static resources, fall back to extension matching", e);
+            manifest = null;
+        }
+    }
+
+    /**
+     * 获取静态资源清单
+     * @return 清单，未建立或扫描失败时返回null
+     */
+    public static StaticAssetManifest getManifest() {
+        return manifest;
+    }
+
+    /**
+     * 查找请求路径对应的静态资源
+     * @param path 已解码、不含查询参数的请求路径，参见StaticAssetManifest.requestPath
+     * @return 资源，不是静态资源时返回null
+     */
+    public static StaticAssetManifest.Asset findAsset(String path) {
+        StaticAssetManifest current = manifest;
+        if (current != null) {
+            return current.get(path);
+        }
+        ApplicationContext context = ApplicationContext.getInstance();
+        return StaticAssetManifest.byExtension(path, context.getStaticResourceConfig(),
+                context.getSecurityConfig().getAllowedExtensions());
+    }
+
     /**
      * 处理静态资源请求
+     * @param asset 请求对应的静态资源，由findAsset查找
      */
-    public void handle(ChannelHandlerContext ctx, String uri) throws Exception{
+    public void handle(ChannelHandlerContext ctx, HttpRequest request, StaticAssetManifest.Asset asset) throws Exception{
         StaticResourceConfig config = context.getStaticResourceConfig();
-        URI parsedUri = new URI(uri);// 去除查询参数
-        String path = config.getPath() + parsedUri.getPath();
+        String uriPath = asset.getPath();
+        String contentType = asset.getContentType();
+        // 可以发送预压缩版本的资源，响应需要按Accept-Encoding区分
+        boolean gzipCandidate = config.isGzipStatic() && isCompressible(contentType);
+        // Range请求（断点续传）按原始内容计算范围，不使用压缩版本
+        boolean gzip = gzipCandidate && request.getHeader("range") == null
+                && CompressionHandler.acceptsGzip(request.getHeader("accept-encoding"));
+        if (config.getDirectory() != null && !config.getDirectory().isEmpty()) {
+            sendFile(ctx, request, uriPath, contentType, gzipCandidate, gzip, config);
+            return;
+        }
+        String path = config.getPath() + uriPath;
+        // classpath资源运行期间不变，按清单中的ETag判断，没有变化时不需要加载资源
+        StaticAssetManifest current = manifest;
+        if (!gzip && asset.getEtag() != null && current != null && current.isClasspath()
+                && isNotModified(request, asset.getEtag(), asset.getLastModified())) {
+            sendNotModified(ctx, asset.getEtag(), asset.getLastModified(), gzipCandidate);
+            return;
+        }
+        StaticResourceCache cache = config.isCacheEnabled() ? getResourceCache() : null;
 
-        byte[] content = null;
-        // 如果启用缓存，先从缓存获取
-        if (config.isCacheEnabled()) {
-            content = resourceCache.get(path);
+        StaticResource resource = null;
+        String contentEncoding = null;
+        if (gzip) {
+            resource = loadGzipResource(path, config, cache);
+            if (resource != null) {
+                contentEncoding = HttpHeaderValues.GZIP.toString();
+            }
         }
-        // 缓存未命中，从文件系统加载
-        if (content == null) {
-            content = loadResource(path);
-            if (content != null && config.isCacheEnabled()) {
-                resourceCache.put(path, content);
+        if (resource == null) {
+            // 如果启用缓存，先从缓存获取
+            if (cache != null) {
+                resource = cache.get(path);
+            }
+            // 缓存未命中，从classpath加载
+            if (resource == null) {
+                resource = loadResource(path);
+                if (resource != null && cache != null) {
+                    resource = cache.put(path, resource);
+                }
             }
         }
-
-        if (content != null) {
-            sendResource(ctx, content, getContentType(path));
-        } else {
+        if (resource == null) {
             throw new HttpException(404,"Resource not found");
         }
 
+        if (isNotModified(request, resource.getEtag(), resource.getLastModified())) {
+            resource.release();
+            sendNotModified(ctx, resource.getEtag(), resource.getLastModified(), gzipCandidate);
+            return;
+        }
+        List<ByteRange> ranges = requestedRanges(request, resource.getEtag(), resource.getLastModified(), resource.length());
+        if (ranges != null && ranges.isEmpty()) {
+            resource.release();
+            sendRangeNotSatisfiable(ctx, resource.length());
+            return;
+        }
+        sendResource(ctx, resource, contentType, contentEncoding, gzipCandidate, ranges);
+    }
+
+    /**
+     * 加载classpath资源的gzip版本：优先使用资源旁的.gz文件，没有时按配置压缩一次后放入缓存
+     * @return 压缩后的资源，没有可用的压缩版本时返回null
+     */
+    private StaticResource loadGzipResource(String path, StaticResourceConfig config, StaticResourceCache cache) throws Exception {
+        if (Boolean.FALSE.equals(gzipVariants.get(path))) {
+            return null;
+        }
+        String gzipPath = path + ".gz";
+        if (cache != null) {
+            StaticResource resource = cache.get(gzipPath);
+            if (resource != null) {
+                return resource;
+            }
+        }
+        StaticResource resource = loadResource(gzipPath);
+        // 不缓存时生成的压缩内容无处保存，每次请求都要压缩，不生成
+        if (resource == null && config.isGzipGenerate() && cache != null) {
+            StaticResource original = loadResource(path);
+            if (original != null) {
+                if (original.length() >= context.getServerConfig().getHttp().getCompressionMinSize()) {
+                    resource = StaticResource.of(gzip(ByteBufUtil.getBytes(original.getContent())), original.getLastModified());
+                }
+                original.release();
+            }
+        }
+        if (resource == null) {
+            if (StaticResourceHandler.class.getResource(path) != null) {
+                gzipVariants.put(path, false);
+            }
+            return null;
+        }
+        return cache != null ? cache.put(gzipPath, resource) : resource;
+    }
+
+    /**
+     * 获取静态资源缓存，用于查看命中率等统计
+     * @return 缓存，static.max-cache-size不大于0时返回null
+     */
+    public static StaticResourceCache getResourceCache() {
+        StaticResourceCache cache = resourceCache;
+        if (cache == null) {
+            synchronized (StaticResourceHandler.class) {
+                cache = resourceCache;
+                if (cache == null) {
+                    int maxCacheSize = ApplicationContext.getInstance().getStaticResourceConfig().getMaxCacheSize();
+                    if (maxCacheSize <= 0) {
+                        return null;
+                    }
+                    cache = new StaticResourceCache(maxCacheSize * 1024L * 1024L);
+                    resourceCache = cache;
+                }
+            }
+        }
+        return cache;
     }
     
     /**
      * 加载资源文件
      */
-    private static byte[] loadResource(String path) throws Exception {
+    static StaticResource loadResource(String path) throws Exception {
         URL url = StaticResourceHandler.class.getResource(path);
         if (url == null) {
             return null;
         }
         
-        try (InputStream in = url.openStream();
+        URLConnection connection = url.openConnection();
+        try (InputStream in = connection.getInputStream();
              ByteArrayOutputStream out = new ByteArrayOutputStream()) {
             byte[] buffer = new byte[4096];
             int bytesRead;
             while ((bytesRead = in.read(buffer)) != -1) {
                 out.write(buffer, 0, bytesRead);
             }
-            return out.toByteArray();
+            return StaticResource.of(out.toByteArray(), connection.getLastModified());
         }
     }
     
     /**
      * 发送资源响应
+     * @param ranges 请求的范围，为null时发送完整内容
      */
-    private void sendResource(ChannelHandlerContext ctx, byte[] content, String contentType) {
-        StaticResourceConfig config = context.getStaticResourceConfig();
+    private void sendResource(ChannelHandlerContext ctx, StaticResource resource, String contentType,
+                              String contentEncoding, boolean vary, List<ByteRange> ranges) {
+        ByteBuf content = resource.getContent();
+        HttpResponseStatus status = HttpResponseStatus.OK;
+        String rangeContentType = contentType;
+        if (ranges != null) {
+            // 各段共享资源内容，不复制
+            ByteBuf whole = content;
+            String boundary = multipartBoundary();
+            List<Object> parts = rangeParts(ranges, boundary, contentType, resource.length(),
+                    range -> whole.retainedSlice(whole.readerIndex() + (int) range.start, (int) range.length()));
+            whole.release();
+            content = parts.size() == 1 ? (ByteBuf) parts.get(0)
+                    : Unpooled.wrappedBuffer(parts.stream().map(ByteBuf.class::cast).toArray(ByteBuf[]::new));
+            status = HttpResponseStatus.PARTIAL_CONTENT;
+            rangeContentType = rangeContentType(ranges, boundary, contentType);
+        }
         FullHttpResponse response = new DefaultFullHttpResponse(
             HttpVersion.HTTP_1_1, 
-            HttpResponseStatus.OK,
-            Unpooled.wrappedBuffer(content)
+            status,
+            content
         );
         
         response.headers()
-            .set(HttpHeaderNames.CONTENT_TYPE, contentType)
-            .set(HttpHeaderNames.CONTENT_LENGTH, content.length);
-            
-        if (config.isCacheEnabled()) {
-            response.headers().set(
-                HttpHeaderNames.CACHE_CONTROL, 
-                "max-age=" + config.getCacheMaxAge()
-            );
-        }
+            .set(HttpHeaderNames.CONTENT_TYPE, rangeContentType)
+            .set(HttpHeaderNames.CONTENT_LENGTH, content.readableBytes());
+        setCacheHeaders(response, resource.getEtag(), resource.getLastModified());
+        setEncodingHeaders(response, contentEncoding, vary);
+        setRangeHeaders(response, ranges, resource.length());
         
-        ctx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
+        HttpResponseUtil.writeResponse(ctx, response);
     }
     
     /**
-     * 获取内容类型
+     * 从静态资源目录发送文件
      */
-    private String getContentType(String path) {
+    private void sendFile(ChannelHandlerContext ctx, HttpRequest request, String uriPath, String contentType,
+                          boolean gzipCandidate, boolean gzip, StaticResourceConfig config) throws Exception {
+        OpenFileCache fileCache = openFileCache(config);
+        OpenFileCache.OpenFile file = fileCache.open(uriPath);
+        if (file == null) {
+            throw new HttpException(404,"Resource not found");
+        }
+        String contentEncoding = null;
+        if (gzip) {
+            // 比原文件旧的.gz文件是过期的，不使用
+            OpenFileCache.OpenFile gzipFile = fileCache.open(uriPath + ".gz");
+            if (gzipFile != null && gzipFile.getLastModified() >= file.getLastModified()) {
+                file.release();
+                file = gzipFile;
+                contentEncoding = HttpHeaderValues.GZIP.toString();
+            } else if (gzipFile != null) {
+                gzipFile.release();
+            }
+        }
+        if (isNotModified(request, file.getEtag(), file.getLastModified())) {
+            file.release();
+            sendNotModified(ctx, file.getEtag(), file.getLastModified(), gzipCandidate);
+            return;
+        }
+        List<ByteRange> ranges = requestedRanges(request, file.getEtag(), file.getLastModified(), file.getLength());
+        if (ranges != null && ranges.isEmpty()) {
+            file.release();
+            sendRangeNotSatisfiable(ctx, file.getLength());
+            return;
+        }
+
+        List<Object> parts;
+        HttpResponse response;
+        try {
+            // TLS需要在用户态加密、HTTP/2需要把内容封装为DATA帧，不能使用sendfile，改为分块读取
+            boolean zeroCopy = !(ctx.channel() instanceof Http2StreamChannel) && ctx.pipeline().get(SslHandler.class) == null;
+            OpenFileCache.OpenFile openFile = file;
+            Function<ByteRange, Object> body = range -> zeroCopy
+                    ? new OpenFileRegion(openFile, range.start, range.length())
+                    : OpenChunkedFile.of(openFile, range.start, range.length());
+            if (ranges == null) {
+                parts = Collections.singletonList(body.apply(new ByteRange(0, file.getLength() - 1)));
+                response = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+                response.headers().set(HttpHeaderNames.CONTENT_TYPE, contentType);
+            } else {
+                String boundary = multipartBoundary();
+                parts = rangeParts(ranges, boundary, contentType, file.getLength(), body);
+                response = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.PARTIAL_CONTENT);
+                response.headers().set(HttpHeaderNames.CONTENT_TYPE, rangeContentType(ranges, boundary, contentType));
+            }
+        } finally {
+            // 每个文件片段持有自己的引用
+            file.release();
+        }
+        long contentLength = 0;
+        for (Object part : parts) {
+            contentLength += part instanceof ByteBuf ? ((ByteBuf) part).readableBytes()
+                    : part instanceof FileRegion ? ((FileRegion) part).count() : ((ChunkedInput<?>) part).length();
+        }
+        response.headers().set(HttpHeaderNames.CONTENT_LENGTH, contentLength);
+        setCacheHeaders(response, file.getEtag(), file.getLastModified());
+        setEncodingHeaders(response, contentEncoding, gzipCandidate);
+        setRangeHeaders(response, ranges, file.getLength());
+        HttpResponseUtil.writeFile(ctx, response, parts);
+    }
+
+    /**
+     * 解析请求的字节范围
+     * 没有Range头、If-Range验证不通过、格式不正确或分段太多时按完整内容发送
+     * @return 请求的范围，按完整内容发送时返回null，所有范围都超出内容长度时返回空列表
+     */
+    private List<ByteRange> requestedRanges(HttpRequest request, String etag, long lastModified, long length) {
+        String range = request.getHeader("range");
+        if (range == null || !range.regionMatches(true, 0, "bytes=", 0, 6)) {
+            return null;
+        }
+        // If-Range：资源在客户端下载了一部分之后变化了，续传的片段与已下载的部分对不上，需要发送完整内容
+        String ifRange = request.getHeader("if-range");
+        if (ifRange != null) {
+            ifRange = ifRange.trim();
+            if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+                // 必须是强比较
+                if (!context.getSecurityConfig().isEtagEnabled() || !ifRange.equals(etag)) {
+                    return null;
+                }
+            } else {
+                Date date = DateFormatter.parseHttpDate(ifRange);
+                if (date == null || lastModified <= 0 || date.getTime() / 1000 != lastModified / 1000) {
+                    return null;
+                }
+            }
+        }
+
+        String[] specs = range.substring(6).split(",");
+        if (specs.length > MAX_RANGES) {
+            return null;
+        }
+        List<ByteRange> ranges = new ArrayList<>(specs.length);
+        try {
+            for (String spec : specs) {
+                spec = spec.trim();
+                int dash = spec.indexOf('-');
+                if (dash < 0) {
+                    return null;
+                }
+                long start;
+                long end;
+                if (dash == 0) {
+                    // 最后N个字节
+                    long suffix = Long.parseLong(spec.substring(1));
+                    if (suffix <= 0 || length == 0) {
+                        continue;
+                    }
+                    start = Math.max(0, length - suffix);
+                    end = length - 1;
+                } else {
+                    start = Long.parseLong(spec.substring(0, dash));
+                    end = dash == spec.length() - 1 ? Long.MAX_VALUE : Long.parseLong(spec.substring(dash + 1));
+                    if (start < 0 || end < start) {
+                        return null;
+                    }
+                    if (start >= length) {
+                        continue;
+                    }
+                    end = Math.min(end, length - 1);
+                }
+                ranges.add(new ByteRange(start, end));
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return ranges;
+    }
+
+    /**
+     * 生成Range响应体的各部分，单个范围只有内容本身，多个范围按multipart/byteranges格式加上分段头
+     * @param body 按范围生成内容
+     */
+    private static List<Object> rangeParts(List<ByteRange> ranges, String boundary, String contentType, long length,
+                                           Function<ByteRange, Object> body) {
+        if (ranges.size() == 1) {
+            return Collections.singletonList(body.apply(ranges.get(0)));
+        }
+        List<Object> parts = new ArrayList<>(ranges.size() * 2 + 1);
+        for (ByteRange range : ranges) {
+            String header = "\r\n--" + boundary + "\r\n"
+                    + "Content-Type: " + contentType + "\r\n"
+                    + "Content-Range: " + range.contentRange(length) + "\r\n\r\n";
+            parts.add(Unpooled.copiedBuffer(header, CharsetUtil.US_ASCII));
+            parts.add(body.apply(range));
+        }
+        parts.add(Unpooled.copiedBuffer("\r\n--" + boundary + "--\r\n", CharsetUtil.US_ASCII));
+        return parts;
+    }
+
+    private static String rangeContentType(List<ByteRange> ranges, String boundary, String contentType) {
+        return ranges.size() == 1 ? contentType : "multipart/byteranges; boundary=" + boundary;
+    }
+
+    /**
+     * 生成多段响应的分隔符，随机生成避免与文件内容冲突
+     */
+    private static String multipartBoundary() {
+        return "tiny-" + Long.toHexString(ThreadLocalRandom.current().nextLong());
+    }
+
+    private static void setRangeHeaders(HttpResponse response, List<ByteRange> ranges, long length) {
+        response.headers().set(HttpHeaderNames.ACCEPT_RANGES, HttpHeaderValues.BYTES);
+        if (ranges != null && ranges.size() == 1) {
+            response.headers().set(HttpHeaderNames.CONTENT_RANGE, ranges.get(0).contentRange(length));
+        }
+    }
+
+    /**
+     * 发送416响应，告知客户端资源的实际长度
+     */
+    private void sendRangeNotSatisfiable(ChannelHandlerContext ctx, long length) {
+        FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1,
+                HttpResponseStatus.REQUESTED_RANGE_NOT_SATISFIABLE);
+        response.headers()
+            .set(HttpHeaderNames.CONTENT_RANGE, "bytes */" + length)
+            .set(HttpHeaderNames.CONTENT_LENGTH, 0);
+        HttpResponseUtil.writeResponse(ctx, response);
+    }
+
+    private static OpenFileCache openFileCache(StaticResourceConfig config) {
+        OpenFileCache cache = openFileCache;
+        if (cache == null) {
+            synchronized (StaticResourceHandler.class) {
+                cache = openFileCache;
+                if (cache == null) {
+                    cache = new OpenFileCache(Paths.get(config.getDirectory()),
+                            config.getOpenFileCacheSize(), config.getOpenFileCacheValid());
+                    openFileCache = cache;
+                }
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * 判断条件请求的资源是否没有变化
+     * 有If-None-Match时只按ETag判断（弱比较），否则按If-Modified-Since判断，时间精确到秒
+     */
+    private boolean isNotModified(HttpRequest request, String etag, long lastModified) {
+        String ifNoneMatch = request.getHeader("if-none-match");
+        if (ifNoneMatch != null) {
+            if (!context.getSecurityConfig().isEtagEnabled()) {
+                return false;
+            }
+            for (String tag : ifNoneMatch.split(",")) {
+                tag = tag.trim();
+                if (tag.equals("*") || (tag.startsWith("W/") ? tag.substring(2) : tag).equals(etag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        String ifModifiedSince = request.getHeader("if-modified-since");
+        if (ifModifiedSince != null && lastModified > 0) {
+            Date since = DateFormatter.parseHttpDate(ifModifiedSince);
+            return since != null && lastModified / 1000 <= since.getTime() / 1000;
+        }
+        return false;
+    }
+
+    /**
+     * 发送304响应，不带响应体，带上与200响应相同的缓存相关响应头
+     */
+    private void sendNotModified(ChannelHandlerContext ctx, String etag, long lastModified, boolean vary) {
+        FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.NOT_MODIFIED);
+        setCacheHeaders(response, etag, lastModified);
+        setEncodingHeaders(response, null, vary);
+        HttpResponseUtil.writeResponse(ctx, response);
+    }
+
+    /**
+     * 设置Cache-Control、ETag和Last-Modified响应头
+     */
+    private void setCacheHeaders(HttpResponse response, String etag, long lastModified) {
         StaticResourceConfig config = context.getStaticResourceConfig();
-        String extension = getFileExtension(path);
-        String contentType = config.getMimeTypes().get(extension);
-        return contentType != null ? contentType : "application/octet-stream";
+        if (config.isCacheEnabled()) {
+            response.headers().set(HttpHeaderNames.CACHE_CONTROL, "max-age=" + config.getCacheMaxAge());
+        }
+        if (context.getSecurityConfig().isEtagEnabled()) {
+            response.headers().set(HttpHeaderNames.ETAG, etag);
+        }
+        if (lastModified > 0) {
+            response.headers().set(HttpHeaderNames.LAST_MODIFIED, DateFormatter.format(new Date(lastModified)));
+        }
     }
-    
+
+    private static void setEncodingHeaders(HttpResponse response, String contentEncoding, boolean vary) {
+        if (contentEncoding != null) {
+            response.headers().set(HttpHeaderNames.CONTENT_ENCODING, contentEncoding);
+        }
+        if (vary) {
+            response.headers().set(HttpHeaderNames.VARY, HttpHeaderNames.ACCEPT_ENCODING);
+        }
+    }
+
+    /**
+     * 在静态资源目录中为需要压缩的文件生成.gz预压缩文件，已有且不比原文件旧的跳过
+     * 需要配置static.directory并启用static.gzip-static和static.gzip-generate，在服务器启动时调用
+     */
+    public static void generateGzipFiles() {
+        ApplicationContext context = ApplicationContext.getInstance();
+        StaticResourceConfig config = context.getStaticResourceConfig();
+        if (config.getDirectory() == null || config.getDirectory().isEmpty()
+                || !config.isGzipStatic() || !config.isGzipGenerate()) {
+            return;
+        }
+        ServerConfig.HttpConfig httpConfig = context.getServerConfig().getHttp();
+        Path root = Paths.get(config.getDirectory());
+        List<Path> files;
+        try (Stream<Path> stream = Files.walk(root)) {
+            files = stream.filter(Files::isRegularFile)
+                    .filter(file -> !file.getFileName().toString().endsWith(".gz"))
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            logger.error("Failed to list static directory: {}", root, e);
+            return;
+        }
+        int generated = 0;
+        for (Path file : files) {
+            String contentType = config.getMimeTypes().get(StaticAssetManifest.extension(file.getFileName().toString()));
+            if (!CompressionHandler.isCompressible(contentType, httpConfig.getCompressionTypes())) {
+                continue;
+            }
+            Path gzipFile = file.resolveSibling(file.getFileName() + ".gz");
+            try {
+                if (Files.size(file) < httpConfig.getCompressionMinSize()
+                        || (Files.exists(gzipFile) && Files.getLastModifiedTime(gzipFile).compareTo(Files.getLastModifiedTime(file)) >= 0)) {
+                    continue;
+                }
+                // 先写临时文件再替换，避免请求读到写了一半的文件
+                Path tempFile = file.resolveSibling(file.getFileName() + ".gz.tmp");
+                try (InputStream in = Files.newInputStream(file);
+                     OutputStream out = new MaxGzipOutputStream(Files.newOutputStream(tempFile))) {
+                    byte[] buffer = new byte[8192];
+                    int bytesRead;
+                    while ((bytesRead = in.read(buffer)) != -1) {
+                        out.write(buffer, 0, bytesRead);
+                    }
+                }
+                Files.move(tempFile, gzipFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                generated++;
+            } catch (IOException e) {
+                logger.warn("Failed to generate gzip file for: {}", file, e);
+            }
+        }
+        logger.info("Generated {} gzip files in static directory: {}", generated, root);
+    }
+
     /**
-     * 获取文件扩展名
+     * 使用最高压缩级别压缩，只在生成预压缩版本时执行一次
      */
-    private static String getFileExtension(String path) {
-        int dotIndex = path.lastIndexOf('.');
-        return dotIndex > 0 ? path.substring(dotIndex) : "";
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 2 + 64);
+        try (OutputStream gzip = new MaxGzipOutputStream(out)) {
+            gzip.write(bytes);
+        }
+        return out.toByteArray();
+    }
+
+    private boolean isCompressible(String contentType) {
+        return CompressionHandler.isCompressible(contentType, context.getServerConfig().getHttp().getCompressionTypes());
     }
+
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
         logger.error("Exception caught", cause.getCause());
         ctx.fireExceptionCaught(cause);
     }
-} 
\ No newline at end of file
+
+    /**
+     * 请求的字节范围，包含首尾
+     */
+    private static final class ByteRange {
+        private final long start;
+        private final long end;
+
+        ByteRange(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        long length() {
+            return end - start + 1;
+        }
+
+        String contentRange(long total) {
+            return "bytes " + start + "-" + end + "/" + total;
+        }
+    }
+
+    /**
+     * 使用缓存中文件通道的FileRegion，发送完成后释放文件引用而不是关闭通道
+     */
+    private static final class OpenFileRegion extends DefaultFileRegion {
+        private final OpenFileCache.OpenFile file;
+
+        OpenFileRegion(OpenFileCache.OpenFile file, long position, long count) {
+            super(file.getChannel(), position, count);
+            this.file = file.retain();
+        }
+
+        @Override
+        protected void deallocate() {
+            file.release();
+        }
+    }
+
+    /**
+     * 使用缓存中文件通道的分块读取，关闭时释放文件引用而不是关闭通道
+     * 读取的分块封装为HttpContent，HTTP/2的流上也可以直接转换为DATA帧
+     */
+    private static final class OpenChunkedFile implements ChunkedInput<HttpContent> {
+        private final OpenFileCache.OpenFile file;
+        private final ChunkedNioFile input;
+        private boolean closed;
+
+        private OpenChunkedFile(OpenFileCache.OpenFile file, long offset, long length) throws IOException {
+            this.input = new ChunkedNioFile(file.getChannel(), offset, length, FILE_CHUNK_SIZE);
+            this.file = file.retain();
+        }
+
+        /**
+         * 文件通道由缓存管理，持有引用期间一定是打开的
+         */
+        static OpenChunkedFile of(OpenFileCache.OpenFile file, long offset, long length) {
+            try {
+                return new OpenChunkedFile(file, offset, length);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public boolean isEndOfInput() throws Exception {
+            return input.isEndOfInput();
+        }
+
+        @Override
+        @Deprecated
+        public HttpContent readChunk(ChannelHandlerContext ctx) throws Exception {
+            return readChunk(ctx.alloc());
+        }
+
+        @Override
+        public HttpContent readChunk(ByteBufAllocator allocator) throws Exception {
+            ByteBuf chunk = input.readChunk(allocator);
+            return chunk == null ? null : new DefaultHttpContent(chunk);
+        }
+
+        @Override
+        public long length() {
+            return input.length();
+        }
+
+        @Override
+        public long progress() {
+            return input.progress();
+        }
+
+        /**
+         * 不关闭ChunkedNioFile，它会关闭缓存中的文件通道
+         */
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                file.release();
+            }
+        }
+    }
+
+    /**
+     * 最高压缩级别的GZIPOutputStream
+     */
+    private static final class MaxGzipOutputStream extends GZIPOutputStream {
+        MaxGzipOutputStream(OutputStream out) throws IOException {
+            super(out, 8192);
+            def.setLevel(Deflater.BEST_COMPRESSION);
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package cn.fengin.tiny.http.handler.deal;
+
+import io.netty.channel.Channel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 请求内存预算
+ * 统计正在接收的请求体占用的内存，按请求申请、请求完成后释放，接近上限时通过暂停读取实现背压，不拒绝请求：
+ * 1. 占用达到暂停水位（security.memoryPausePercent）后，新建的连接和完成了一个请求的连接关闭autoRead，暂停读取新的请求
+ * 2. 正在接收请求体的连接继续读取，请求完成后释放内存，保证总能释放出内存，不会所有连接互相等待
+ * 3. 占用降到恢复水位（security.memoryResumePercent）以下时，恢复所有暂停的连接
+ * 暂停通过ReadPause记录原因，因其他原因（例如管道化请求数达到上限）暂停的连接在其他原因解除前不恢复读取
+ * 单个请求体大小由max-body-size限制，超过上限的部分最多为正在接收的请求数乘以单个请求体大小
+ *
+ * @author fengin
+ * @since 1.0.0
+ */
+public class MemoryBudget {
+    private static final Logger logger = LoggerFactory.getLogger(MemoryBudget.class);
+
+    private final long limit;
+    private final long pauseThreshold;
+    private final long resumeThreshold;
+
+    private final AtomicLong used = new AtomicLong();
+    private final AtomicLong peak = new AtomicLong();
+    private final AtomicLong pauseCount = new AtomicLong();
+    private final AtomicLong resumeCount = new AtomicLong();
+    /**
+     * 因内存不足暂停读取的连接
+     */
+    private final Set<Channel> paused = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param limit 内存上限（字节）
+     * @param pausePercent 暂停读取的水位，上限的百分比
+     * @param resumePercent 恢复读取的水位，上限的百分比，不高于暂停水位
+     */
+    public MemoryBudget(long limit, int pausePercent, int resumePercent) {
+        this.limit = limit;
+        this.pauseThreshold = limit / 100 * pausePercent;
+        this.resumeThreshold = Math.min(pauseThreshold, limit / 100 * resumePercent);
+    }
+
+    /**
+     * 申请内存，只做统计，不会失败
+     */
+    public void allocate(long bytes) {
+        long current = used.addAndGet(bytes);
+        long max;
+        while (current > (max = peak.get()) && !peak.compareAndSet(max, current)) {
+            // 重试
+        }
+    }
+
+    /**
+     * 释放内存，降到恢复水位以下时恢复暂停的连接
+     */
+    public void free(long bytes) {
+        if (used.addAndGet(-bytes) <= resumeThreshold && !paused.isEmpty()) {
+            resumeAll();
+        }
+    }
+
+    /**
+     * 是否达到暂停水位
+     */
+    public boolean isOverBudget() {
+        return used.get() >= pauseThreshold;
+    }
+
+    /**
+     * 达到暂停水位时暂停连接的读取，等待内存释放后恢复
+     * 只能在连接没有正在接收的请求时调用，否则请求无法完成、内存无法释放
+     * @return 是否暂停了读取
+     */
+    public boolean pauseIfOverBudget(Channel channel) {
+        if (!isOverBudget()) {
+            return false;
+        }
+        // 先关闭读取再登记，登记后随时可能被其他线程恢复
+        ReadPause.pause(channel, ReadPause.MEMORY);
+        if (paused.add(channel)) {
+            pauseCount.incrementAndGet();
+            logger.debug("Memory usage {} over budget, paused reading: {}", used.get(), channel);
+        }
+        // 暂停的同时其他线程可能刚刚释放了内存，重新检查，避免错过恢复
+        if (used.get() <= resumeThreshold) {
+            resumeAll();
+        }
+        return true;
+    }
+
+    private void resumeAll() {
+        int resumed = 0;
+        for (Iterator<Channel> it = paused.iterator(); it.hasNext(); ) {
+            Channel channel = it.next();
+            it.remove();
+            // 只解除内存不足的暂停，管道化、流式消费等原因暂停的连接仍然暂停
+            if (channel.isActive() && ReadPause.resume(channel, ReadPause.MEMORY)) {
+                resumed++;
+            }
+        }
+        if (resumed > 0) {
+            resumeCount.addAndGet(resumed);
+            logger.debug("Memory usage {} below resume threshold, resumed {} connections", used.get(), resumed);
+        }
+    }
+
+    /**
+     * 当前占用的内存（字节）
+     */
+    public long getUsed() {
+        return used.get();
+    }
+
+    /**
+     * 获取内存预算的统计指标
+     */
+    public Metrics getMetrics() {
+        return new Metrics(limit, used.get(), peak.get(), paused.size(), pauseCount.get(), resumeCount.get());
+    }
+
+    /**
+     * 内存预算统计指标
+     */
+    public static final class Metrics {
+        private final long limit;
+        private final long used;
+        private final long peak;
+        private final int pausedConnections;
+        private final long pauseCount;
+        private final long resumeCount;
+
+        private Metrics(long limit, long used, long peak, int pausedConnections, long pauseCount, long resumeCount) {
+            this.limit = limit;
+            this.used = used;
+            this.peak = peak;
+            this.pausedConnections = pausedConnections;
+            this.pauseCount = pauseCount;
+            this.resumeCount = resumeCount;
+        }
+
+        /**
+         * 内存上限（字节），security.maxMemoryUsage
+         */
+        public long getLimit() {
+            return limit;
+        }
+
+        /**
+         * 当前占用的内存（字节）
+         */
+        public long getUsed() {
+            return used;
+        }
+
+        /**
+         * 启动以来占用的最大内存（字节）
+         */
+        public long getPeak() {
+            return peak;
+        }
+
+        /**
+         * 当前暂停读取的连接数
+         */
+        public int getPausedConnections() {
+            return pausedConnections;
+        }
+
+        /**
+         * 启动以来暂停读取的次数
+         */
+        public long getPauseCount() {
+            return pauseCount;
+        }
+
+        /**
+         * 启动以来恢复读取的次数
+         */
+        public long getResumeCount() {
+            return resumeCount;
+        }
+
+        @Override
+        public String toString() {
+            return "MemoryBudget{limit=" + limit + ", used=" + used + ", peak=" + peak
+                    + ", pausedConnections=" + pausedConnections + ", pauseCount=" + pauseCount
+                    + ", resumeCount=" + resumeCount + "}";
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package cn.fengin.tiny.http.handler.deal;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 令牌桶限流器
+ * 按键（客户端IP、路由+IP、API Key）限流，所有键的状态保存在固定大小的表中，内存占用不随键的数量增长：
+ * 1. 令牌桶使用GCRA算法表示，每个键只需要记录一个"理论到达时间"（TAT），
+ *    与速率rate、容量burst的令牌桶等价：TAT超过当前时间越多，桶中剩余的令牌越少
+ * 2. 每个表项是一个long，高16位是键的指纹，低48位是TAT（微秒），通过CAS无锁更新，查找和更新都是O(1)且不分配对象
+ * 3. TAT不晚于当前时间的表项桶已经满了，与不存在等价，不需要定时清理，可以直接被其他键复用
+ * 4. 键按哈希映射到4个相邻表项之一，优先使用已过期的表项；都被占用时替换TAT最早的表项，新的键继承它的TAT，
+ *    伪造大量源IP时只会互相替换，内存保持不变，被替换的键也不会因此得到新的满桶
+ * 指纹相同的不同键落在同一组时共用一个桶（概率约为表项数/65536分之一），只会使限流更严格
+ *
+ * @author fengin
+ * @since 1.0.0
+ */
+public final class RateLimiter {
+    private static final int WAYS = 4;
+    private static final int TAG_SHIFT = 48;
+    private static final long TAT_MASK = (1L << TAG_SHIFT) - 1;
+
+    private final AtomicLongArray entries;
+    private final int mask;
+    private final long startNanos = System.nanoTime();
+
+    /**
+     * @param capacity 表项数，向上取整为2的幂，至少64
+     */
+    public RateLimiter(int capacity) {
+        int size = Integer.highestOneBit(Math.max(64, capacity - 1) << 1);
+        this.entries = new AtomicLongArray(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * 申请一个令牌
+     * @param hash 键的哈希，由hash计算
+     * @param permitsPerSecond 每秒产生的令牌数
+     * @param burst 桶的容量，允许的突发请求数
+     * @return 0表示允许；否则为需要等待的微秒数，等待后才有可用的令牌
+     */
+    public long acquire(long hash, double permitsPerSecond, int burst) {
+        long interval = Math.max(1L, (long) (1_000_000 / permitsPerSecond));
+        long tolerance = interval * (Math.max(1, burst) - 1);
+        long now = (System.nanoTime() - startNanos) / 1000;
+        long tag = hash >>> TAG_SHIFT;
+        int base = (int) hash & mask & -WAYS;
+        while (true) {
+            int slot = -1;
+            int expired = -1;
+            int victim = base;
+            long victimTat = Long.MAX_VALUE;
+            for (int i = base; i < base + WAYS; i++) {
+                long s = entries.get(i);
+                long tat = s & TAT_MASK;
+                if (tat <= now) {
+                    if (expired < 0) {
+                        expired = i;
+                    }
+                } else if (s >>> TAG_SHIFT == tag) {
+                    slot = i;
+                    break;
+                } else if (tat < victimTat) {
+                    victim = i;
+                    victimTat = tat;
+                }
+            }
+            if (slot < 0 && expired >= 0) {
+                // 新的键或者桶已经满了，使用已过期的表项
+                long s = entries.get(expired);
+                if ((s & TAT_MASK) <= now && entries.compareAndSet(expired, s, tag << TAG_SHIFT | (now + interval))) {
+                    return 0;
+                }
+                continue;
+            }
+            // 找到键的表项；或者都被占用，替换TAT最早的表项并继承它的TAT，
+            // 被替换的键重新出现时也不会得到满桶，大量伪造的键无法通过互相替换绕过限流
+            int target = slot >= 0 ? slot : victim;
+            long state = entries.get(target);
+            long tat = state & TAT_MASK;
+            if (tat <= now || (slot >= 0 && state >>> TAG_SHIFT != tag)) {
+                // 扫描之后表项已被修改，重新查找
+                continue;
+            }
+            if (tat - now > tolerance) {
+                return tat - now - tolerance;
+            }
+            if (entries.compareAndSet(target, state, tag << TAG_SHIFT | ((tat + interval) & TAT_MASK))) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * 计算键的哈希，不分配对象
+     * @param seed 区分不同种类的桶，例如不同的路由
+     */
+    public static long hash(CharSequence key, long seed) {
+        long h = seed * 0x9E3779B97F4A7C15L + key.length();
+        for (int i = 0; i < key.length(); i++) {
+            h = (h ^ key.charAt(i)) * 0x100000001B3L;
+        }
+        // 混合所有位，高位用作指纹，低位用作表项位置
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * 表项数
+     */
+    public int capacity() {
+        return entries.length();
+    }
+}
@@ -0,0 +1,96 @@
+package cn.fengin.tiny.http.handler.deal;
+
+import io.netty.channel.Channel;
+import io.netty.util.Attribute;
+import io.netty.util.AttributeKey;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 连接的读取暂停
+ * 多个处理器出于不同的原因关闭autoRead实现背压：管道化请求数达到上限、流式消费者未处理完数据块、请求占用的内存超过预算，
+ * 每个连接按位记录暂停的原因，所有原因都解除后才恢复读取，一个处理器恢复读取时不会取消其他处理器的暂停
+ * 原因可以在任意线程修改，autoRead在连接的IO线程中按当时的原因设置
+ *
+ * @author fengin
+ * @since 1.0.0
+ */
+public final class ReadPause {
+    /** 管道化请求数达到上限 */
+    public static final int PIPELINING = 1;
+    /** 流式消费者正在处理数据块 */
+    public static final int BODY_CONSUMER = 1 << 1;
+    /** 请求占用的内存超过预算 */
+    public static final int MEMORY = 1 << 2;
+
+    private static final AttributeKey<AtomicInteger> REASONS = AttributeKey.valueOf("tiny.readPauseReasons");
+
+    private ReadPause() {
+    }
+
+    /**
+     * 因指定原因暂停读取
+     * @return 是否新增了该原因，已经因该原因暂停时返回false
+     */
+    public static boolean pause(Channel channel, int reason) {
+        AtomicInteger reasons = reasons(channel);
+        int previous;
+        do {
+            previous = reasons.get();
+            if ((previous & reason) != 0) {
+                return false;
+            }
+        } while (!reasons.compareAndSet(previous, previous | reason));
+        apply(channel);
+        return true;
+    }
+
+    /**
+     * 解除指定的暂停原因，没有其他原因时恢复读取
+     * @return 是否解除了该原因，没有因该原因暂停时返回false
+     */
+    public static boolean resume(Channel channel, int reason) {
+        AtomicInteger reasons = reasons(channel);
+        int previous;
+        do {
+            previous = reasons.get();
+            if ((previous & reason) == 0) {
+                return false;
+            }
+        } while (!reasons.compareAndSet(previous, previous & ~reason));
+        apply(channel);
+        return true;
+    }
+
+    /**
+     * 是否因指定原因暂停了读取
+     */
+    public static boolean isPaused(Channel channel, int reason) {
+        AtomicInteger reasons = channel.attr(REASONS).get();
+        return reasons != null && (reasons.get() & reason) != 0;
+    }
+
+    private static AtomicInteger reasons(Channel channel) {
+        Attribute<AtomicInteger> attribute = channel.attr(REASONS);
+        AtomicInteger reasons = attribute.get();
+        if (reasons == null) {
+            AtomicInteger created = new AtomicInteger();
+            reasons = attribute.setIfAbsent(created);
+            if (reasons == null) {
+                reasons = created;
+            }
+        }
+        return reasons;
+    }
+
+    /**
+     * 按当前的原因设置autoRead，其他线程中修改的原因在IO线程中按最新的状态设置，不会被先后顺序颠倒的设置覆盖
+     */
+    private static void apply(Channel channel) {
+        if (channel.eventLoop().inEventLoop()) {
+            channel.config().setAutoRead(reasons(channel).get() == 0);
+        } else {
+            channel.eventLoop().execute(() -> apply(channel));
+        }
+    }
+}
@@ -1,20 +1,25 @@
 package cn.fengin.tiny.http.handler.deal;
 
 import cn.fengin.tiny.config.SecurityConfig;
+import cn.fengin.tiny.exception.RateLimitException;
 import cn.fengin.tiny.exception.SecurityException;
-import io.netty.handler.codec.http.HttpHeaders;
+import cn.fengin.tiny.http.Route;
+import cn.fengin.tiny.http.Router;
+import cn.fengin.tiny.http.handler.StaticAssetManifest;
+import cn.fengin.tiny.http.handler.StaticResourceHandler;
+import io.netty.channel.Channel;
 import io.netty.handler.codec.http.HttpRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.net.URI;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 安全管理器
  * 实现请求限流、IP黑名单等安全功能
+ * 请求限流使用令牌桶（RateLimiter），按IP、API Key和设置了Route.rateLimit的路由分别限流，超过时返回429，
+ * 所有限流状态保存在固定大小的表中，大量不同的源IP不会使内存增长
+ * 请求体占用的内存由MemoryBudget统计，接近上限时暂停连接读取，不拒绝请求
  *
  * @author fengin
  * @since 1.0.0
@@ -22,21 +27,27 @@ import java.util.concurrent.atomic.AtomicLong;
 public class SecurityManager {
     private static final Logger logger = LoggerFactory.getLogger(SecurityManager.class);
     
-    // IP访问计数器
-    private final ConcurrentHashMap<String, AtomicInteger> ipConnectionCounter = new ConcurrentHashMap<>();
-    
-    // IP请求计数器
-    private final ConcurrentHashMap<String, AtomicInteger> ipRequestCounter = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<String, AtomicLong> ipLastRequestTime = new ConcurrentHashMap<>();
+    // 区分IP和API Key限流桶的种子
+    private static final long IP_SEED = 1;
+    private static final long API_KEY_SEED = 2;
+
+    // IP连接计数器，连接全部关闭后移除
+    private final ConcurrentHashMap<String, Integer> ipConnectionCounter = new ConcurrentHashMap<>();
 
-    // 资源使用计数器
-    private final AtomicLong currentMemoryUsage = new AtomicLong(0);
+    // 请求限流器
+    private final RateLimiter rateLimiter;
+
+    // 请求内存预算
+    private final MemoryBudget memoryBudget;
 
     // 配置
     private final SecurityConfig securityConfig;
 
     public SecurityManager(SecurityConfig securityConfig) {
         this.securityConfig = securityConfig;
+        this.rateLimiter = new RateLimiter(securityConfig.getRateLimitEntries());
+        this.memoryBudget = new MemoryBudget(securityConfig.getMaxMemoryUsage(),
+                securityConfig.getMemoryPausePercent(), securityConfig.getMemoryResumePercent());
     }
     
     /**
@@ -47,10 +58,9 @@ public class SecurityManager {
         checkConnectionLimit(remoteIp);
         
         // 检查请求频率
-        checkRequestRate(remoteIp);
+        checkRequestRate(request, remoteIp);
         
-        // 检查Headers
-        checkHeaders(request.headers());
+        // 请求体大小由HttpBodyHandler按路由的maxBodySize或server.http.max-body-size检查，超过时返回413
 
         // 检查静态资源请求类型是否允许
         checkStaticResourceType(request.uri());
@@ -60,97 +70,114 @@ public class SecurityManager {
      * 释放内存资源
      */
     public void freeMemory(long bytes) {
-        currentMemoryUsage.addAndGet(-bytes);
+        memoryBudget.free(bytes);
     }
     /**
      * 获取当前内存使用情况
      */
     public long getCurrentMemoryUsage() {
-        return currentMemoryUsage.get();
+        return memoryBudget.getUsed();
+    }
+
+    /**
+     * 获取请求内存预算，可以通过getMetrics获取统计指标
+     */
+    public MemoryBudget getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * 内存接近上限时暂停连接的读取，在新建连接和连接上的请求完成时调用
+     * @return 是否暂停了读取
+     */
+    public boolean pauseIfOverBudget(Channel channel) {
+        return memoryBudget.pauseIfOverBudget(channel);
     }
 
     private void checkStaticResourceType(String uri) {
-        if(null == uri || !uri.contains("."))return;
-        try {
-            URI parsedUri = new URI(uri);
-            String path = parsedUri.getPath(); // 去除查询参数
-            if(!path.contains("."))return;
-            for (String extension : securityConfig.getAllowedExtensions()) {
-                if (path.endsWith(extension)) {
-                    return;
-                }
-            }
-        } catch (Exception e) {
-            logger.error("Invalid URI: " + uri, e);
+        if(null == uri || uri.indexOf('.') < 0)return;
+        String path = StaticAssetManifest.requestPath(uri);
+        if (path == null) {
+            logger.warn("Invalid URI: {}", uri);
+            throw new SecurityException("Request uri is not allowed");
+        }
+        if(path.indexOf('.') < 0)return;
+        // 清单中的资源在建立清单时已经判断过扩展名
+        StaticAssetManifest.Asset asset = StaticResourceHandler.findAsset(path);
+        if (asset != null ? asset.isAllowed()
+                : StaticAssetManifest.isAllowed(path, securityConfig.getAllowedExtensions())) {
+            return;
         }
         throw new SecurityException("Request uri is not allowed");
     }
     /**
-     * 申请内存资源
+     * 申请内存资源，只做统计，超过上限时由pauseIfOverBudget暂停读取新的请求
      */
     public void allocateMemory(long bytes) {
-        if (currentMemoryUsage.addAndGet(bytes) > securityConfig.getMaxMemoryUsage()) {
-            currentMemoryUsage.addAndGet(-bytes);
-            logger.error("Memory limit exceeded, requested: {} bytes", bytes);
-            throw new SecurityException("Memory limit exceeded");
-        }
+        memoryBudget.allocate(bytes);
     }
 
     /**
      * 新建连接时调用
      */
     public void onNewConnection(String remoteIp) {
-        ipConnectionCounter.computeIfAbsent(remoteIp, k -> new AtomicInteger(0)).incrementAndGet();
+        ipConnectionCounter.merge(remoteIp, 1, Integer::sum);
     }
     
     /**
      * 连接关闭时调用
      */
     public void onConnectionClosed(String remoteIp) {
-        ipConnectionCounter.computeIfPresent(remoteIp, (k, v) -> {
-            v.decrementAndGet();
-            return v;
-        });
+        ipConnectionCounter.computeIfPresent(remoteIp, (k, v) -> v > 1 ? v - 1 : null);
     }
     
     private void checkConnectionLimit(String remoteIp) {
-        AtomicInteger counter = ipConnectionCounter.get(remoteIp);
-        if (counter != null && counter.get() > securityConfig.getMaxConnectionsPerIp()) {
+        Integer count = ipConnectionCounter.get(remoteIp);
+        if (count != null && count > securityConfig.getMaxConnectionsPerIp()) {
             logger.warn("Too many connections from IP: {}", remoteIp);
             throw new SecurityException("Too many connections from your IP");
         }
     }
     
-    private void checkRequestRate(String remoteIp) {
-        long currentTime = System.currentTimeMillis();
-        AtomicInteger counter = ipRequestCounter.computeIfAbsent(remoteIp, k -> new AtomicInteger(0));
-        AtomicLong lastTime = ipLastRequestTime.computeIfAbsent(remoteIp, k -> new AtomicLong(currentTime));
-        
-        // 检查是否需要重置计数器
-        if (currentTime - lastTime.get() > 1000) {
-            counter.set(0);
-            lastTime.set(currentTime);
+    private void checkRequestRate(HttpRequest request, String remoteIp) {
+        int rate = securityConfig.getMaxRequestsPerSecond();
+        if (rate > 0) {
+            acquire(remoteIp, IP_SEED, rate, securityConfig.getRequestBurst(), "IP", remoteIp);
         }
-        
-        // 检查请求频率
-        if (counter.incrementAndGet() > securityConfig.getMaxConnectionsPerIp()) {
-            logger.warn("Request rate limit exceeded for IP: {}", remoteIp);
-            throw new SecurityException("Request rate limit exceeded");
+
+        // 按API Key限流，与IP限流同时生效
+        String apiKeyHeader = securityConfig.getApiKeyHeader();
+        int apiKeyRate = securityConfig.getApiKeyRequestsPerSecond();
+        if (apiKeyRate > 0 && apiKeyHeader != null && !apiKeyHeader.isEmpty()) {
+            String apiKey = request.headers().get(apiKeyHeader);
+            if (apiKey != null) {
+                acquire(apiKey, API_KEY_SEED, apiKeyRate, securityConfig.getApiKeyBurst(), "API key", remoteIp);
+            }
         }
-    }
-    
-    private void checkHeaders(HttpHeaders headers) {
-        // 检查Content-Length
-        String contentLength = headers.get("Content-Length");
-        if (contentLength != null) {
-            try {
-                long length = Long.parseLong(contentLength);
-                if (length > 10 * 1024 * 1024) { // 10MB
-                    throw new SecurityException("Request body too large");
-                }
-            } catch (NumberFormatException e) {
-                throw new SecurityException("Invalid Content-Length header");
+
+        // 按路由限流
+        if (Router.hasRateLimits()) {
+            Route route = Router.find(request.method(), request.uri());
+            if (route != null && route.getRateLimit() > 0) {
+                acquire(remoteIp, route.getRateLimitSeed(), route.getRateLimit(), route.getRateLimitBurst(),
+                        route.getPath(), remoteIp);
             }
         }
     }
-} 
\ No newline at end of file
+
+    /**
+     * 从键对应的令牌桶中申请一个令牌
+     * @param burst 突发请求数，0表示与速率相同
+     * @param bucket 桶的种类，只用于日志
+     */
+    private void acquire(CharSequence key, long seed, double permitsPerSecond, int burst, String bucket, String remoteIp) {
+        if (burst <= 0) {
+            burst = (int) Math.max(1, Math.ceil(permitsPerSecond));
+        }
+        long waitMicros = rateLimiter.acquire(RateLimiter.hash(key, seed), permitsPerSecond, burst);
+        if (waitMicros > 0) {
+            logger.debug("Request rate limit exceeded ({}) for IP: {}", bucket, remoteIp);
+            throw new RateLimitException(waitMicros);
+        }
+    }
+}
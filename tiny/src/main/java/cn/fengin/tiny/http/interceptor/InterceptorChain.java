@@ -36,7 +36,7 @@ public class InterceptorChain {
     public boolean applyPreHandle(ChannelHandlerContext ctx, HttpRequest request) {
         for (Interceptor interceptor : interceptors) {
             try {
-                if (!interceptor.preHandle(request,new HttpResponse(ctx))) {
+                if (!interceptor.preHandle(request,new HttpResponse(ctx, request))) {
                     return false;
                 }
             } catch (Exception e) {
@@ -53,7 +53,7 @@ public class InterceptorChain {
     public void applyPostHandle(ChannelHandlerContext ctx, HttpRequest request) {
         for (int i = interceptors.size() - 1; i >= 0; i--) {
             try {
-                interceptors.get(i).postHandle(request,new HttpResponse(ctx));
+                interceptors.get(i).postHandle(request,new HttpResponse(ctx, request));
             } catch (Exception e) {
                 logger.error("Error in interceptor postHandle", e);
             }
@@ -61,12 +61,12 @@ public class InterceptorChain {
     }
     
     /**
-     * 触发异常完成处理
+     * 触发完成处理，正常完成时ex为null
      */
     public void triggerAfterCompletion(ChannelHandlerContext ctx, HttpRequest request, Exception ex) {
         for (int i = interceptors.size() - 1; i >= 0; i--) {
             try {
-                interceptors.get(i).afterCompletion(request,new HttpResponse(ctx), ex);
+                interceptors.get(i).afterCompletion(request,new HttpResponse(ctx, request), ex);
             } catch (Exception e) {
                 logger.error("Error in interceptor afterCompletion", e);
             }
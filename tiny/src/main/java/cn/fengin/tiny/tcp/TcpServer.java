@@ -2,13 +2,17 @@ package cn.fengin.tiny.tcp;
 
 import cn.fengin.tiny.config.ServerConfig;
 import cn.fengin.tiny.context.ApplicationContext;
+import cn.fengin.tiny.context.EventLoopResources;
+import cn.fengin.tiny.context.TransportFactory;
 import cn.fengin.tiny.tcp.register.TcpRegistry;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.*;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
 /**
  * TCP服务器
  * 负责创建和管理基于Netty的TCP服务器实例
@@ -22,14 +26,11 @@ public class TcpServer {
     /** TCP服务注册器，包含服务名称、编解码器和消息处理器 */
     private final TcpRegistry registry;
     
-    /** Netty的Boss线程组，用于接收连接 */
-    private EventLoopGroup bossGroup;
-    
-    /** Netty的Worker线程组，用于处理IO */
-    private EventLoopGroup workerGroup;
+    /** Netty的Boss线程组（接收连接）和Worker线程组（处理IO），从EventLoopResources获取，默认与其他服务器共享 */
+    private EventLoopResources.Groups groups;
     
-    /** 服务器Channel */
-    private Channel serverChannel;
+    /** 服务器Channel，使用SO_REUSEPORT时同一端口有多个 */
+    private List<Channel> serverChannels;
     
     /**
      * 构造TCP服务器
@@ -65,44 +66,62 @@ public class TcpServer {
                 throw new RuntimeException("No TCP server configuration found for name: " + registry.getServerName());
             }
             
-            // 配置Netty线程组
-            bossGroup = new NioEventLoopGroup(config.getBossThreads());
-            workerGroup = new NioEventLoopGroup(config.getWorkerThreads());
+            // 业务执行器，event-loop时为null
+            ExecutorService executor = ApplicationContext.getInstance().getExecutor(config.getExecution());
+            logger.info("TCP server {} execution mode: {}", config.getName(), config.getExecution().getConfigName());
+            // 获取Netty线程组
+            boolean epoll = TransportFactory.useEpoll(config.getTransport());
+            int acceptors = TransportFactory.acceptors(config.getAcceptors(), epoll);
+            EventLoopResources.Groups groups = acquireGroups(acceptors);
             // 创建并配置ServerBootstrap
             ServerBootstrap bootstrap = new ServerBootstrap();
-            bootstrap.group(bossGroup, workerGroup)
-                .channel(NioServerSocketChannel.class)
+            bootstrap.group(groups.getBossGroup(), groups.getWorkerGroup())
                 .option(ChannelOption.SO_BACKLOG, config.getBacklog())
                 .option(ChannelOption.SO_REUSEADDR, true)
                 .childOption(ChannelOption.SO_KEEPALIVE, true)
                 .childOption(ChannelOption.TCP_NODELAY, true)
-                .childHandler(new TcpServerInitializer(registry.getCodec(), registry.getProcessor(),config));
+                .childHandler(new TcpServerInitializer(registry.getCodec(), registry.getProcessor(), config, executor));
+            TransportFactory.configure(bootstrap, groups.isEpoll(), config.getSocket());
             // 绑定端口并启动服务器
-            ChannelFuture future = bootstrap.bind(config.getPort()).sync();
-            serverChannel = future.channel();
-            logger.info("TCP server {} started on port {}, cost time {} ms", config.getName(),config.getPort(), System.currentTimeMillis() - ApplicationContext.startTime);
+            List<Channel> channels = TransportFactory.bind(bootstrap, config.getPort(), acceptors);
+            synchronized (this) {
+                serverChannels = channels;
+            }
+            logger.info("TCP server {} started on port {} ({}, {} acceptors, {} event loop), cost time {} ms", config.getName(),
+                    config.getPort(), groups.isEpoll() ? "epoll" : "nio", acceptors, groups.isShared() ? "shared" : "isolated",
+                    System.currentTimeMillis() - ApplicationContext.startTime);
             // 等待服务器关闭
-            serverChannel.closeFuture().sync();
+            for (Channel channel : channels) {
+                channel.closeFuture().sync();
+            }
         } catch (Exception e) {
             logger.error("Failed to start TCP server " + registry.getServerName(), e);
+            shutdown();
             throw new RuntimeException("Failed to start TCP server", e);
         }
     }
+
+    private synchronized EventLoopResources.Groups acquireGroups(int acceptors) {
+        groups = ApplicationContext.getInstance().getEventLoopResources().acquire(config.getName(), config.getTransport(),
+                config.isIsolatedEventLoop(), config.getBossThreads(), config.getWorkerThreads(), acceptors);
+        return groups;
+    }
     
     /**
      * 关闭TCP服务器
      * 1. 关闭服务器Channel
-     * 2. 优雅关闭线程组
+     * 2. 释放线程组，共享线程组在所有服务器都停止后优雅关闭
      */
-    public void shutdown() {
-        if (serverChannel != null) {
-            serverChannel.close();
-        }
-        if (bossGroup != null) {
-            bossGroup.shutdownGracefully();
+    public synchronized void shutdown() {
+        if (serverChannels != null) {
+            for (Channel channel : serverChannels) {
+                channel.close();
+            }
+            serverChannels = null;
         }
-        if (workerGroup != null) {
-            workerGroup.shutdownGracefully();
+        if (groups != null) {
+            ApplicationContext.getInstance().getEventLoopResources().release(groups);
+            groups = null;
         }
     }
 } 
\ No newline at end of file
@@ -12,6 +12,7 @@ import io.netty.channel.ChannelPipeline;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.handler.timeout.IdleStateHandler;
 
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -28,6 +29,9 @@ public class TcpServerInitializer extends ChannelInitializer<SocketChannel> {
     
     /** 服务器配置 */
     private final ServerConfig.TcpServerConfig config;
+
+    /** 业务执行器，为null时在IO线程中处理消息 */
+    private final Executor executor;
     
     /**
      * 构造通道初始化器
@@ -36,9 +40,22 @@ public class TcpServerInitializer extends ChannelInitializer<SocketChannel> {
      * @param config 服务器配置
      */
     public TcpServerInitializer(MessageCodec codec, MessageProcessor processor, ServerConfig.TcpServerConfig config) {
+        this(codec, processor, config, null);
+    }
+
+    /**
+     * 构造通道初始化器
+     * @param codec 消息编解码器
+     * @param processor 消息处理器
+     * @param config 服务器配置
+     * @param executor 业务执行器，为null时在IO线程中处理消息
+     */
+    public TcpServerInitializer(MessageCodec codec, MessageProcessor processor, ServerConfig.TcpServerConfig config,
+                                Executor executor) {
         this.codec = codec;
         this.processor = processor;
         this.config = config;
+        this.executor = executor;
     }
     
     @Override
@@ -61,6 +78,6 @@ public class TcpServerInitializer extends ChannelInitializer<SocketChannel> {
         pipeline.addLast(new HeartbeatHandler(config));
         
         // 添加业务处理器，处理解码后的消息
-        pipeline.addLast(new TcpServerHandler(processor));
+        pipeline.addLast(new TcpServerHandler(processor, executor));
     }
 } 
\ No newline at end of file
@@ -5,24 +5,67 @@ import cn.fengin.tiny.tcp.message.MessageProcessor;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.util.concurrent.EventExecutor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import cn.fengin.tiny.tcp.message.Message;
 
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * TCP服务器业务处理器
  * 负责处理设备连接的建立、断开和业务消息处理
+ * 配置了业务执行器（pool/virtual）时，消息在执行器中处理，同一连接（设备）的消息按接收顺序串行处理，
+ * 不同设备之间并行处理；业务执行器繁忙拒绝任务时，消息留在队列中由IO线程稍后重新提交，不丢弃、不打乱顺序
  */
 public class TcpServerHandler extends ChannelInboundHandlerAdapter {
     private static final Logger logger = LoggerFactory.getLogger(TcpServerHandler.class);
-    
+
+    /**
+     * 单个连接排队等待处理的消息数上限，超过后暂停读取，处理完再恢复
+     */
+    private static final int MAX_PENDING_MESSAGES = 1024;
+    /**
+     * 业务执行器拒绝任务后重新提交的间隔（毫秒）
+     */
+    private static final long RETRY_DELAY_MILLIS = 10;
+
     private final MessageProcessor processor;
     private final ConnectionManager connectionManager = ConnectionManager.getInstance();
-    
+    /** 业务执行器，为null时在IO线程中处理 */
+    private final Executor executor;
+    /** 当前连接的串行执行器，加入pipeline时创建，为null时在IO线程中处理 */
+    private SerialExecutor serialExecutor;
+    /** 当前连接排队中的消息数 */
+    private final AtomicInteger pendingMessages = new AtomicInteger();
+
     public TcpServerHandler(MessageProcessor processor) {
+        this(processor, null);
+    }
+
+    /**
+     * @param processor 消息处理器
+     * @param executor 业务执行器，为null时在IO线程中处理消息
+     */
+    public TcpServerHandler(MessageProcessor processor, Executor executor) {
         this.processor = processor;
+        this.executor = executor;
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) {
+        if (executor != null) {
+            serialExecutor = new SerialExecutor(executor, ctx.executor());
+        }
     }
-    
+
     @Override
     public void channelActive(ChannelHandlerContext ctx) throws Exception {
         // 不应该在连接建立时就注册设备ID，而是等待认证消息
@@ -30,13 +73,37 @@ public class TcpServerHandler extends ChannelInboundHandlerAdapter {
         logger.info("New channel active - Remote: {}, Local: {}", channel.remoteAddress(), channel.localAddress());
         super.channelActive(ctx);
     }
-    
+
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        Message message = (Message) msg;
+        if (serialExecutor == null) {
+            handleMessage(ctx, message);
+            return;
+        }
+        Channel channel = ctx.channel();
+        if (pendingMessages.incrementAndGet() >= MAX_PENDING_MESSAGES && channel.config().isAutoRead()) {
+            channel.config().setAutoRead(false);
+            logger.warn("Too many pending messages, pause reading - Remote: {}", channel.remoteAddress());
+        }
+        serialExecutor.execute(() -> {
+            try {
+                handleMessage(ctx, message);
+            } catch (Exception e) {
+                // 已在handleMessage中记录日志，与IO线程中处理时一样关闭连接
+                ctx.close();
+            } finally {
+                if (pendingMessages.decrementAndGet() < MAX_PENDING_MESSAGES / 2 && !channel.config().isAutoRead()) {
+                    channel.config().setAutoRead(true);
+                }
+            }
+        });
+    }
+
+    private void handleMessage(ChannelHandlerContext ctx, Message message) throws Exception {
         long startTime = System.currentTimeMillis();
         Channel channel = ctx.channel();
         String deviceId = connectionManager.getDeviceId(channel);
-        Message message = (Message) msg;
 
         try {
             if (deviceId == null) {
@@ -45,11 +112,11 @@ public class TcpServerHandler extends ChannelInboundHandlerAdapter {
                     connectionManager.registerConnection(message.getDeviceId(), channel);
                     //通知业务处理连接事件
                     processor.onConnected(message.getDeviceId());
-                    logger.info("Device registered - ID: {}, Remote: {}, MessageType: {}", 
+                    logger.info("Device registered - ID: {}, Remote: {}, MessageType: {}",
                         message.getDeviceId(), channel.remoteAddress(), message.getMessageType());
                 } else {
-                    logger.error("Authentication failed - Remote: {}, AttemptedDeviceId: {}, MessageType: {}", 
-                        channel.remoteAddress(), 
+                    logger.error("Authentication failed - Remote: {}, AttemptedDeviceId: {}, MessageType: {}",
+                        channel.remoteAddress(),
                         message.getDeviceId() != null ? message.getDeviceId() : "null",
                         message.getMessageType());
                     channel.close();
@@ -59,23 +126,33 @@ public class TcpServerHandler extends ChannelInboundHandlerAdapter {
 
             // 调用消息处理器处理业务消息
             processor.process(message, channel);
-            
+
             // 记录消息处理性能指标
             long processingTime = System.currentTimeMillis() - startTime; // 转换为毫秒
             if (processingTime > 100) { // 如果处理时间超过100ms，使用警告级别
                 logger.warn("Message processing slow - DeviceId: {}, MessageType: {}, ProcessingTime: {}ms", message.getDeviceId(), message.getMessageType(), processingTime);
                 return;
-            } 
+            }
             logger.debug("Message processed - DeviceId: {}, MessageType: {}, ProcessingTime: {}ms", message.getDeviceId(), message.getMessageType(), processingTime);
         } catch (Exception e) {
             logger.error("Error processing message - DeviceId: {}, Remote: {}, MessageType: {}", deviceId != null ? deviceId : "unknown", channel.remoteAddress(), message != null ? message.getMessageType() : "unknown",e);
             throw e;
         }
     }
-    
+
     @Override //心跳检测超时，断开连接，会触发这个方法
     public void channelInactive(ChannelHandlerContext ctx) throws Exception {
-        Channel channel = ctx.channel();
+        if (serialExecutor == null) {
+            handleInactive(ctx.channel());
+        } else {
+            // 排在已收到的消息之后通知断线，保证业务看到的事件顺序
+            Channel channel = ctx.channel();
+            serialExecutor.execute(() -> handleInactive(channel));
+        }
+        super.channelInactive(ctx);
+    }
+
+    private void handleInactive(Channel channel) {
         // 移除连接
         String deviceId = connectionManager.removeConnection(channel);
         //通知业务处理断线事件
@@ -85,9 +162,8 @@ public class TcpServerHandler extends ChannelInboundHandlerAdapter {
         } else {
             logger.info("Unregistered channel disconnected - Remote: {}", channel.remoteAddress());
         }
-        super.channelInactive(ctx);
     }
-    
+
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
         Channel channel = ctx.channel();
@@ -95,4 +171,82 @@ public class TcpServerHandler extends ChannelInboundHandlerAdapter {
         logger.info("Error in TcpServerHandler, remote:{},deviceId:{}",channel.remoteAddress(),deviceId,cause);
         ctx.close();
     }
-} 
\ No newline at end of file
+
+    /**
+     * 串行执行器
+     * 任务提交到共享的业务执行器中执行，但同一时刻最多只有一个任务在执行，按提交顺序依次执行，
+     * 用于保证同一设备的消息处理顺序
+     * 业务执行器拒绝时任务留在队列中，由连接的IO线程稍后重新提交，期间新的任务继续排队，
+     * 排队的消息过多时channelRead暂停读取，连接不会因此丢失消息或停止处理
+     */
+    private static final class SerialExecutor {
+        private final Executor delegate;
+        private final EventExecutor retryExecutor;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean running = new AtomicBoolean(false);
+
+        SerialExecutor(Executor delegate, EventExecutor retryExecutor) {
+            this.delegate = delegate;
+            this.retryExecutor = retryExecutor;
+        }
+
+        void execute(Runnable task) {
+            tasks.offer(task);
+            schedule();
+        }
+
+        private void schedule() {
+            if (running.compareAndSet(false, true)) {
+                submit();
+            }
+        }
+
+        /**
+         * 提交排空队列的任务，调用前已持有running标记，被拒绝时保持标记并稍后重试
+         */
+        private void submit() {
+            try {
+                delegate.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                if (delegate instanceof ExecutorService && ((ExecutorService) delegate).isShutdown()) {
+                    discard("business executor is shut down");
+                    return;
+                }
+                logger.debug("Business executor is busy, retry {} pending tasks in {}ms", tasks.size(), RETRY_DELAY_MILLIS);
+                try {
+                    retryExecutor.schedule(this::submit, RETRY_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (RejectedExecutionException ex) {
+                    discard("event loop is shut down");
+                }
+            }
+        }
+
+        /**
+         * 服务器停止时无法再执行，丢弃排队的任务
+         */
+        private void discard(String reason) {
+            logger.error("{} pending tasks discarded, {}", tasks.size(), reason);
+            tasks.clear();
+            running.set(false);
+        }
+
+        private void drain() {
+            try {
+                Runnable task;
+                while ((task = tasks.poll()) != null) {
+                    try {
+                        task.run();
+                    } catch (Throwable t) {
+                        logger.error("Error running serial task", t);
+                    }
+                }
+            } finally {
+                running.set(false);
+                // 释放标记后可能有新任务入队但没有调度
+                if (!tasks.isEmpty()) {
+                    schedule();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package cn.fengin.tiny.test.http;
+
+import cn.fengin.tiny.config.ExecutionMode;
+import cn.fengin.tiny.config.ServerConfig;
+import cn.fengin.tiny.context.ApplicationContext;
+import cn.fengin.tiny.http.HttpServer;
+import cn.fengin.tiny.http.Router;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http2.Http2FrameCodecBuilder;
+import io.netty.handler.codec.http2.Http2MultiplexHandler;
+import io.netty.handler.codec.http2.Http2StreamChannel;
+import io.netty.handler.codec.http2.Http2StreamChannelBootstrap;
+import io.netty.handler.codec.http2.Http2StreamFrameToHttpObjectCodec;
+import org.junit.jupiter.api.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 明文HTTP/2（h2c）服务器单元测试类
+ * 使用启用了http2的服务器，验证prior knowledge和Upgrade: h2c两种方式，以及HTTP/1.1请求在协议探测后正常处理
+ * 默认配置（http2: false）的HTTP/1.1处理管道由HttpServerTest测试
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class Http2ServerTest {
+    private static final Logger logger = LoggerFactory.getLogger(Http2ServerTest.class);
+    private static HttpServer server;
+    private static final int TEST_PORT = 18083;
+    private static boolean http2;
+
+    /**
+     * 测试环境初始化
+     * 启用http2后启动HTTP服务器
+     */
+    @BeforeAll
+    static void setup() throws Exception {
+        System.setProperty("app.config", "application-template.yaml");
+        ServerConfig.HttpConfig config = ApplicationContext.getInstance().getServerConfig().getHttp();
+        http2 = config.isHttp2();
+        config.setPort(TEST_PORT);
+        config.setBossThreads(1);
+        config.setWorkerThreads(2);
+        config.setKeepAlive(true);
+        config.setHttp2(true);
+
+        Router.get("/h2/test", (request, response) -> response.write("Hello, HTTP/2!"));
+        Router.get("/h2/slow", (request, response) -> {
+            try {
+                Thread.sleep(2500);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            response.write("slow");
+        }).execution(ExecutionMode.POOL);
+
+        server = new HttpServer();
+        CompletableFuture.runAsync(() -> {
+            try {
+                server.start();
+            } catch (Exception e) {
+                logger.error("Failed to start HTTP server", e);
+            }
+        });
+
+        // 等待服务器启动完成
+        Thread.sleep(2000);
+    }
+
+    /**
+     * 测试环境清理
+     * 关闭HTTP服务器，恢复http2配置
+     */
+    @AfterAll
+    static void tearDown() {
+        if (server != null) {
+            server.stop();
+        }
+        ApplicationContext.getInstance().getServerConfig().getHttp().setHttp2(http2);
+    }
+
+    /**
+     * 测试prior knowledge方式
+     * 验证同一连接上的多个流并发请求路由和静态资源
+     */
+    @Test
+    @Order(1)
+    void testPriorKnowledge() throws Exception {
+        EventLoopGroup group = new NioEventLoopGroup(1);
+        try {
+            Channel channel = connect(group);
+            CompletableFuture<FullHttpResponse> api = http2Get(channel, "/h2/test");
+            CompletableFuture<FullHttpResponse> page = http2Get(channel, "/index.html");
+            FullHttpResponse apiResponse = api.get(5, TimeUnit.SECONDS);
+            FullHttpResponse pageResponse = page.get(5, TimeUnit.SECONDS);
+            try {
+                assertEquals(200, apiResponse.status().code());
+                assertEquals("Hello, HTTP/2!", apiResponse.content().toString(StandardCharsets.UTF_8));
+                assertEquals(200, pageResponse.status().code());
+                assertTrue(pageResponse.headers().get("content-type").startsWith("text/html"));
+                assertTrue(pageResponse.content().isReadable());
+            } finally {
+                apiResponse.release();
+                pageResponse.release();
+            }
+            channel.close().sync();
+        } finally {
+            group.shutdownGracefully();
+        }
+    }
+
+    /**
+     * 测试HTTP/1.1请求通过Upgrade: h2c升级
+     */
+    @Test
+    @Order(2)
+    void testUpgrade() throws Exception {
+        try (Socket socket = new Socket("localhost", TEST_PORT)) {
+            socket.setSoTimeout(5000);
+            OutputStream out = socket.getOutputStream();
+            out.write(("GET /h2/test HTTP/1.1\r\nHost: localhost\r\nConnection: Upgrade, HTTP2-Settings\r\n"
+                    + "Upgrade: h2c\r\nHTTP2-Settings: AAMAAABkAAQAAP__\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+            assertEquals("HTTP/1.1 101 Switching Protocols", reader.readLine());
+        }
+    }
+
+    /**
+     * 测试启用http2时的HTTP/1.1请求
+     * 验证不是HTTP/2连接前言的请求按HTTP/1.1处理，同一连接上的管道化请求正常返回
+     */
+    @Test
+    @Order(3)
+    void testHttp1() throws Exception {
+        try (Socket socket = new Socket("localhost", TEST_PORT)) {
+            socket.setSoTimeout(5000);
+            OutputStream out = socket.getOutputStream();
+            out.write(("GET /h2/test HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                    + "GET /h2/test HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            ByteArrayOutputStream received = new ByteArrayOutputStream();
+            InputStream in = socket.getInputStream();
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                received.write(buffer, 0, read);
+            }
+            String responses = received.toString("UTF-8");
+            int first = responses.indexOf("HTTP/1.1 200");
+            assertTrue(first >= 0 && responses.indexOf("HTTP/1.1 200", first + 1) > first, responses);
+        }
+    }
+
+    /**
+     * 测试HTTP/2连接的空闲超时不关闭处理中的流
+     * 空闲超时在建立连接时设置，修改配置后使用新的连接
+     */
+    @Test
+    @Order(4)
+    void testIdleTimeoutWithActiveStream() throws Exception {
+        ServerConfig.HttpConfig config = ApplicationContext.getInstance().getServerConfig().getHttp();
+        int keepAliveTimeout = config.getKeepAliveTimeout();
+        config.setKeepAliveTimeout(1);
+        EventLoopGroup group = new NioEventLoopGroup(1);
+        try {
+            Channel channel = connect(group);
+            FullHttpResponse response = http2Get(channel, "/h2/slow").get(5, TimeUnit.SECONDS);
+            try {
+                assertEquals(200, response.status().code());
+                assertEquals("slow", response.content().toString(StandardCharsets.UTF_8));
+            } finally {
+                response.release();
+            }
+            channel.close().sync();
+        } finally {
+            config.setKeepAliveTimeout(keepAliveTimeout);
+            group.shutdownGracefully();
+        }
+    }
+
+    /**
+     * 连接到服务器，直接使用HTTP/2（prior knowledge）
+     */
+    private static Channel connect(EventLoopGroup group) throws Exception {
+        return new Bootstrap().group(group).channel(NioSocketChannel.class)
+                .handler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        ch.pipeline().addLast(Http2FrameCodecBuilder.forClient().build());
+                        ch.pipeline().addLast(new Http2MultiplexHandler(new ChannelInboundHandlerAdapter()));
+                    }
+                })
+                .connect("localhost", TEST_PORT).sync().channel();
+    }
+
+    /**
+     * 在HTTP/2连接上新建一个流发送GET请求
+     */
+    private static CompletableFuture<FullHttpResponse> http2Get(Channel channel, String path) throws Exception {
+        CompletableFuture<FullHttpResponse> result = new CompletableFuture<>();
+        Http2StreamChannel stream = new Http2StreamChannelBootstrap(channel)
+                .handler(new ChannelInitializer<Http2StreamChannel>() {
+                    @Override
+                    protected void initChannel(Http2StreamChannel ch) {
+                        ch.pipeline().addLast(new Http2StreamFrameToHttpObjectCodec(false));
+                        ch.pipeline().addLast(new HttpObjectAggregator(1024 * 1024));
+                        ch.pipeline().addLast(new SimpleChannelInboundHandler<FullHttpResponse>() {
+                            @Override
+                            protected void channelRead0(ChannelHandlerContext ctx, FullHttpResponse response) {
+                                result.complete(response.retain());
+                            }
+                        });
+                    }
+                })
+                .open().sync().getNow();
+        DefaultFullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, path);
+        request.headers().set(HttpHeaderNames.HOST, "localhost:" + TEST_PORT);
+        stream.writeAndFlush(request);
+        return result;
+    }
+}
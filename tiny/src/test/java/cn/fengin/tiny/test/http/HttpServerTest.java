@@ -1,19 +1,44 @@
 package cn.fengin.tiny.test.http;
 
+import cn.fengin.tiny.cache.LocalCache;
+import cn.fengin.tiny.config.ExecutionMode;
 import cn.fengin.tiny.config.ServerConfig;
 import cn.fengin.tiny.context.ApplicationContext;
 import cn.fengin.tiny.http.*;
+import cn.fengin.tiny.http.handler.StaticResourceCache;
+import cn.fengin.tiny.http.handler.StaticResourceHandler;
+import cn.fengin.tiny.http.handler.deal.MemoryBudget;
+import cn.fengin.tiny.http.handler.deal.ReadPause;
+import cn.fengin.tiny.http.handler.deal.RateLimiter;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.util.JSONPObject;
-import io.netty.channel.ChannelHandlerContext;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.multipart.FileUpload;
 import org.junit.jupiter.api.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
 import java.net.HttpURLConnection;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -27,6 +52,8 @@ public class HttpServerTest {
     private static final Logger logger = LoggerFactory.getLogger(HttpServerTest.class);
     private static HttpServer server;
     private static final int TEST_PORT = 18081;
+    private static final AtomicInteger CACHED_CALLS = new AtomicInteger();
+    private static final AtomicInteger COALESCED_CALLS = new AtomicInteger();
     /**
      * 测试控制器类
      * 包含所有测试端点的处理方法
@@ -54,6 +81,53 @@ public class HttpServerTest {
             String message = request.getParameter("message");
             response.write(message+" processed");
         }
+
+        /**
+         * 处理POST请求，将JSON请求体绑定为对象
+         */
+        public void handleMessage(HttpRequest request, HttpResponse response) {
+            Message message = request.bodyAs(Message.class);
+            response.write(message.getMessage() + " bound");
+        }
+
+        /**
+         * 处理带路径变量的GET请求
+         */
+        public void device(HttpRequest request, HttpResponse response) {
+            response.write("device " + request.getPathVariable("id"));
+        }
+    }
+
+    /**
+     * 统计请求体字节数的消费者
+     */
+    public static class CountingConsumer implements BodyConsumer {
+        private long bytes;
+
+        @Override
+        public CompletionStage<?> onData(ByteBuf chunk) {
+            bytes += chunk.readableBytes();
+            return null;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+    }
+
+    /**
+     * JSON请求体绑定的测试对象
+     */
+    public static class Message {
+        private String message;
+
+        public String getMessage() {
+            return message;
+        }
+
+        public void setMessage(String message) {
+            this.message = message;
+        }
     }
 
     /**
@@ -66,9 +140,68 @@ public class HttpServerTest {
         // 注册GET请求路由
         Router.get("/test", controller::test);
         Router.get("/echo", controller::echo);
+        Router.get("/device/{id}", controller::device);
+        Router.get("/device/list", (request, response) -> response.write("device list"));
+        Router.get("/thread", (request, response) -> response.write(Thread.currentThread().getName()))
+                .execution(ExecutionMode.POOL);
+        Router.get("/thread/virtual", (request, response) -> response.write(Thread.currentThread().getName()))
+                .execution(ExecutionMode.VIRTUAL);
+        Router.getAsync("/async", (request, response) -> CompletableFuture.runAsync(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            response.write("async " + request.getParameter("name"));
+        }));
         
         // 注册POST请求路由
         Router.post("/data", controller::handleData);
+        Router.post("/message", controller::handleMessage);
+        Router.get("/stream", (request, response) -> {
+            try (ResponseStream stream = response.stream("text/plain; charset=UTF-8")) {
+                for (int i = 0; i < 1000; i++) {
+                    stream.write("line " + i + "\n");
+                }
+            }
+        }).execution(ExecutionMode.POOL);
+        Router.post("/message/json", (request, response) -> response.writeJson(request.bodyAs(Message.class)))
+                .responseSize(64);
+        Router.post("/upload", (request, response) -> {
+            FileUpload file = request.getFile("file");
+            response.write(request.getParameter("name") + " " + file.getFilename() + " " + file.length());
+        }).upload().maxBodySize(1024 * 1024);
+        Router.post("/consume", (request, response) -> {
+            CountingConsumer consumer = request.getBodyConsumer();
+            response.write(String.valueOf(consumer.getBytes()));
+        }).bodyConsumer(request -> new CountingConsumer()).maxBodySize(100 * 1024 * 1024);
+        Router.get("/cached", (request, response) -> response.write(request.getParameter("page") + " "
+                + CACHED_CALLS.incrementAndGet()), CachePolicy.ttl(1, TimeUnit.MINUTES).varyByQuery("page"));
+        Router.get("/coalesced", (request, response) -> {
+            try {
+                Thread.sleep(500);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            response.writeJson(Collections.singletonMap("calls", COALESCED_CALLS.incrementAndGet()));
+        }).coalesce().execution(ExecutionMode.POOL);
+        Router.get("/limited", (request, response) -> response.write("ok")).rateLimit(0.1, 2);
+        Router.get("/slow", (request, response) -> {
+            try {
+                Thread.sleep(2500);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            response.write("slow");
+        }).execution(ExecutionMode.POOL);
+        Router.post("/slow/body", (request, response) -> {
+            try {
+                Thread.sleep(500);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            response.write(String.valueOf(request.getBody().length()));
+        }).execution(ExecutionMode.POOL);
     }
 
     /**
@@ -200,4 +333,669 @@ public class HttpServerTest {
         HttpURLConnection conn = (HttpURLConnection) url.openConnection();
         assertEquals(404, conn.getResponseCode());
     }
-} 
\ No newline at end of file
+
+    /**
+     * 测试路径变量
+     * 验证路径变量能够正确捕获，且静态路径优先于路径变量匹配
+     */
+    @Test
+    @Order(5)
+    void testPathVariable() throws Exception {
+        assertEquals("device 1001", sendRequest("http://localhost:" + TEST_PORT + "/device/1001?type=center", "GET", null));
+        assertEquals("device list", sendRequest("http://localhost:" + TEST_PORT + "/device/list", "GET", null));
+        assertNull(sendRequest("http://localhost:" + TEST_PORT + "/device/1001/extra", "GET", null));
+    }
+
+    /**
+     * 测试长连接
+     * 验证默认配置下响应保持连接，请求头要求关闭时响应后关闭连接
+     */
+    @Test
+    @Order(6)
+    void testKeepAlive() throws Exception {
+        HttpURLConnection conn = (HttpURLConnection) new URL("http://localhost:" + TEST_PORT + "/test").openConnection();
+        assertEquals(200, conn.getResponseCode());
+        assertEquals("keep-alive", conn.getHeaderField("Connection"));
+        conn.getInputStream().close();
+
+        conn = (HttpURLConnection) new URL("http://localhost:" + TEST_PORT + "/test").openConnection();
+        conn.setRequestProperty("Connection", "close");
+        assertEquals(200, conn.getResponseCode());
+        assertEquals("close", conn.getHeaderField("Connection"));
+        conn.getInputStream().close();
+    }
+
+    /**
+     * 测试管道化请求
+     * 验证同一连接上连续发送的多个请求，响应按请求顺序返回
+     */
+    @Test
+    @Order(7)
+    void testPipelining() throws Exception {
+        try (Socket socket = new Socket("localhost", TEST_PORT)) {
+            String requests = "GET /echo?message=first HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                    + "GET /echo?message=second HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                    + "GET /echo?message=third HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n";
+            socket.getOutputStream().write(requests.getBytes(StandardCharsets.UTF_8));
+            socket.getOutputStream().flush();
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            InputStream in = socket.getInputStream();
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            String responses = out.toString("UTF-8");
+            int first = responses.indexOf("first");
+            int second = responses.indexOf("second");
+            int third = responses.indexOf("third");
+            assertTrue(first > 0 && first < second && second < third, responses);
+        }
+    }
+
+    /**
+     * 测试路由在业务线程池中执行
+     * 验证设置了POOL执行方式的路由不在IO线程中执行，响应正常写回
+     */
+    @Test
+    @Order(8)
+    void testPoolExecution() throws Exception {
+        String response = sendRequest("http://localhost:" + TEST_PORT + "/thread", "GET", null);
+        assertTrue(response.startsWith("tiny-business"), response);
+    }
+
+    /**
+     * 测试路由在虚拟线程中执行
+     * JDK21以下退回业务线程池执行
+     */
+    @Test
+    @Order(9)
+    void testVirtualExecution() throws Exception {
+        String response = sendRequest("http://localhost:" + TEST_PORT + "/thread/virtual", "GET", null);
+        assertTrue(response.startsWith("tiny-virtual") || response.startsWith("tiny-business"), response);
+    }
+
+    /**
+     * 测试异步路由
+     * 验证处理器返回的CompletionStage完成后响应正常写回
+     */
+    @Test
+    @Order(10)
+    void testAsyncRoute() throws Exception {
+        String response = sendRequest("http://localhost:" + TEST_PORT + "/async?name=tiny", "GET", null);
+        assertEquals("async tiny", response);
+    }
+
+    /**
+     * 测试JSON请求体绑定为对象
+     */
+    @Test
+    @Order(11)
+    void testBodyAs() throws Exception {
+        String json = "{\"message\":\"test message\",\"extra\":1}";
+        String response = sendRequest("http://localhost:" + TEST_PORT + "/message", "POST", json);
+        assertEquals("test message bound", response);
+
+        // 不合法的JSON返回400，错误响应是合法的JSON，不包含请求体的内容
+        HttpURLConnection conn = (HttpURLConnection) new URL("http://localhost:" + TEST_PORT + "/message").openConnection();
+        conn.setRequestMethod("POST");
+        conn.setDoOutput(true);
+        conn.setRequestProperty("Content-Type", "application/json");
+        try (OutputStream os = conn.getOutputStream()) {
+            os.write("{\"message\": secret-token}".getBytes(StandardCharsets.UTF_8));
+        }
+        assertEquals(400, conn.getResponseCode());
+        try (InputStream in = conn.getErrorStream()) {
+            JsonNode error = JsonSupport.getMapper().readTree(in);
+            assertEquals(400, error.get("code").asInt());
+            assertEquals("Invalid JSON body", error.get("message").asText());
+        }
+    }
+
+    /**
+     * 测试对象直接序列化为JSON写出
+     */
+    @Test
+    @Order(12)
+    void testWriteJson() throws Exception {
+        String json = "{\"message\":\"test message\"}";
+        String response = sendRequest("http://localhost:" + TEST_PORT + "/message/json", "POST", json);
+        assertEquals(json, response);
+    }
+
+    /**
+     * 测试流式响应
+     * 验证响应使用分块传输，内容完整且有序
+     */
+    @Test
+    @Order(13)
+    void testStreamResponse() throws Exception {
+        HttpURLConnection conn = (HttpURLConnection) new URL("http://localhost:" + TEST_PORT + "/stream").openConnection();
+        assertEquals(200, conn.getResponseCode());
+        assertEquals("chunked", conn.getHeaderField("Transfer-Encoding"));
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(conn.getInputStream(), StandardCharsets.UTF_8))) {
+            for (int i = 0; i < 1000; i++) {
+                assertEquals("line " + i, br.readLine());
+            }
+            assertNull(br.readLine());
+        }
+    }
+
+    /**
+     * 测试超过64KB的multipart文件上传
+     * 验证上传路由放宽请求体上限，文件和表单参数解析正确
+     */
+    @Test
+    @Order(14)
+    void testUpload() throws Exception {
+        String boundary = "----tiny-test-boundary";
+        byte[] data = new byte[200 * 1024];
+        Arrays.fill(data, (byte) 'a');
+        HttpURLConnection conn = (HttpURLConnection) new URL("http://localhost:" + TEST_PORT + "/upload").openConnection();
+        conn.setRequestMethod("POST");
+        conn.setDoOutput(true);
+        conn.setRequestProperty("Content-Type", "multipart/form-data; boundary=" + boundary);
+        try (OutputStream os = conn.getOutputStream()) {
+            os.write(("--" + boundary + "\r\n"
+                    + "Content-Disposition: form-data; name=\"name\"\r\n\r\n"
+                    + "meter\r\n"
+                    + "--" + boundary + "\r\n"
+                    + "Content-Disposition: form-data; name=\"file\"; filename=\"data.bin\"\r\n"
+                    + "Content-Type: application/octet-stream\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+            os.write(data);
+            os.write(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8));
+        }
+        assertEquals(200, conn.getResponseCode());
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(conn.getInputStream(), StandardCharsets.UTF_8))) {
+            assertEquals("meter data.bin " + data.length, br.readLine());
+        }
+    }
+
+    /**
+     * 测试流式接收请求体
+     * 验证请求体交给BodyConsumer，处理器拿到接收完成的消费者
+     */
+    @Test
+    @Order(15)
+    void testBodyConsumer() throws Exception {
+        char[] body = new char[300 * 1024];
+        Arrays.fill(body, 'b');
+        String response = sendRequest("http://localhost:" + TEST_PORT + "/consume", "POST", new String(body));
+        assertEquals(String.valueOf(body.length), response);
+
+        // 超过10MB的请求体（例如固件升级包）按路由的上限接收
+        byte[] block = new byte[64 * 1024];
+        int blocks = 12 * 16;
+        HttpURLConnection conn = (HttpURLConnection) new URL("http://localhost:" + TEST_PORT + "/consume").openConnection();
+        conn.setRequestMethod("POST");
+        conn.setDoOutput(true);
+        conn.setFixedLengthStreamingMode((long) block.length * blocks);
+        conn.setRequestProperty("Content-Type", "application/octet-stream");
+        try (OutputStream os = conn.getOutputStream()) {
+            for (int i = 0; i < blocks; i++) {
+                os.write(block);
+            }
+        }
+        assertEquals(200, conn.getResponseCode());
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(conn.getInputStream(), StandardCharsets.UTF_8))) {
+            assertEquals(String.valueOf((long) block.length * blocks), br.readLine());
+        }
+    }
+
+    /**
+     * 测试请求体超过上限
+     * 验证默认上限之外的请求返回413
+     */
+    @Test
+    @Order(16)
+    void testBodyTooLarge() throws Exception {
+        char[] body = new char[100 * 1024];
+        Arrays.fill(body, 'c');
+        HttpURLConnection conn = (HttpURLConnection) new URL("http://localhost:" + TEST_PORT + "/data").openConnection();
+        conn.setRequestMethod("POST");
+        conn.setDoOutput(true);
+        conn.setFixedLengthStreamingMode(body.length);
+        conn.setRequestProperty("Content-Type", "application/json");
+        try (OutputStream os = conn.getOutputStream()) {
+            os.write(new String(body).getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            // 服务端返回413后关闭连接，剩余请求体可能写入失败
+        }
+        assertEquals(413, conn.getResponseCode());
+    }
+
+    /**
+     * 测试从文件系统目录发送静态文件
+     * 验证文件内容完整、Range请求，并且不能通过../访问目录之外的文件
+     */
+    @Test
+    @Order(17)
+    void testStaticDirectory() throws Exception {
+        Path directory = Files.createTempDirectory("tiny-static");
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            content.append("line ").append(i).append('\n');
+        }
+        Files.write(directory.resolve("app.js"), content.toString().getBytes(StandardCharsets.UTF_8));
+        Files.write(directory.getParent().resolve("secret.js"), "secret".getBytes(StandardCharsets.UTF_8));
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(directory.resolve("app.js.gz")))) {
+            out.write(content.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        ApplicationContext.getInstance().getStaticResourceConfig().setDirectory(directory.toString());
+        StaticResourceHandler.refreshManifest();
+        try {
+            HttpURLConnection conn = (HttpURLConnection) new URL("http://localhost:" + TEST_PORT + "/app.js").openConnection();
+            assertEquals(200, conn.getResponseCode());
+            assertEquals(content.length(), conn.getContentLengthLong());
+            try (InputStream in = conn.getInputStream()) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                byte[] buffer = new byte[8192];
+                int n;
+                while ((n = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, n);
+                }
+                assertEquals(content.toString(), new String(out.toByteArray(), StandardCharsets.UTF_8));
+            }
+
+            // 接受gzip时发送预压缩文件
+            conn = (HttpURLConnection) new URL("http://localhost:" + TEST_PORT + "/app.js").openConnection();
+            conn.setRequestProperty("Accept-Encoding", "gzip, deflate");
+            assertEquals(200, conn.getResponseCode());
+            assertEquals("gzip", conn.getHeaderField("Content-Encoding"));
+            assertEquals(Files.size(directory.resolve("app.js.gz")), conn.getContentLengthLong());
+            try (BufferedReader br = new BufferedReader(new InputStreamReader(new GZIPInputStream(conn.getInputStream()), StandardCharsets.UTF_8))) {
+                assertEquals("line 0", br.readLine());
+            }
+
+            // 单个范围
+            conn = (HttpURLConnection) new URL("http://localhost:" + TEST_PORT + "/app.js").openConnection();
+            conn.setRequestProperty("Range", "bytes=7-13");
+            assertEquals(206, conn.getResponseCode());
+            assertEquals("bytes 7-13/" + content.length(), conn.getHeaderField("Content-Range"));
+            try (BufferedReader br = new BufferedReader(new InputStreamReader(conn.getInputStream(), StandardCharsets.UTF_8))) {
+                assertEquals("line 1", br.readLine());
+            }
+
+            // 多个范围
+            conn = (HttpURLConnection) new URL("http://localhost:" + TEST_PORT + "/app.js").openConnection();
+            conn.setRequestProperty("Range", "bytes=0-5,-7");
+            assertEquals(206, conn.getResponseCode());
+            assertTrue(conn.getContentType().startsWith("multipart/byteranges; boundary="));
+            try (InputStream in = conn.getInputStream()) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                byte[] buffer = new byte[8192];
+                int n;
+                while ((n = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, n);
+                }
+                assertEquals(conn.getContentLengthLong(), out.size());
+                String body = new String(out.toByteArray(), StandardCharsets.US_ASCII);
+                assertTrue(body.contains("Content-Range: bytes 0-5/" + content.length() + "\r\n\r\nline 0"));
+                assertTrue(body.contains("\r\n\r\ne 9999\n"));
+            }
+
+            // 超出文件长度
+            conn = (HttpURLConnection) new URL("http://localhost:" + TEST_PORT + "/app.js").openConnection();
+            conn.setRequestProperty("Range", "bytes=" + content.length() + "-");
+            assertEquals(416, conn.getResponseCode());
+            assertEquals("bytes */" + content.length(), conn.getHeaderField("Content-Range"));
+
+            // If-Range不匹配时返回完整内容
+            conn = (HttpURLConnection) new URL("http://localhost:" + TEST_PORT + "/app.js").openConnection();
+            conn.setRequestProperty("Range", "bytes=0-5");
+            conn.setRequestProperty("If-Range", "\"stale\"");
+            assertEquals(200, conn.getResponseCode());
+            assertEquals(content.length(), conn.getContentLengthLong());
+            conn.getInputStream().close();
+
+            try (Socket socket = new Socket("localhost", TEST_PORT)) {
+                socket.getOutputStream().write("GET /../secret.js HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n"
+                        .getBytes(StandardCharsets.US_ASCII));
+                BufferedReader br = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+                assertTrue(br.readLine().contains("404"));
+            }
+        } finally {
+            ApplicationContext.getInstance().getStaticResourceConfig().setDirectory(null);
+            StaticResourceHandler.refreshManifest();
+        }
+    }
+
+    /**
+     * 测试静态资源缓存
+     * 验证第二次访问命中缓存，内容一致
+     */
+    @Test
+    @Order(18)
+    void testStaticResourceCache() throws Exception {
+        StaticResourceCache cache = StaticResourceHandler.getResourceCache();
+        assertNotNull(cache);
+        // 启动时建立的清单包含classpath中的静态资源
+        assertNotNull(StaticResourceHandler.getManifest().get("/index.html"));
+        String first = sendRequest("http://localhost:" + TEST_PORT + "/index.html", "GET", null);
+        long hits = cache.getHitCount();
+        String second = sendRequest("http://localhost:" + TEST_PORT + "/index.html", "GET", null);
+        assertNotNull(first);
+        assertEquals(first, second);
+        assertEquals(hits + 1, cache.getHitCount());
+        assertTrue(cache.getUsedBytes() > 0 && cache.getUsedBytes() <= cache.getMaxBytes());
+    }
+
+    /**
+     * 测试动态响应压缩
+     * 验证流式响应按Accept-Encoding进行gzip压缩，解压后内容完整
+     */
+    @Test
+    @Order(19)
+    void testCompression() throws Exception {
+        HttpURLConnection conn = (HttpURLConnection) new URL("http://localhost:" + TEST_PORT + "/stream").openConnection();
+        conn.setRequestProperty("Accept-Encoding", "gzip");
+        assertEquals(200, conn.getResponseCode());
+        assertEquals("gzip", conn.getHeaderField("Content-Encoding"));
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(new GZIPInputStream(conn.getInputStream()), StandardCharsets.UTF_8))) {
+            for (int i = 0; i < 1000; i++) {
+                assertEquals("line " + i, br.readLine());
+            }
+            assertNull(br.readLine());
+        }
+    }
+
+    /**
+     * 测试静态资源的条件请求
+     * 验证响应带有ETag和Last-Modified，资源没有变化时返回304
+     */
+    @Test
+    @Order(20)
+    void testConditionalGet() throws Exception {
+        URL url = new URL("http://localhost:" + TEST_PORT + "/index.html");
+        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+        assertEquals(200, conn.getResponseCode());
+        String etag = conn.getHeaderField("ETag");
+        String lastModified = conn.getHeaderField("Last-Modified");
+        assertNotNull(etag);
+        assertNotNull(lastModified);
+        conn.getInputStream().close();
+
+        conn = (HttpURLConnection) url.openConnection();
+        conn.setRequestProperty("If-None-Match", etag);
+        assertEquals(304, conn.getResponseCode());
+        assertEquals(etag, conn.getHeaderField("ETag"));
+
+        conn = (HttpURLConnection) url.openConnection();
+        conn.setRequestProperty("If-Modified-Since", lastModified);
+        assertEquals(304, conn.getResponseCode());
+
+        conn = (HttpURLConnection) url.openConnection();
+        conn.setRequestProperty("If-None-Match", "\"other\"");
+        conn.setRequestProperty("If-Modified-Since", lastModified);
+        assertEquals(200, conn.getResponseCode());
+        conn.getInputStream().close();
+    }
+
+    /**
+     * 测试路由响应缓存
+     * 验证有效期内不再执行路由处理器，按指定的查询参数区分缓存，其他参数不影响命中，失效后重新执行
+     */
+    @Test
+    @Order(21)
+    void testResponseCache() throws Exception {
+        String base = "http://localhost:" + TEST_PORT + "/cached";
+        assertEquals("1 1", sendRequest(base + "?page=1", "GET", null));
+        assertEquals("1 1", sendRequest(base + "?page=1&t=123", "GET", null));
+        assertEquals("2 2", sendRequest(base + "?page=2", "GET", null));
+        assertEquals(2, CACHED_CALLS.get());
+
+        assertTrue(Router.invalidateCache("/cached"));
+        assertEquals("1 3", sendRequest(base + "?page=1", "GET", null));
+        assertEquals("1 3", sendRequest(base + "?page=1", "GET", null));
+
+        ResponseCache responseCache = ApplicationContext.getInstance().getResponseCache();
+        long maxBytes = ApplicationContext.getInstance().getServerConfig().getHttp().getResponseCacheSize();
+        assertTrue(responseCache.getUsedBytes() > 0 && responseCache.getUsedBytes() <= maxBytes);
+
+        // 超过大小上限时淘汰最久未访问的数据，不同的查询参数不会使缓存无限增长
+        LocalCache<String, String> bounded = new LocalCache<>(30, (key, value) -> value.length());
+        bounded.put("a", "0123456789");
+        bounded.put("b", "0123456789");
+        assertTrue(bounded.get("a").isPresent());
+        bounded.put("c", "0123456789");
+        bounded.put("d", "0123456789", 1, TimeUnit.MINUTES);
+        assertFalse(bounded.get("b").isPresent());
+        assertTrue(bounded.get("a").isPresent() && bounded.get("c").isPresent() && bounded.get("d").isPresent());
+        bounded.put("e", "0123456789012345678901234567890");
+        assertFalse(bounded.get("e").isPresent());
+        assertEquals(30, bounded.getWeight());
+    }
+
+    /**
+     * 测试请求合并
+     * 验证相同的并发请求只执行一次路由处理器，所有请求收到相同的响应，执行完成后的请求重新执行
+     */
+    @Test
+    @Order(22)
+    void testCoalescing() throws Exception {
+        String url = "http://localhost:" + TEST_PORT + "/coalesced";
+        ExecutorService clients = Executors.newFixedThreadPool(5);
+        try {
+            List<CompletableFuture<String>> responses = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                responses.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return sendRequest(url, "GET", null);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, clients));
+            }
+            for (CompletableFuture<String> response : responses) {
+                assertEquals("{\"calls\":1}", response.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            clients.shutdown();
+        }
+        assertEquals(1, COALESCED_CALLS.get());
+        assertEquals("{\"calls\":2}", sendRequest(url, "GET", null));
+    }
+
+    /**
+     * 测试路由限流
+     * 突发请求数用完后返回429和Retry-After，不影响其他路由
+     */
+    @Test
+    @Order(23)
+    void testRateLimit() throws Exception {
+        String url = "http://localhost:" + TEST_PORT + "/limited";
+        assertEquals("ok", sendRequest(url, "GET", null));
+        assertEquals("ok", sendRequest(url, "GET", null));
+
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        assertEquals(429, conn.getResponseCode());
+        long retryAfter = Long.parseLong(conn.getHeaderField("Retry-After"));
+        assertTrue(retryAfter >= 1 && retryAfter <= 10, "Retry-After: " + retryAfter);
+
+        assertEquals("Hello, World!", sendRequest("http://localhost:" + TEST_PORT + "/test", "GET", null));
+
+        // 同一组表项被大量其他键占用时，被限流的键不会因为被替换而得到新的满桶
+        RateLimiter limiter = new RateLimiter(64);
+        long throttled = 1L << 48;
+        assertEquals(0, limiter.acquire(throttled, 1, 2));
+        assertEquals(0, limiter.acquire(throttled, 1, 2));
+        assertTrue(limiter.acquire(throttled, 1, 2) > 0);
+        for (long tag = 2; tag < 20; tag++) {
+            limiter.acquire(tag << 48, 0.1, 1);
+            assertTrue(limiter.acquire(throttled, 1, 2) > 0);
+        }
+    }
+
+    /**
+     * 测试请求内存预算
+     * 请求完成后释放占用的内存，长连接上不累积；达到暂停水位时暂停读取，内存释放后恢复
+     */
+    @Test
+    @Order(24)
+    void testMemoryBudget() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            assertNotNull(sendRequest("http://localhost:" + TEST_PORT + "/data", "POST", "{\"value\":" + i + "}"));
+        }
+        MemoryBudget budget = ApplicationContext.getInstance().getSecurityManager().getMemoryBudget();
+        for (int i = 0; i < 50 && budget.getUsed() != 0; i++) {
+            Thread.sleep(20);
+        }
+        assertEquals(0, budget.getMetrics().getUsed());
+        assertTrue(budget.getMetrics().getPeak() > 0);
+
+        // 在业务线程池中处理的请求，处理完成前请求体一直计入
+        char[] body = new char[32 * 1024];
+        Arrays.fill(body, 'm');
+        CompletableFuture<String> slow = CompletableFuture.supplyAsync(() -> {
+            try {
+                return sendRequest("http://localhost:" + TEST_PORT + "/slow/body", "POST", new String(body));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        Thread.sleep(250);
+        assertEquals(body.length, budget.getUsed());
+        assertEquals(String.valueOf(body.length), slow.get(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 50 && budget.getUsed() != 0; i++) {
+            Thread.sleep(20);
+        }
+        assertEquals(0, budget.getUsed());
+
+        MemoryBudget small = new MemoryBudget(1000, 90, 50);
+        EmbeddedChannel channel = new EmbeddedChannel();
+        small.allocate(950);
+        assertTrue(small.pauseIfOverBudget(channel));
+        assertFalse(channel.config().isAutoRead());
+        assertEquals(1, small.getMetrics().getPausedConnections());
+        small.free(400);
+        assertFalse(channel.config().isAutoRead());
+        small.free(100);
+        assertTrue(channel.config().isAutoRead());
+        assertEquals(0, small.getMetrics().getPausedConnections());
+        assertFalse(small.pauseIfOverBudget(channel));
+
+        // 同时因其他原因暂停的连接，内存释放后仍然暂停，所有原因解除后才恢复读取
+        small.allocate(500);
+        assertTrue(ReadPause.pause(channel, ReadPause.PIPELINING));
+        assertTrue(small.pauseIfOverBudget(channel));
+        small.free(500);
+        assertFalse(ReadPause.isPaused(channel, ReadPause.MEMORY));
+        assertFalse(channel.config().isAutoRead());
+        assertTrue(ReadPause.resume(channel, ReadPause.PIPELINING));
+        assertTrue(channel.config().isAutoRead());
+        channel.finishAndReleaseAll();
+
+        // 在业务线程池中处理的请求写出响应后，内存不足的暂停仍然有效
+        try (Socket socket = new Socket("localhost", TEST_PORT)) {
+            socket.setSoTimeout(1000);
+            OutputStream out = socket.getOutputStream();
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            byte[] request = "GET /thread HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+            out.write(request);
+            assertTrue(readResponse(in).startsWith("tiny-business"));
+
+            long limit = budget.getMetrics().getLimit();
+            budget.allocate(limit);
+            try {
+                out.write(request);
+                assertTrue(readResponse(in).startsWith("tiny-business"));
+                assertEquals(1, budget.getMetrics().getPausedConnections());
+                out.write(request);
+                assertThrows(SocketTimeoutException.class, () -> in.read());
+            } finally {
+                budget.free(limit);
+            }
+            assertTrue(readResponse(in).startsWith("tiny-business"));
+        }
+    }
+
+    /**
+     * 从长连接上读取一个带Content-Length的响应
+     * @return 响应体
+     */
+    private static String readResponse(InputStream in) throws IOException {
+        ByteArrayOutputStream head = new ByteArrayOutputStream();
+        while (!head.toString("US-ASCII").endsWith("\r\n\r\n")) {
+            int b = in.read();
+            if (b == -1) {
+                throw new EOFException("Connection closed: " + head.toString("US-ASCII"));
+            }
+            head.write(b);
+        }
+        int length = 0;
+        for (String line : head.toString("US-ASCII").split("\r\n")) {
+            if (line.toLowerCase().startsWith("content-length:")) {
+                length = Integer.parseInt(line.substring("content-length:".length()).trim());
+            }
+        }
+        byte[] body = new byte[length];
+        new DataInputStream(in).readFully(body);
+        return new String(body, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 测试管道化请求数超过上限
+     * 同一次写入的请求超过max-pipelined-requests并且排在较慢的请求之后时，连接不关闭，所有响应按请求顺序返回
+     */
+    @Test
+    @Order(26)
+    void testPipeliningOverLimit() throws Exception {
+        int count = ApplicationContext.getInstance().getServerConfig().getHttp().getMaxPipelinedRequests() * 2;
+        StringBuilder requests = new StringBuilder("GET /slow HTTP/1.1\r\nHost: localhost\r\n\r\n");
+        for (int i = 1; i < count; i++) {
+            requests.append("GET /echo?message=m").append(i).append(". HTTP/1.1\r\nHost: localhost\r\n")
+                    .append(i == count - 1 ? "Connection: close\r\n\r\n" : "\r\n");
+        }
+        try (Socket socket = new Socket("localhost", TEST_PORT)) {
+            socket.setSoTimeout(10000);
+            socket.getOutputStream().write(requests.toString().getBytes(StandardCharsets.US_ASCII));
+            socket.getOutputStream().flush();
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            InputStream in = socket.getInputStream();
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            String responses = out.toString("UTF-8");
+            int position = responses.indexOf("slow");
+            assertTrue(position > 0, responses);
+            for (int i = 1; i < count; i++) {
+                int next = responses.indexOf("m" + i + ".", position);
+                assertTrue(next > position, "Response " + i + " missing or out of order: " + responses);
+                position = next;
+            }
+        }
+    }
+
+    /**
+     * 测试空闲超时不关闭处理中的请求
+     * 路由处理器执行时间超过keep-alive-timeout时，连接上没有读写，但请求仍然正常返回
+     * 空闲超时在建立连接时设置，修改配置后使用新的连接发送请求
+     */
+    @Test
+    @Order(25)
+    void testIdleTimeoutWithRequestInFlight() throws Exception {
+        ServerConfig.HttpConfig config = ApplicationContext.getInstance().getServerConfig().getHttp();
+        int keepAliveTimeout = config.getKeepAliveTimeout();
+        config.setKeepAliveTimeout(1);
+        try (Socket socket = new Socket("localhost", TEST_PORT)) {
+            socket.setSoTimeout(5000);
+            socket.getOutputStream().write("GET /slow HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n"
+                    .getBytes(StandardCharsets.US_ASCII));
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            InputStream in = socket.getInputStream();
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            String response = out.toString("UTF-8");
+            assertTrue(response.startsWith("HTTP/1.1 200") && response.endsWith("slow"), response);
+        } finally {
+            config.setKeepAliveTimeout(keepAliveTimeout);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package cn.fengin.tiny.test.tcp;
 
+import cn.fengin.tiny.config.ExecutionMode;
 import cn.fengin.tiny.config.ServerConfig;
 import cn.fengin.tiny.context.ApplicationContext;
 import cn.fengin.tiny.tcp.TcpServer;
@@ -18,6 +19,7 @@ import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
@@ -133,7 +135,8 @@ public class TcpServerTest {
      * 使用CountDownLatch来同步测试过程，确保消息被正确处理
      */
     public static class TestMessageProcessor implements MessageProcessor {
-        private final List<Message> receivedMessages = new ArrayList<>();
+        // 消息在业务线程池中处理，不同设备并行
+        private final List<Message> receivedMessages = Collections.synchronizedList(new ArrayList<>());
         private final CountDownLatch messageLatch;
         private final AtomicReference<String> lastConnectedDevice = new AtomicReference<>();
         private final AtomicReference<String> lastDisconnectedDevice = new AtomicReference<>();
@@ -196,6 +199,10 @@ public class TcpServerTest {
         config.setBacklog(128);
         config.setDeviceIdleTime(60);
         config.setDeviceIdleTimeout(180);
+        // 两个监听套接字共用端口（SO_REUSEPORT），不支持epoll时退回一个
+        config.setAcceptors(2);
+        // 在业务线程池中处理消息，同一设备的消息仍然按顺序处理
+        config.setExecution(ExecutionMode.POOL);
         ApplicationContext context =  ApplicationContext.getInstance();
         List<ServerConfig.TcpServerConfig> tcpServers = context.getServerConfig().getTcpServers();
         tcpServers.add(config);
@@ -368,4 +375,36 @@ public class TcpServerTest {
             );
         }
     }
-} 
\ No newline at end of file
+
+    /**
+     * 测试同一设备的消息顺序
+     * 验证在业务线程池中处理时，同一连接上连续发送的消息按发送顺序处理
+     */
+    @Test
+    @Order(4)
+    void testMessageOrder() throws Exception {
+        int messageCount = 200;
+        String deviceId = "test-device-order";
+        Socket client = createTestClient();
+        for (int i = 0; i < messageCount; i++) {
+            sendMessage(client, new TestMessage(deviceId, 1, String.valueOf(i)));
+        }
+
+        List<String> payloads = new ArrayList<>();
+        for (int i = 0; i < 100 && payloads.size() < messageCount; i++) {
+            Thread.sleep(50);
+            payloads.clear();
+            synchronized (processor.getReceivedMessages()) {
+                for (Message message : processor.getReceivedMessages()) {
+                    if (deviceId.equals(message.getDeviceId())) {
+                        payloads.add(new String(message.getPayload()));
+                    }
+                }
+            }
+        }
+        assertEquals(messageCount, payloads.size());
+        for (int i = 0; i < messageCount; i++) {
+            assertEquals(String.valueOf(i), payloads.get(i));
+        }
+    }
+}